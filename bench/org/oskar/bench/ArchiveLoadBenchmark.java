@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.application.file.AssetPacker;
+import org.oskar.view.backend.HeadlessGraphicsBackend;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.oskar.GameProperties.*;
+
+/**
+ * Measures loading the vertex shader into a string when it is served from an asset archive
+ * of the res directory, to compare with {@link LoadFileToStringBenchmark}.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ArchiveLoadBenchmark extends Benchmark {
+
+    private GameWorld gameWorld;
+    private File archive;
+    private File file;
+
+    public ArchiveLoadBenchmark() {
+        super("FileSystem.loadFileToString (archive)");
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        archive = File.createTempFile("bench", ".pak");
+        List<File> files = new ArrayList<File>();
+        AssetPacker.collect(new File("res"), files);
+        AssetPacker.pack(files, archive, AssetPacker.DEFAULT_ALIGNMENT);
+        gameWorld = new GameWorld(new HeadlessGraphicsBackend());
+        gameWorld.setDefaultProperties();
+        gameWorld.setProperty(FILE_SYSTEM_ARCHIVE, archive.getPath());
+        gameWorld.getFileSystem().create(gameWorld);
+        file = new File(gameWorld.getProperty(RESOURCE_VERTEX_SHADER));
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        blackhole.consume(gameWorld.getFileSystem().loadFileToString(file, true).length());
+    }
+
+    @Override
+    public void tearDown() {
+        gameWorld.getFileSystem().destroy();
+        archive.deleteOnExit();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.application.resources.texture.TextureAtlas;
+import org.oskar.application.resources.texture.TextureAtlasBuilder;
+import org.oskar.application.resources.texture.TextureData;
+
+import java.util.Random;
+
+/**
+ * Measures packing 256 images between 8 and 64 pixels wide and high into 1024 by 1024 pages
+ * and copying them in, without mipmaps. The throughput is given in bytes of the images.
+ *
+ * @author Oskar Veerhoek
+ */
+public class AtlasBuildBenchmark extends Benchmark {
+
+    private static final int IMAGES = 256;
+    private final int[] widths = new int[IMAGES];
+    private final int[] heights = new int[IMAGES];
+    private long imageBytes;
+
+    public AtlasBuildBenchmark() {
+        super("TextureAtlasBuilder.build (256 images)");
+    }
+
+    @Override
+    public long getBytesPerInvocation() {
+        return imageBytes;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(0);
+        for (int i = 0; i < IMAGES; i++) {
+            widths[i] = 8 + random.nextInt(57);
+            heights[i] = 8 + random.nextInt(57);
+            imageBytes += widths[i] * heights[i] * TextureData.BYTES_PER_PIXEL;
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(1024, 1, false);
+        for (int i = 0; i < IMAGES; i++) {
+            builder.add("image" + i, new TextureData(widths[i], heights[i], false));
+        }
+        TextureAtlas atlas = builder.build(null);
+        blackhole.consume(atlas.getRegion("image0").getX());
+        for (int page = 0; page < atlas.getPageCount(); page++) {
+            atlas.getPage(page).getData().free();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.view.backend.HeadlessGraphicsBackend;
+
+/**
+ * A piece of engine code that is measured by the {@link BenchmarkRunner}. The runner calls
+ * {@link #setUp()} once, then calls {@link #run(Blackhole)} over and over while it measures
+ * the time and the memory it takes, and finally calls {@link #tearDown()}.
+ *
+ * @author Oskar Veerhoek
+ */
+public abstract class Benchmark {
+
+    private final String name;
+    private final int operationsPerInvocation;
+
+    /**
+     * @param name the name under which the results are reported and compared to a baseline
+     */
+    protected Benchmark(String name) {
+        this(name, 1);
+    }
+
+    /**
+     * @param name the name under which the results are reported and compared to a baseline
+     * @param operationsPerInvocation the amount of operations one call of {@link #run(Blackhole)} performs
+     */
+    protected Benchmark(String name, int operationsPerInvocation) {
+        this.name = name;
+        this.operationsPerInvocation = operationsPerInvocation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getOperationsPerInvocation() {
+        return operationsPerInvocation;
+    }
+
+    /**
+     * @return the amount of bytes one call of {@link #run(Blackhole)} processes, from which the
+     * throughput is reported, or 0 if throughput does not apply
+     */
+    public long getBytesPerInvocation() {
+        return 0;
+    }
+
+    /**
+     * @return whether {@link #run(Blackhole)} must not allocate once it is warmed up, which the
+     * runner checks on every run, with or without a baseline
+     */
+    public boolean isAllocationFree() {
+        return false;
+    }
+
+    public void setUp() throws Exception {}
+
+    /**
+     * Performs the measured operations once.
+     * @param blackhole the sink for results, so the virtual machine cannot leave out the work
+     */
+    public abstract void run(Blackhole blackhole) throws Exception;
+
+    public void tearDown() throws Exception {}
+
+    /**
+     * @return a game world with the default properties that draws through a headless backend,
+     * with the file system and the resource system created
+     */
+    protected static GameWorld createWorld() {
+        GameWorld gameWorld = new GameWorld(new HeadlessGraphicsBackend());
+        gameWorld.setDefaultProperties();
+        gameWorld.getFileSystem().create(gameWorld);
+        gameWorld.getResourceSystem().create(gameWorld);
+        return gameWorld;
+    }
+}
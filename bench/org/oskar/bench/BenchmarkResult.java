@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+/**
+ * The measurements of a single benchmark: the time and the amount of allocated bytes per
+ * operation, averaged over the measured iterations.
+ *
+ * @author Oskar Veerhoek
+ */
+public class BenchmarkResult {
+
+    private final String name;
+    private final double nanosPerOperation;
+    private final double nanosError;
+    private final double bytesPerOperation;
+    private final double megabytesPerSecond;
+
+    public BenchmarkResult(String name, double nanosPerOperation, double nanosError, double bytesPerOperation) {
+        this(name, nanosPerOperation, nanosError, bytesPerOperation, 0);
+    }
+
+    public BenchmarkResult(String name, double nanosPerOperation, double nanosError, double bytesPerOperation,
+                           double megabytesPerSecond) {
+        this.name = name;
+        this.nanosPerOperation = nanosPerOperation;
+        this.nanosError = nanosError;
+        this.bytesPerOperation = bytesPerOperation;
+        this.megabytesPerSecond = megabytesPerSecond;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getNanosPerOperation() {
+        return nanosPerOperation;
+    }
+
+    /**
+     * @return the standard deviation of the time per operation over the measured iterations
+     */
+    public double getNanosError() {
+        return nanosError;
+    }
+
+    /**
+     * @return the bytes allocated per operation, or -1 if the virtual machine cannot measure allocations
+     */
+    public double getBytesPerOperation() {
+        return bytesPerOperation;
+    }
+
+    /**
+     * @return the amount of data processed per second in megabytes, or 0 if it does not apply
+     */
+    public double getMegabytesPerSecond() {
+        return megabytesPerSecond;
+    }
+
+    /**
+     * @return the result as a line of the baseline format: the name, the time and the bytes separated by tabs
+     */
+    public String toBaselineLine() {
+        return name + '\t' + nanosPerOperation + '\t' + bytesPerOperation;
+    }
+
+    /**
+     * @param line a line written by {@link #toBaselineLine()}
+     */
+    public static BenchmarkResult fromBaselineLine(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Not a benchmark result: " + line);
+        }
+        return new BenchmarkResult(fields[0], Double.parseDouble(fields[1]), 0, Double.parseDouble(fields[2]));
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format("%-52s %12.1f ns/op %10.1f %12.1f B/op", name, nanosPerOperation, nanosError, bytesPerOperation);
+        return megabytesPerSecond > 0 ? result + String.format(" %10.1f MB/s", megabytesPerSecond) : result;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.oskar.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks and prints the time and the allocated bytes per operation of each one.
+ * The results can be saved as a baseline, and a later run can be compared against it, in
+ * which case the runner exits with status 1 if a benchmark got slower or allocates more than
+ * the tolerance allows. Benchmarks of code that runs every frame promise not to allocate at
+ * all; if one of them allocates anyway, the runner exits with status 1 as well. Run with
+ * -XX:-DoEscapeAnalysis to check that the code itself does not allocate, rather than that
+ * the compiler managed to remove the allocations this time.
+ *
+ * Options:
+ * --warmup n       the amount of warmup iterations (5)
+ * --iterations n   the amount of measured iterations (10)
+ * --time ms        the length of an iteration in milliseconds (200)
+ * --filter text    only run the benchmarks whose name contains the text
+ * --save file      write the results to the file, to be used as a baseline later
+ * --baseline file  compare the results to the ones in the file
+ * --tolerance f    the fraction by which a result may be worse than the baseline (0.10)
+ *
+ * @author Oskar Veerhoek
+ */
+public class BenchmarkRunner {
+
+    private int warmupIterations = 5;
+    private int measuredIterations = 10;
+    private long iterationNanos = 200L * 1000000L;
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    public BenchmarkRunner() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    /**
+     * @return all the benchmarks, in the order in which they are run
+     */
+    public static List<Benchmark> getBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.add(new LoadFileToStringBenchmark());
+        benchmarks.add(new LoadFileToBufferBenchmark());
+        benchmarks.add(new ArchiveLoadBenchmark());
+        benchmarks.add(new ResourceSystemCreateBenchmark());
+        benchmarks.add(new PropertyLookupBenchmark(true));
+        benchmarks.add(new PropertyLookupBenchmark(false));
+        benchmarks.add(new LogicUpdateBenchmark());
+        benchmarks.add(new EntityIterationBenchmark(false));
+        benchmarks.add(new EntityIterationBenchmark(true));
+        benchmarks.add(new EntityAddRemoveBenchmark());
+        benchmarks.add(new SpatialPickBenchmark(false));
+        benchmarks.add(new SpatialPickBenchmark(true));
+        benchmarks.add(new SpatialNearestBenchmark());
+        benchmarks.add(new InputDispatchBenchmark());
+        benchmarks.add(new RenderingSubmitBenchmark());
+        benchmarks.add(new FrameBenchmark());
+        benchmarks.add(new VisibilityCullingBenchmark(false));
+        benchmarks.add(new VisibilityCullingBenchmark(true));
+        benchmarks.add(new RenderQueueBenchmark());
+        benchmarks.add(new MatrixTransformBenchmark());
+        benchmarks.add(new TextureDecodeBenchmark());
+        benchmarks.add(new MipmapBenchmark());
+        benchmarks.add(new AtlasBuildBenchmark());
+        benchmarks.add(new ShaderPreprocessBenchmark());
+        benchmarks.add(new FrameProfilerBenchmark(true));
+        benchmarks.add(new FrameProfilerBenchmark(false));
+        return benchmarks;
+    }
+
+    private long allocatedBytes() {
+        return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void invoke(Benchmark benchmark, Blackhole blackhole, long invocations) throws Exception {
+        for (long i = 0; i < invocations; i++) {
+            benchmark.run(blackhole);
+        }
+    }
+
+    /**
+     * Warms up and measures a single benchmark.
+     */
+    public BenchmarkResult run(Benchmark benchmark) throws Exception {
+        Blackhole blackhole = new Blackhole();
+        benchmark.setUp();
+        try {
+            // Find out how many invocations fit in one iteration, which also warms up the code.
+            long invocations = 1;
+            long elapsed;
+            while (true) {
+                long start = System.nanoTime();
+                invoke(benchmark, blackhole, invocations);
+                elapsed = System.nanoTime() - start;
+                if (elapsed >= iterationNanos / 4 || invocations >= Long.MAX_VALUE / 4) {
+                    break;
+                }
+                invocations *= 2;
+            }
+            invocations = Math.max(1, (long) (invocations * ((double) iterationNanos / elapsed)));
+            for (int i = 0; i < warmupIterations; i++) {
+                invoke(benchmark, blackhole, invocations);
+            }
+            double operations = (double) invocations * benchmark.getOperationsPerInvocation();
+            double[] nanosPerOperation = new double[measuredIterations];
+            long totalBytes = 0;
+            for (int i = 0; i < measuredIterations; i++) {
+                long startBytes = allocatedBytes();
+                long start = System.nanoTime();
+                invoke(benchmark, blackhole, invocations);
+                long end = System.nanoTime();
+                totalBytes += allocatedBytes() - startBytes;
+                nanosPerOperation[i] = (end - start) / operations;
+            }
+            blackhole.publish();
+            double mean = 0;
+            for (double value : nanosPerOperation) {
+                mean += value;
+            }
+            mean /= measuredIterations;
+            double variance = 0;
+            for (double value : nanosPerOperation) {
+                variance += (value - mean) * (value - mean);
+            }
+            double error = measuredIterations > 1 ? Math.sqrt(variance / (measuredIterations - 1)) : 0;
+            double bytesPerOperation = threadBean == null ? -1 : totalBytes / (operations * measuredIterations);
+            // Bytes per nanosecond times a thousand is megabytes per second.
+            double megabytesPerSecond = benchmark.getBytesPerInvocation() * 1000.0
+                    / (mean * benchmark.getOperationsPerInvocation());
+            return new BenchmarkResult(benchmark.getName(), mean, error, bytesPerOperation, megabytesPerSecond);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private static Map<String, BenchmarkResult> readBaseline(File file) throws IOException {
+        Map<String, BenchmarkResult> baseline = new HashMap<String, BenchmarkResult>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    BenchmarkResult result = BenchmarkResult.fromBaselineLine(line);
+                    baseline.put(result.getName(), result);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(File file, List<BenchmarkResult> results) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("# name\tns/op\tB/op");
+            for (BenchmarkResult result : results) {
+                writer.println(result.toBaselineLine());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return whether an allocation-free benchmark allocated at least a byte per invocation
+     */
+    private static boolean allocates(Benchmark benchmark, BenchmarkResult result) {
+        return benchmark.isAllocationFree()
+                && result.getBytesPerOperation() * benchmark.getOperationsPerInvocation() >= 1;
+    }
+
+    /**
+     * @return whether the result is worse than the baseline by more than the tolerance
+     */
+    private static boolean isRegression(BenchmarkResult result, BenchmarkResult baseline, double tolerance) {
+        boolean slower = result.getNanosPerOperation() > baseline.getNanosPerOperation() * (1 + tolerance);
+        // A few bytes of difference can come from the measurement itself.
+        boolean allocatesMore = baseline.getBytesPerOperation() >= 0
+                && result.getBytesPerOperation() > baseline.getBytesPerOperation() * (1 + tolerance) + 16;
+        return slower || allocatesMore;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String filter = null;
+        File saveFile = null;
+        File baselineFile = null;
+        double tolerance = 0.10;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            if (option.equals("--warmup")) {
+                runner.warmupIterations = Integer.parseInt(value);
+            } else if (option.equals("--iterations")) {
+                runner.measuredIterations = Math.max(1, Integer.parseInt(value));
+            } else if (option.equals("--time")) {
+                runner.iterationNanos = Long.parseLong(value) * 1000000L;
+            } else if (option.equals("--filter")) {
+                filter = value;
+            } else if (option.equals("--save")) {
+                saveFile = new File(value);
+            } else if (option.equals("--baseline")) {
+                baselineFile = new File(value);
+            } else if (option.equals("--tolerance")) {
+                tolerance = Double.parseDouble(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        // Measure the engine the way it runs in a release, not while it writes debug logs.
+        Logger.getRootLogger().setLevel(Level.WARN);
+        if (runner.threadBean == null) {
+            System.out.println("Allocations cannot be measured on this virtual machine");
+        }
+        Map<String, BenchmarkResult> baseline = baselineFile == null
+                ? new HashMap<String, BenchmarkResult>() : readBaseline(baselineFile);
+        List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+        int regressions = 0;
+        int allocating = 0;
+        for (Benchmark benchmark : getBenchmarks()) {
+            if (filter != null && !benchmark.getName().contains(filter)) {
+                continue;
+            }
+            BenchmarkResult result = runner.run(benchmark);
+            results.add(result);
+            BenchmarkResult previous = baseline.get(result.getName());
+            if (allocates(benchmark, result)) {
+                allocating++;
+                System.out.println(result + "  ALLOCATES (should not allocate)");
+            } else if (previous != null && isRegression(result, previous, tolerance)) {
+                regressions++;
+                System.out.println(result + String.format("  REGRESSION (baseline %.1f ns/op, %.1f B/op)",
+                        previous.getNanosPerOperation(), previous.getBytesPerOperation()));
+            } else {
+                System.out.println(result);
+            }
+        }
+        if (saveFile != null) {
+            writeBaseline(saveFile, results);
+        }
+        Log.shutdown();
+        if (allocating > 0) {
+            System.out.println(allocating + " benchmarks allocated although they should not");
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmarks regressed by more than " + Math.round(tolerance * 100) + "%");
+        }
+        if (allocating > 0 || regressions > 0) {
+            System.exit(1);
+        }
+    }
+}
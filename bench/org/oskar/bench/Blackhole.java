@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+/**
+ * Takes the results of benchmarked code and combines them into a value that is published
+ * at the end, so the just-in-time compiler cannot prove the results are unused and remove
+ * the code that produced them.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class Blackhole {
+
+    private int sink;
+    /**
+     * Written once per benchmark, so the sink escapes.
+     */
+    public volatile int published;
+
+    public void consume(int value) {
+        sink = sink * 31 + value;
+    }
+
+    public void consume(long value) {
+        consume((int) (value ^ (value >>> 32)));
+    }
+
+    public void consume(float value) {
+        consume(Float.floatToRawIntBits(value));
+    }
+
+    public void consume(boolean value) {
+        consume(value ? 1 : 0);
+    }
+
+    public void consume(Object value) {
+        consume(System.identityHashCode(value));
+    }
+
+    void publish() {
+        published = sink;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.logic.entity.ComponentType;
+import org.oskar.logic.entity.EntityStore;
+
+import static org.oskar.logic.entity.MovementSystem.*;
+
+/**
+ * Measures the structural changes of entities: creating 1000 entities with a position and a
+ * velocity, adding a component to every entity and removing it again, which moves the entity
+ * to another table and back, and destroying them all in a shuffled order.
+ *
+ * @author Oskar Veerhoek
+ */
+public class EntityAddRemoveBenchmark extends Benchmark {
+
+    private static final int ENTITIES = 1000;
+    private static final ComponentType SELECTED = ComponentType.tag("Benchmark selected");
+    private static final ComponentType[] MOVING = {POSITION, VELOCITY};
+
+    private final int[] entities = new int[ENTITIES];
+    private EntityStore store;
+
+    public EntityAddRemoveBenchmark() {
+        super("EntityStore create, add, remove and destroy (per entity)", ENTITIES);
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        store = new EntityStore();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        for (int i = 0; i < ENTITIES; i++) {
+            entities[i] = store.create(MOVING);
+        }
+        for (int i = 0; i < ENTITIES; i++) {
+            store.add(entities[i], SELECTED);
+        }
+        for (int i = 0; i < ENTITIES; i++) {
+            store.remove(entities[i], SELECTED);
+        }
+        // A stride that is coprime with the amount of entities destroys them out of order.
+        for (int i = 0; i < ENTITIES; i++) {
+            store.destroy(entities[(i * 7919) % ENTITIES]);
+        }
+        blackhole.consume(store.size());
+    }
+}
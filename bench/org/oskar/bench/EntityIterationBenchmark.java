@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.logic.entity.ComponentType;
+import org.oskar.logic.entity.EntityStore;
+import org.oskar.logic.entity.MovementSystem;
+import org.oskar.logic.entity.SystemScheduler;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.oskar.logic.entity.MovementSystem.*;
+
+/**
+ * Measures one tick of the movement system over 100,000 entities, spread over two tables,
+ * either on the calling thread or split into chunks on a fork-join pool with a thread per core.
+ *
+ * @author Oskar Veerhoek
+ */
+public class EntityIterationBenchmark extends Benchmark {
+
+    private static final int ENTITIES = 100000;
+    private static final ComponentType MARKER = ComponentType.tag("Benchmark marker");
+
+    private final boolean parallel;
+    private ForkJoinPool pool;
+    private SystemScheduler scheduler;
+
+    /**
+     * @param parallel whether to run the system on a fork-join pool
+     */
+    public EntityIterationBenchmark(boolean parallel) {
+        super(parallel ? "SystemScheduler.run (movement, parallel, per entity)"
+                : "SystemScheduler.run (movement, per entity)", ENTITIES);
+        this.parallel = parallel;
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return !parallel;
+    }
+
+    @Override
+    public void setUp() {
+        EntityStore store = new EntityStore();
+        ComponentType[] moving = {POSITION, VELOCITY};
+        ComponentType[] marked = {POSITION, VELOCITY, MARKER};
+        for (int i = 0; i < ENTITIES; i++) {
+            int entity = store.create(i % 4 == 0 ? marked : moving);
+            store.setFloat(entity, VELOCITY, X, i % 7);
+            store.setFloat(entity, VELOCITY, Y, i % 5);
+            store.setFloat(entity, VELOCITY, Z, i % 3);
+        }
+        pool = parallel ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : null;
+        scheduler = new SystemScheduler(store, pool);
+        scheduler.addSystem(new MovementSystem());
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        scheduler.run(1 / 60f);
+    }
+
+    @Override
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
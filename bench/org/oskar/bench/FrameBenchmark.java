@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.logic.LogicSystem;
+import org.oskar.logic.entity.EntityStore;
+import org.oskar.logic.entity.EntityTable;
+import org.oskar.logic.spatial.EntityPicker;
+import org.oskar.view.RenderingSystem;
+import org.oskar.view.backend.HeadlessGraphicsBackend;
+
+import java.util.Random;
+
+import static org.oskar.logic.entity.MovementSystem.POSITION;
+import static org.oskar.logic.entity.MovementSystem.VELOCITY;
+import static org.oskar.logic.entity.MovementSystem.X;
+import static org.oskar.logic.entity.MovementSystem.Y;
+
+/**
+ * Measures the whole per-frame path of the game loop with 1000 moving entities that can be
+ * picked: a logic tick, the interpolation of its state and the submission of a frame with an
+ * instance per entity. The entities wrap around a world of 1024 by 1024 units, like in a level
+ * with edges, so once the first frames have grown the buffers none of it may allocate.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FrameBenchmark extends Benchmark {
+
+    private static final int ENTITIES = 1000;
+    private static final float WORLD_SIZE = 1024;
+    private static final int WARMUP_FRAMES = 1000;
+    private GameWorld gameWorld;
+    private HeadlessGraphicsBackend backend;
+    private EntityTable table;
+
+    public FrameBenchmark() {
+        super("Frame (logic tick, interpolation and submission of 1000 entities)");
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        gameWorld = createWorld();
+        gameWorld.getInputSystem().create(gameWorld);
+        gameWorld.getLogicSystem().create(gameWorld);
+        gameWorld.getRenderingSystem().create(gameWorld);
+        backend = (HeadlessGraphicsBackend) gameWorld.getRenderingSystem().getBackend();
+        EntityStore entities = gameWorld.getLogicSystem().getEntities();
+        Random random = new Random(42);
+        for (int i = 0; i < ENTITIES; i++) {
+            int entity = entities.create(POSITION, VELOCITY, EntityPicker.EXTENT);
+            entities.setFloat(entity, POSITION, X, random.nextFloat() * WORLD_SIZE);
+            entities.setFloat(entity, POSITION, Y, random.nextFloat() * WORLD_SIZE);
+            entities.setFloat(entity, VELOCITY, X, random.nextFloat() * 64 - 32);
+            entities.setFloat(entity, VELOCITY, Y, random.nextFloat() * 64 - 32);
+            entities.setFloat(entity, EntityPicker.EXTENT, EntityPicker.HALF_WIDTH, 8);
+            entities.setFloat(entity, EntityPicker.EXTENT, EntityPicker.HALF_HEIGHT, 8);
+            table = entities.getTable(entity);
+        }
+        // Let the grid of the picker see every part of the world.
+        Blackhole blackhole = new Blackhole();
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            run(blackhole);
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        LogicSystem logicSystem = gameWorld.getLogicSystem();
+        RenderingSystem renderingSystem = gameWorld.getRenderingSystem();
+        logicSystem.update();
+        logicSystem.interpolate(0.5f);
+        float[] x = table.getFloats(POSITION, X);
+        float[] y = table.getFloats(POSITION, Y);
+        for (int row = 0; row < ENTITIES; row++) {
+            x[row] = wrap(x[row]);
+            y[row] = wrap(y[row]);
+            renderingSystem.getInstanceBatch().add(x[row] / WORLD_SIZE, y[row] / WORLD_SIZE, 0.01f, 0.01f, 1, 1, 1, 1);
+        }
+        renderingSystem.update(0.5f);
+        blackhole.consume(backend.getCommandLog().size());
+        backend.getCommandLog().clear();
+    }
+
+    private static float wrap(float coordinate) {
+        if (coordinate < 0) {
+            return coordinate + WORLD_SIZE;
+        }
+        return coordinate >= WORLD_SIZE ? coordinate - WORLD_SIZE : coordinate;
+    }
+
+    @Override
+    public void tearDown() {
+        gameWorld.getRenderingSystem().destroy();
+        gameWorld.getLogicSystem().destroy();
+        gameWorld.getInputSystem().destroy();
+    }
+}
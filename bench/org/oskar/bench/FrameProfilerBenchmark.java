@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.profiling.FrameProfiler;
+import org.oskar.profiling.ProfilerSection;
+
+/**
+ * Measures what the frame profiler adds to a frame of the game loop: timing five sections and
+ * ending the frame, either with the profiler enabled or disabled.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FrameProfilerBenchmark extends Benchmark {
+
+    private final boolean enabled;
+    private FrameProfiler profiler;
+    private ProfilerSection[] sections;
+
+    /**
+     * @param enabled whether the profiler times the sections
+     */
+    public FrameProfilerBenchmark(boolean enabled) {
+        super(enabled ? "FrameProfiler frame (5 sections)" : "FrameProfiler frame (5 sections, disabled)");
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        GameWorld gameWorld = createWorld();
+        // A long interval keeps the publishing out of the measurement.
+        profiler = new FrameProfiler(gameWorld, enabled ? 3600000 : 0, null);
+        sections = new ProfilerSection[5];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = profiler.addSection("Section " + i);
+        }
+        profiler.start();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        long time = profiler.begin();
+        for (ProfilerSection section : sections) {
+            time = section.record(time);
+        }
+        profiler.endFrame();
+        blackhole.consume(time);
+    }
+
+    @Override
+    public void tearDown() {
+        profiler.stop();
+    }
+}
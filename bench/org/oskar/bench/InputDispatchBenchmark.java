@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.lwjgl.input.Keyboard;
+import org.oskar.GameWorld;
+import org.oskar.application.input.InputEventQueue;
+
+/**
+ * Measures queueing keyboard and mouse events the way the input system does and handing
+ * them to the logic system the way a logic tick does.
+ *
+ * @author Oskar Veerhoek
+ */
+public class InputDispatchBenchmark extends Benchmark {
+
+    private static final int EVENTS = 16;
+    private GameWorld gameWorld;
+    private InputEventQueue eventQueue;
+
+    public InputDispatchBenchmark() {
+        super("InputEventQueue offer and drain (per event)", EVENTS);
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        gameWorld = createWorld();
+        gameWorld.getLogicSystem().create(gameWorld);
+        gameWorld.getInputSystem().create(gameWorld);
+        eventQueue = gameWorld.getInputSystem().getEventQueue();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        for (int i = 0; i < EVENTS; i += 4) {
+            eventQueue.offer(InputEventQueue.KEY_PRESSED, Keyboard.KEY_A, i, i, i);
+            eventQueue.offer(InputEventQueue.KEY_RELEASED, Keyboard.KEY_A, i, i, i);
+            eventQueue.offer(InputEventQueue.MOUSE_PRESSED, 0, i, i, i);
+            eventQueue.offer(InputEventQueue.MOUSE_RELEASED, 0, i, i, i);
+        }
+        blackhole.consume(eventQueue.drain(gameWorld.getLogicSystem()));
+    }
+
+    @Override
+    public void tearDown() {
+        gameWorld.getInputSystem().destroy();
+        gameWorld.getLogicSystem().destroy();
+    }
+}
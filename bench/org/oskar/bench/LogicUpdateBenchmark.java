@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.logic.FrameSnapshot;
+
+/**
+ * Measures a single logic tick with an empty input queue, including storing the snapshot
+ * that the pipelined game loop hands to the rendering system.
+ *
+ * @author Oskar Veerhoek
+ */
+public class LogicUpdateBenchmark extends Benchmark {
+
+    private GameWorld gameWorld;
+    private final FrameSnapshot snapshot = new FrameSnapshot();
+
+    public LogicUpdateBenchmark() {
+        super("LogicSystem.update");
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        gameWorld = createWorld();
+        gameWorld.getLogicSystem().create(gameWorld);
+        gameWorld.getInputSystem().create(gameWorld);
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        gameWorld.getLogicSystem().update();
+        gameWorld.getLogicSystem().storeSnapshot(snapshot);
+        blackhole.consume(snapshot.getBiasZ(1));
+    }
+
+    @Override
+    public void tearDown() {
+        gameWorld.getInputSystem().destroy();
+        gameWorld.getLogicSystem().destroy();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.lwjgl.BufferUtils;
+import org.oskar.math.Mat4;
+import org.oskar.math.MathScratch;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Measures building a model-view-projection matrix from scratch matrices, storing it for a
+ * uniform upload and transforming 1000 positions with it straight into a vertex buffer.
+ *
+ * @author Oskar Veerhoek
+ */
+public class MatrixTransformBenchmark extends Benchmark {
+
+    private static final int POSITIONS = 1000;
+    private final float[] positions = new float[POSITIONS * 3];
+    private final FloatBuffer uniformData = BufferUtils.createFloatBuffer(16);
+    private final FloatBuffer vertexData = BufferUtils.createFloatBuffer(POSITIONS * 3);
+    private float angle;
+
+    public MatrixTransformBenchmark() {
+        super("Mat4.transformPositions into a FloatBuffer (per position)", POSITIONS);
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextFloat() * 100;
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        MathScratch scratch = MathScratch.get();
+        scratch.push();
+        try {
+            angle += 0.01f;
+            Mat4 model = scratch.mat4().identity().translate(50, 50, 0).rotateZ(angle).scale(2, 2, 1);
+            Mat4 transform = scratch.mat4().ortho(0, 800, 0, 600, -1, 1).mul(model);
+            uniformData.clear();
+            transform.store(uniformData);
+            uniformData.flip();
+            vertexData.clear();
+            transform.transformPositions(positions, 0, POSITIONS, vertexData);
+            vertexData.flip();
+            blackhole.consume(vertexData.get(POSITIONS * 3 - 1) + uniformData.get(15));
+        } finally {
+            scratch.pop();
+        }
+    }
+}
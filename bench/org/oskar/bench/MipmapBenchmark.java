@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.application.resources.texture.MipmapGenerator;
+import org.oskar.application.resources.texture.TextureData;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures generating the mipmap chain of a 1024 by 1024 texture on a fork-join pool. The
+ * throughput is given in bytes of level 0.
+ *
+ * @author Oskar Veerhoek
+ */
+public class MipmapBenchmark extends Benchmark {
+
+    private static final int SIZE = 1024;
+    private ForkJoinPool pool;
+    private TextureData texture;
+
+    public MipmapBenchmark() {
+        super("MipmapGenerator.generate (1024x1024)");
+    }
+
+    @Override
+    public long getBytesPerInvocation() {
+        return SIZE * SIZE * TextureData.BYTES_PER_PIXEL;
+    }
+
+    @Override
+    public void setUp() {
+        pool = new ForkJoinPool();
+        texture = new TextureData(SIZE, SIZE, true);
+        ByteBuffer pixels = texture.getPixels();
+        for (int i = 0; i < SIZE * SIZE * TextureData.BYTES_PER_PIXEL; i++) {
+            pixels.put(i, (byte) i);
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        MipmapGenerator.generate(texture, pool);
+        blackhole.consume(texture.getPixels().get(texture.getOffset(texture.getLevelCount() - 1)));
+    }
+
+    @Override
+    public void tearDown() {
+        pool.shutdown();
+        texture.free();
+    }
+}
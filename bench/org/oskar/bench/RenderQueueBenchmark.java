@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.view.RenderQueue;
+import org.oskar.view.backend.HeadlessGraphicsBackend;
+import org.oskar.view.backend.StateCachingBackend;
+
+import java.util.Random;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+
+/**
+ * Measures submitting 10,000 draw commands in random order over 4 layers, 8 shader programs
+ * and 64 textures, sorting them and issuing them to a headless backend.
+ *
+ * @author Oskar Veerhoek
+ */
+public class RenderQueueBenchmark extends Benchmark {
+
+    private static final int COMMANDS = 10000;
+    private final long[] keys = new long[COMMANDS];
+    private HeadlessGraphicsBackend backend;
+    private RenderQueue queue;
+
+    public RenderQueueBenchmark() {
+        super("RenderQueue submit, sort and execute (per command)", COMMANDS);
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < COMMANDS; i++) {
+            keys[i] = RenderQueue.key(random.nextInt(4), 1 + random.nextInt(8), 1 + random.nextInt(64),
+                    RenderQueue.quantiseDepth(random.nextFloat()));
+        }
+        backend = new HeadlessGraphicsBackend();
+        queue = new RenderQueue(new StateCachingBackend(backend));
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        for (int i = 0; i < COMMANDS; i++) {
+            queue.submit(keys[i], 1, GL_TRIANGLES, 6, 0);
+        }
+        queue.execute();
+        blackhole.consume(queue.getTextureSwitchesPerFrame());
+        backend.getCommandLog().clear();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.view.RenderingSystem;
+import org.oskar.view.backend.HeadlessGraphicsBackend;
+
+/**
+ * Measures the CPU-side cost of submitting a frame: filling the quad and instance batches
+ * and issuing the OpenGL calls to a headless backend that only records them.
+ *
+ * @author Oskar Veerhoek
+ */
+public class RenderingSubmitBenchmark extends Benchmark {
+
+    private static final int QUADS = 1000;
+    private static final int INSTANCES = 1000;
+    private static final int TEXTURES = 4;
+    private GameWorld gameWorld;
+    private HeadlessGraphicsBackend backend;
+
+    public RenderingSubmitBenchmark() {
+        super("RenderingSystem.update (1000 quads, 1000 instances)");
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        gameWorld = createWorld();
+        gameWorld.getRenderingSystem().create(gameWorld);
+        backend = (HeadlessGraphicsBackend) gameWorld.getRenderingSystem().getBackend();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        RenderingSystem renderingSystem = gameWorld.getRenderingSystem();
+        for (int i = 0; i < QUADS; i++) {
+            renderingSystem.getQuadBatch().add(i, i, 1, 1, 1, 1, 1, i * TEXTURES / QUADS, 0, 0, 1, 1);
+        }
+        for (int i = 0; i < INSTANCES; i++) {
+            // Spread over the view, so the culler keeps all of them.
+            float position = i * 2f / INSTANCES - 1;
+            renderingSystem.getInstanceBatch().add(position, position, 0.01f, 0.01f, 1, 1, 1, 1);
+        }
+        renderingSystem.update(0.5f);
+        blackhole.consume(backend.getCommandLog().size());
+        backend.getCommandLog().clear();
+    }
+
+    @Override
+    public void tearDown() {
+        gameWorld.getRenderingSystem().destroy();
+    }
+}
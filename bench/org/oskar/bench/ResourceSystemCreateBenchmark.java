@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.application.resources.ResourceSystem;
+
+/**
+ * Measures creating the resource system, waiting until both shaders are loaded and destroying
+ * it again. The loading happens on the loader threads, so the allocated bytes only include
+ * what the calling thread allocates.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ResourceSystemCreateBenchmark extends Benchmark {
+
+    private GameWorld gameWorld;
+
+    public ResourceSystemCreateBenchmark() {
+        super("ResourceSystem.create");
+    }
+
+    @Override
+    public void setUp() {
+        gameWorld = createWorld();
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        ResourceSystem resourceSystem = gameWorld.getResourceSystem();
+        resourceSystem.create(gameWorld);
+        blackhole.consume(resourceSystem.getTextFileContent("RESOURCE_VERTEX_SHADER"));
+        blackhole.consume(resourceSystem.getTextFileContent("RESOURCE_FRAGMENT_SHADER"));
+        resourceSystem.destroy();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.GameWorld;
+import org.oskar.view.shader.IncludeResolver;
+import org.oskar.view.shader.ShaderPreprocessor;
+import org.oskar.view.shader.ShaderProgramCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.oskar.GameProperties.RESOURCE_FRAGMENT_SHADER;
+import static org.oskar.GameProperties.RESOURCE_VERTEX_SHADER;
+
+/**
+ * Measures preprocessing the vertex and fragment shader with two defines and hashing them
+ * into the key of their program, which is the work that is left on a launch that loads the
+ * program from its binary.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ShaderPreprocessBenchmark extends Benchmark {
+
+    private final Map<String, String> defines = new HashMap<String, String>();
+    private ShaderPreprocessor preprocessor;
+    private String vertexName;
+    private String vertexSource;
+    private String fragmentName;
+    private String fragmentSource;
+
+    public ShaderPreprocessBenchmark() {
+        super("ShaderPreprocessor.preprocess + computeKey");
+    }
+
+    @Override
+    public void setUp() {
+        final GameWorld gameWorld = createWorld();
+        preprocessor = new ShaderPreprocessor(new IncludeResolver() {
+            @Override
+            public String resolve(String name) {
+                return gameWorld.getFileSystem().loadFileToString(new File(name), true);
+            }
+        });
+        vertexName = gameWorld.getProperty(RESOURCE_VERTEX_SHADER);
+        vertexSource = gameWorld.getFileSystem().loadFileToString(new File(vertexName), true);
+        fragmentName = gameWorld.getProperty(RESOURCE_FRAGMENT_SHADER);
+        fragmentSource = gameWorld.getFileSystem().loadFileToString(new File(fragmentName), true);
+        defines.put("MAX_INSTANCES", "1024");
+        defines.put("USE_BIAS", "");
+    }
+
+    @Override
+    public void run(Blackhole blackhole) throws IOException {
+        String vertexShader = preprocessor.preprocess(vertexName, vertexSource, defines).getText();
+        String fragmentShader = preprocessor.preprocess(fragmentName, fragmentSource, defines).getText();
+        blackhole.consume(ShaderProgramCache.computeKey("driver", vertexShader, fragmentShader).length());
+    }
+}
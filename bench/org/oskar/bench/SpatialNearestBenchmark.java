@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.logic.spatial.IntList;
+import org.oskar.logic.spatial.SpatialGrid;
+
+import java.util.Random;
+
+/**
+ * Measures keeping a {@link SpatialGrid} of 10,000 moving items up to date and asking it for
+ * the item nearest to 100 points: every invocation moves every item by up to 2 units, which
+ * is what a tick of the logic does, and then runs the nearest-neighbour queries.
+ *
+ * @author Oskar Veerhoek
+ */
+public class SpatialNearestBenchmark extends Benchmark {
+
+    private static final int ITEMS = 10000;
+    private static final int QUERIES = 100;
+    private static final float WORLD_SIZE = 4096;
+
+    private final float[] x = new float[ITEMS];
+    private final float[] y = new float[ITEMS];
+    private final float[] velocityX = new float[ITEMS];
+    private final float[] velocityY = new float[ITEMS];
+    private final float[] queryX = new float[QUERIES];
+    private final float[] queryY = new float[QUERIES];
+    private final IntList nearest = new IntList();
+    private SpatialGrid grid;
+
+    public SpatialNearestBenchmark() {
+        super("SpatialGrid update 10,000 moving items and 100 nearest queries");
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(42);
+        grid = new SpatialGrid(64);
+        for (int i = 0; i < ITEMS; i++) {
+            x[i] = random.nextFloat() * WORLD_SIZE;
+            y[i] = random.nextFloat() * WORLD_SIZE;
+            velocityX[i] = random.nextFloat() * 4 - 2;
+            velocityY[i] = random.nextFloat() * 4 - 2;
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            queryX[i] = random.nextFloat() * WORLD_SIZE;
+            queryY[i] = random.nextFloat() * WORLD_SIZE;
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        for (int i = 0; i < ITEMS; i++) {
+            x[i] += velocityX[i];
+            y[i] += velocityY[i];
+            grid.update(i, x[i] - 8, y[i] - 8, x[i] + 8, y[i] + 8);
+        }
+        nearest.clear();
+        for (int i = 0; i < QUERIES; i++) {
+            grid.findNearest(queryX[i], queryY[i], 256, nearest);
+        }
+        blackhole.consume(nearest.size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.logic.spatial.IntList;
+import org.oskar.logic.spatial.SpatialGrid;
+
+import java.util.Random;
+
+/**
+ * Measures picking the rectangles under 100 points among 10,000 rectangles of 8 to 64 units
+ * spread over 4096 by 4096 units, either through a {@link SpatialGrid} or by testing every
+ * rectangle, which is what picking did without an index.
+ *
+ * @author Oskar Veerhoek
+ */
+public class SpatialPickBenchmark extends Benchmark {
+
+    private static final int ITEMS = 10000;
+    private static final int PICKS = 100;
+    private static final float WORLD_SIZE = 4096;
+
+    private final boolean bruteForce;
+    private final float[] minX = new float[ITEMS];
+    private final float[] minY = new float[ITEMS];
+    private final float[] maxX = new float[ITEMS];
+    private final float[] maxY = new float[ITEMS];
+    private final float[] pickX = new float[PICKS];
+    private final float[] pickY = new float[PICKS];
+    private final IntList hits = new IntList();
+    private SpatialGrid grid;
+
+    /**
+     * @param bruteForce whether to test every rectangle instead of using the grid
+     */
+    public SpatialPickBenchmark(boolean bruteForce) {
+        super(bruteForce ? "Brute force point pick (10,000 items, per pick)"
+                : "SpatialGrid.queryPoint (10,000 items, per pick)", PICKS);
+        this.bruteForce = bruteForce;
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return true;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(42);
+        grid = new SpatialGrid(64);
+        for (int i = 0; i < ITEMS; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float y = random.nextFloat() * WORLD_SIZE;
+            float halfWidth = 4 + random.nextFloat() * 28;
+            float halfHeight = 4 + random.nextFloat() * 28;
+            minX[i] = x - halfWidth;
+            minY[i] = y - halfHeight;
+            maxX[i] = x + halfWidth;
+            maxY[i] = y + halfHeight;
+            grid.update(i, minX[i], minY[i], maxX[i], maxY[i]);
+        }
+        for (int i = 0; i < PICKS; i++) {
+            pickX[i] = random.nextFloat() * WORLD_SIZE;
+            pickY[i] = random.nextFloat() * WORLD_SIZE;
+        }
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        hits.clear();
+        for (int pick = 0; pick < PICKS; pick++) {
+            float x = pickX[pick];
+            float y = pickY[pick];
+            if (bruteForce) {
+                for (int i = 0; i < ITEMS; i++) {
+                    if (minX[i] <= x && maxX[i] >= x && minY[i] <= y && maxY[i] >= y) {
+                        hits.add(i);
+                    }
+                }
+            } else {
+                grid.queryPoint(x, y, hits);
+            }
+        }
+        blackhole.consume(hits.size());
+    }
+}
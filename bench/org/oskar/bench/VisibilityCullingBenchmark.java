@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.bench;
+
+import org.oskar.view.InstanceBatch;
+import org.oskar.view.VisibilityCuller;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures culling 100,000 instances spread over three times the width and height of the
+ * view, so about one in nine is visible, either on the calling thread or in chunks on a
+ * fork-join pool with a thread per core.
+ *
+ * @author Oskar Veerhoek
+ */
+public class VisibilityCullingBenchmark extends Benchmark {
+
+    private static final int INSTANCES = 100000;
+    private final boolean parallel;
+    private final float[] instances = new float[INSTANCES * InstanceBatch.FLOATS_PER_INSTANCE];
+    private ForkJoinPool pool;
+    private VisibilityCuller culler;
+
+    /**
+     * @param parallel whether to cull on a fork-join pool
+     */
+    public VisibilityCullingBenchmark(boolean parallel) {
+        super(parallel ? "VisibilityCuller.cull (parallel, per instance)"
+                : "VisibilityCuller.cull (per instance)", INSTANCES);
+        this.parallel = parallel;
+    }
+
+    @Override
+    public boolean isAllocationFree() {
+        return !parallel;
+    }
+
+    @Override
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < INSTANCES; i++) {
+            int index = i * InstanceBatch.FLOATS_PER_INSTANCE;
+            instances[index] = random.nextFloat() * 6 - 3;
+            instances[index + 1] = random.nextFloat() * 6 - 3;
+            instances[index + 2] = 0.01f;
+            instances[index + 3] = 0.01f;
+        }
+        if (parallel) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        culler = new VisibilityCuller(pool);
+    }
+
+    @Override
+    public void run(Blackhole blackhole) {
+        blackhole.consume(culler.cull(instances, 0, InstanceBatch.FLOATS_PER_INSTANCE, INSTANCES));
+    }
+
+    @Override
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
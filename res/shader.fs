@@ -30,12 +30,23 @@
 #version 150 core
 
 uniform vec4 bias;
+#ifdef TEXTURED
+// Bound to texture unit 0. Untextured quads are drawn with a white texture.
+uniform sampler2D quad_texture;
+#endif
 
 smooth in vec3 varying_colour;
+smooth in vec4 varying_bias;
+#ifdef TEXTURED
+smooth in vec2 varying_texcoord;
+#endif
 
 out vec4 fragment_colour;
 
 void main()
 {
-    fragment_colour = vec4(varying_colour, 1) * bias;
+    fragment_colour = vec4(varying_colour, 1) * bias * varying_bias;
+#ifdef TEXTURED
+    fragment_colour *= texture(quad_texture, varying_texcoord);
+#endif
 }
\ No newline at end of file
@@ -31,11 +31,31 @@
 
 in vec4 vertex_position;
 in vec3 vertex_colour;
+#ifdef TEXTURED
+// The variant the quad batch draws with, which has no instances.
+in vec2 vertex_texcoord;
+#else
+// Per-instance offset (xy) and scale (zw). (0, 0, 1, 1) when not drawing instanced.
+in vec4 instance_transform;
+// Per-instance colour bias. (1, 1, 1, 1) when not drawing instanced.
+in vec4 instance_bias;
+#endif
 
 smooth out vec3 varying_colour;
+smooth out vec4 varying_bias;
+#ifdef TEXTURED
+smooth out vec2 varying_texcoord;
+#endif
 
 void main()
 {
     varying_colour = vertex_colour;
+#ifdef TEXTURED
+    varying_bias = vec4(1, 1, 1, 1);
+    varying_texcoord = vertex_texcoord;
     gl_Position = vertex_position;
+#else
+    varying_bias = instance_bias;
+    gl_Position = vec4(vertex_position.xy * instance_transform.zw + instance_transform.xy, vertex_position.zw);
+#endif
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar;
+
+/**
+ * Splits the time that passes between frames into ticks of a fixed length, so the game
+ * logic advances at the same rate regardless of how fast frames are drawn. Time that is
+ * left over after the last whole tick is carried over to the next frame and exposed as
+ * an interpolation alpha, which tells how far the current frame lies between the last
+ * two ticks. When frames take so long that more than a maximum amount of ticks would
+ * be needed to catch up, the excess time is dropped so the game slows down instead of
+ * falling further and further behind.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FixedTimestep {
+
+    private final long tickNanos;
+    private final int maxCatchUpSteps;
+    private long previousTime;
+    private long accumulator;
+    private long ticks;
+    private long droppedNanos;
+
+    /**
+     * @param ticksPerSecond the amount of ticks per second
+     * @param maxCatchUpSteps the maximum amount of ticks that are run in a single frame
+     */
+    public FixedTimestep(int ticksPerSecond, int maxCatchUpSteps) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("The tick rate has to be positive: " + ticksPerSecond);
+        }
+        if (maxCatchUpSteps <= 0) {
+            throw new IllegalArgumentException("The maximum amount of catch-up steps has to be positive: " + maxCatchUpSteps);
+        }
+        this.tickNanos = 1000000000L / ticksPerSecond;
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Starts measuring time from the given moment.
+     * @param now the current time in nanoseconds, as returned by System.nanoTime()
+     */
+    public void start(long now) {
+        previousTime = now;
+        accumulator = 0;
+    }
+
+    /**
+     * Adds the time that passed since the previous call.
+     * @param now the current time in nanoseconds, as returned by System.nanoTime()
+     * @return the amount of ticks that have to be run this frame
+     */
+    public int advance(long now) {
+        accumulator += now - previousTime;
+        previousTime = now;
+        long steps = accumulator / tickNanos;
+        if (steps > maxCatchUpSteps) {
+            long dropped = (steps - maxCatchUpSteps) * tickNanos;
+            droppedNanos += dropped;
+            accumulator -= dropped;
+            steps = maxCatchUpSteps;
+        }
+        accumulator -= steps * tickNanos;
+        ticks += steps;
+        return (int) steps;
+    }
+
+    /**
+     * @return how far the current frame lies between the last tick and the next one, from 0 to 1
+     */
+    public float getAlpha() {
+        return (float) accumulator / tickNanos;
+    }
+
+    /**
+     * @return the time until the next tick is due, in nanoseconds
+     */
+    public long getNanosUntilNextTick() {
+        return tickNanos - accumulator;
+    }
+
+    /**
+     * @return the length of a tick in nanoseconds
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return the length of a tick in seconds
+     */
+    public float getTickSeconds() {
+        return tickNanos / 1e9f;
+    }
+
+    /**
+     * @return the amount of ticks that have been run
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the amount of time that was dropped because the logic could not keep up, in nanoseconds
+     */
+    public long getDroppedNanos() {
+        return droppedNanos;
+    }
+}
@@ -32,6 +32,10 @@ package org.oskar;
 import org.oskar.GameWorld;
 
 /**
+ * A part of the game world with its own life cycle. The game world creates the modules in the
+ * order of their dependencies, creating modules that do not depend on each other concurrently
+ * unless they need the context thread, and destroys them in the reverse order.
+ *
  * @author Oskar Veerhoek
  */
 public interface GameModule {
@@ -50,4 +54,14 @@ public interface GameModule {
      * @return the game world in which the module was created
      */
     public GameWorld getGameWorld();
+
+    /**
+     * @return the classes of the modules that have to be created before this one
+     */
+    public Class<?>[] getDependencies();
+
+    /**
+     * @return the thread the module has to be created on
+     */
+    public ThreadAffinity getThreadAffinity();
 }
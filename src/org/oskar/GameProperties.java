@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar;
+
+import org.oskar.property.IntProperty;
+import org.oskar.property.StringProperty;
+
+/**
+ * The properties the game world and its modules are configured with.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class GameProperties {
+
+    public static final StringProperty WINDOW_TITLE = StringProperty.create("WINDOW_TITLE");
+    public static final IntProperty WINDOW_WIDTH = IntProperty.create("WINDOW_WIDTH");
+    public static final IntProperty WINDOW_HEIGHT = IntProperty.create("WINDOW_HEIGHT");
+    public static final StringProperty FILE_SYSTEM_ARCHIVE = StringProperty.create("FILE_SYSTEM_ARCHIVE");
+    public static final StringProperty RESOURCE_VERTEX_SHADER = StringProperty.create("RESOURCE_VERTEX_SHADER");
+    public static final StringProperty RESOURCE_FRAGMENT_SHADER = StringProperty.create("RESOURCE_FRAGMENT_SHADER");
+    public static final IntProperty RESOURCE_LOADER_THREADS = IntProperty.create("RESOURCE_LOADER_THREADS");
+    public static final IntProperty RESOURCE_UPLOAD_TIME_BUDGET = IntProperty.create("RESOURCE_UPLOAD_TIME_BUDGET");
+    public static final IntProperty RESOURCE_UPLOAD_BYTE_BUDGET = IntProperty.create("RESOURCE_UPLOAD_BYTE_BUDGET");
+    public static final IntProperty RESOURCE_CACHE_BUDGET = IntProperty.create("RESOURCE_CACHE_BUDGET");
+    public static final StringProperty RESOURCE_WATCH_DIRECTORIES = StringProperty.create("RESOURCE_WATCH_DIRECTORIES");
+    public static final IntProperty RESOURCE_WATCH_DELAY = IntProperty.create("RESOURCE_WATCH_DELAY");
+    public static final StringProperty RENDERING_ERROR_CHECK_MODE = StringProperty.create("RENDERING_ERROR_CHECK_MODE");
+    public static final IntProperty RENDERING_ERROR_CHECK_INTERVAL = IntProperty.create("RENDERING_ERROR_CHECK_INTERVAL");
+    public static final StringProperty RENDERING_SHADER_CACHE = StringProperty.create("RENDERING_SHADER_CACHE");
+    public static final IntProperty RENDERING_CULLING_THREADS = IntProperty.create("RENDERING_CULLING_THREADS");
+    public static final IntProperty LOGIC_TICK_RATE = IntProperty.create("LOGIC_TICK_RATE");
+    public static final IntProperty LOGIC_MAX_CATCH_UP_STEPS = IntProperty.create("LOGIC_MAX_CATCH_UP_STEPS");
+    public static final IntProperty LOGIC_THREADS = IntProperty.create("LOGIC_THREADS");
+    public static final IntProperty LOGIC_PICK_CELL_SIZE = IntProperty.create("LOGIC_PICK_CELL_SIZE");
+    public static final IntProperty RENDER_FRAME_RATE = IntProperty.create("RENDER_FRAME_RATE");
+    public static final StringProperty GAME_LOOP_MODE = StringProperty.create("GAME_LOOP_MODE");
+    public static final IntProperty INPUT_EVENT_QUEUE_CAPACITY = IntProperty.create("INPUT_EVENT_QUEUE_CAPACITY");
+    public static final IntProperty PROFILER_INTERVAL = IntProperty.create("PROFILER_INTERVAL");
+    public static final StringProperty PROFILER_DUMP_FILE = StringProperty.create("PROFILER_DUMP_FILE");
+
+    private GameProperties() {}
+}
@@ -29,18 +29,34 @@
 
 package org.oskar;
 
-import org.apache.log4j.Logger;
+import org.apache.log4j.Level;
 import org.oskar.application.file.FileSystem;
 import org.oskar.application.input.InputSystem;
+import org.oskar.logging.Log;
+import org.oskar.logic.FrameSnapshot;
 import org.oskar.logic.LogicSystem;
+import org.oskar.profiling.FrameProfiler;
+import org.oskar.profiling.ProfilerSection;
 import org.oskar.view.RenderingSystem;
+import org.oskar.view.backend.GraphicsBackend;
+import org.oskar.view.backend.LWJGLGraphicsBackend;
+
+import static org.oskar.GameProperties.*;
 import org.oskar.application.resources.ResourceSystem;
 import org.oskar.application.window.WindowingSystem;
+import org.oskar.property.FloatProperty;
+import org.oskar.property.IntProperty;
+import org.oskar.property.PropertyKey;
+import org.oskar.property.PropertyRegistry;
+import org.oskar.property.StringProperty;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author Oskar Veerhoek
@@ -48,14 +64,33 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class GameWorld {
 
     private WindowingSystem windowingSystem = new WindowingSystem();
-    private RenderingSystem renderingSystem = new RenderingSystem();
+    private RenderingSystem renderingSystem;
     private FileSystem fileSystem = new FileSystem();
     private ResourceSystem resourceSystem = new ResourceSystem();
     private LogicSystem logicSystem = new LogicSystem();
     private InputSystem inputSystem = new InputSystem();
-    private Map<String, String> stringProperties = new HashMap<String, String>();
-    private Map<String, Integer> integerProperties = new HashMap<String, Integer>();
+    private PropertyRegistry properties = new PropertyRegistry();
     private boolean isCreated = false;
+    /**
+     * The modules that were created, in the order in which they were created.
+     */
+    private final List<GameModule> createdModules = new ArrayList<GameModule>();
+    private FixedTimestep timestep;
+    private FrameProfiler profiler;
+    private ProfilerSection inputSection;
+    private ProfilerSection logicSection;
+    private ProfilerSection resourceSection;
+    private ProfilerSection renderingSection;
+    private ProfilerSection windowingSection;
+    /**
+     * The amount of frames drawn since the game loop started.
+     */
+    private AtomicLong renderFrame = new AtomicLong();
+    /**
+     * The sum and amount of pipeline latencies measured in the pipelined game loop, in frames.
+     */
+    private long pipelineLatencySum;
+    private long pipelineLatencyCount;
     private AtomicBoolean flaggedForDestruction = new AtomicBoolean(false);
 
     public void setFlaggedForDestruction(boolean value) {
@@ -70,6 +105,16 @@ public class GameWorld {
      * Sets the "created" state to true.
      */
     public GameWorld() {
+        this(new LWJGLGraphicsBackend());
+    }
+
+    /**
+     * Sets the "created" state to true and lets the rendering system draw through the given
+     * backend, e.g. a {@link org.oskar.view.backend.HeadlessGraphicsBackend} to run without a display.
+     * @param graphicsBackend the backend through which the rendering system makes its OpenGL calls
+     */
+    public GameWorld(GraphicsBackend graphicsBackend) {
+        renderingSystem = new RenderingSystem(graphicsBackend);
         isCreated = true;
     }
 
@@ -78,23 +123,54 @@ public class GameWorld {
      */
     public void destroy() {
         info(GameWorld.class, "Destroying game world");
-        inputSystem.destroy();
-        logicSystem.destroy();
-        renderingSystem.destroy();
-        windowingSystem.destroy();
-        resourceSystem.destroy();
-        fileSystem.destroy();
+        // Every module is destroyed before the modules it depends on.
+        List<GameModule> modules = new ArrayList<GameModule>(createdModules);
+        Collections.reverse(modules);
+        for (GameModule module : modules) {
+            module.destroy();
+        }
+        createdModules.clear();
         isCreated = false;
         info(GameWorld.class, "Done destroying game world");
     }
 
+    /**
+     * @param sender the class from which the log would be sent
+     * @return whether debug logs from the class are printed out
+     */
+    public boolean isDebugEnabled(Class sender) {
+        return Log.isEnabled(sender, Level.DEBUG);
+    }
+
     /**
      * Prints out a debug log.
      * @param sender the class from which the log is sent
      * @param log the contents of the log
      */
     public void debug(Class sender, String log) {
-        Logger.getLogger(sender).debug(log);
+        Log.log(sender, Level.DEBUG, log);
+    }
+
+    /**
+     * Prints out a debug log in which "{}" is replaced by the argument. The log is only
+     * put together when debug logs from the sender are printed out.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param argument the value that replaces "{}"
+     */
+    public void debug(Class sender, String format, Object argument) {
+        Log.log(sender, Level.DEBUG, format, argument);
+    }
+
+    /**
+     * Prints out a debug log in which the two occurrences of "{}" are replaced by the arguments.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param first the value that replaces the first "{}"
+     * @param second the value that replaces the second "{}"
+     */
+    public void debug(Class sender, String format, Object first, Object second) {
+        Log.log(sender, Level.DEBUG, format, first, second);
     }
 
     /**
@@ -103,7 +179,28 @@ public class GameWorld {
      * @param log the contents of the log
      */
     public void info(Class sender, String log) {
-        Logger.getLogger(sender).info(log);
+        Log.log(sender, Level.INFO, log);
+    }
+
+    /**
+     * Prints out an info log in which "{}" is replaced by the argument.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param argument the value that replaces "{}"
+     */
+    public void info(Class sender, String format, Object argument) {
+        Log.log(sender, Level.INFO, format, argument);
+    }
+
+    /**
+     * Prints out an info log in which the two occurrences of "{}" are replaced by the arguments.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param first the value that replaces the first "{}"
+     * @param second the value that replaces the second "{}"
+     */
+    public void info(Class sender, String format, Object first, Object second) {
+        Log.log(sender, Level.INFO, format, first, second);
     }
 
     /**
@@ -112,7 +209,28 @@ public class GameWorld {
      * @param log the contents of the log
      */
     public void warn(Class sender, String log) {
-        Logger.getLogger(sender).warn(log);
+        Log.log(sender, Level.WARN, log);
+    }
+
+    /**
+     * Prints out a warning log in which "{}" is replaced by the argument.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param argument the value that replaces "{}"
+     */
+    public void warn(Class sender, String format, Object argument) {
+        Log.log(sender, Level.WARN, format, argument);
+    }
+
+    /**
+     * Prints out a warning log in which the two occurrences of "{}" are replaced by the arguments.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param first the value that replaces the first "{}"
+     * @param second the value that replaces the second "{}"
+     */
+    public void warn(Class sender, String format, Object first, Object second) {
+        Log.log(sender, Level.WARN, format, first, second);
     }
 
     /**
@@ -121,7 +239,7 @@ public class GameWorld {
      * @param e the exception that occurred
      */
     public void fatal(Class sender, Exception e) {
-        Logger.getLogger(sender).fatal("", e);
+        Log.log(sender, Level.FATAL, "", e);
         setFlaggedForDestruction(true);
     }
 
@@ -132,7 +250,7 @@ public class GameWorld {
      * @param e the exception that occurred
      */
     public void fatal(Class sender, String log, Exception e) {
-        Logger.getLogger(sender).fatal(log, e);
+        Log.log(sender, Level.FATAL, log, e);
         setFlaggedForDestruction(true);
     }
 
@@ -142,7 +260,7 @@ public class GameWorld {
      * @param log the contents of the log
      */
     public void fatal(Class sender, String log) {
-        Logger.getLogger(sender).fatal(log);
+        Log.log(sender, Level.FATAL, log);
         setFlaggedForDestruction(true);
     }
 
@@ -152,7 +270,7 @@ public class GameWorld {
      * @param e the exception that occurred
      */
     public void error(Class sender, Exception e) {
-        Logger.getLogger(sender).error("", e);
+        Log.log(sender, Level.ERROR, "", e);
     }
 
     /**
@@ -162,7 +280,7 @@ public class GameWorld {
      * @param e the exception that occurred
      */
     public void error(Class sender, String log, Exception e) {
-        Logger.getLogger(sender).error(log, e);
+        Log.log(sender, Level.ERROR, log, e);
     }
 
     /**
@@ -171,7 +289,17 @@ public class GameWorld {
      * @param log the contents of the log
      */
     public void error(Class sender, String log) {
-        Logger.getLogger(sender).error(log);
+        Log.log(sender, Level.ERROR, log);
+    }
+
+    /**
+     * Prints out an error log in which "{}" is replaced by the argument.
+     * @param sender the class from which the log is sent
+     * @param format the contents of the log
+     * @param argument the value that replaces "{}"
+     */
+    public void error(Class sender, String format, Object argument) {
+        Log.log(sender, Level.ERROR, format, argument);
     }
 
     /**
@@ -180,49 +308,147 @@ public class GameWorld {
      * - Resource System
      * - Windowing System
      * - Rendering System
+     * - Logic System
+     * - Input System
+     * Modules are created as soon as the modules they depend on are, concurrently where their
+     * thread affinity allows it; see {@link ModuleStartup}.
      */
     public void create() {
         info(GameWorld.class, "Creating game world");
-        debug(GameWorld.class, "Setting properties");
-        setProperty("WINDOW_TITLE", "Core OpenGL - Java w/ LWJGL");
-        setProperty("WINDOW_WIDTH", 640);
-        setProperty("WINDOW_HEIGHT", 480);
-        setProperty("RESOURCE_VERTEX_SHADER", "res/shader.vs");
-        setProperty("RESOURCE_FRAGMENT_SHADER", "res/shader.fs");
-        fileSystem.create(this);
-        resourceSystem.create(this);
-        windowingSystem.create(this);
-        renderingSystem.create(this);
-        logicSystem.create(this);
-        inputSystem.create(this);
+        setDefaultProperties();
+        ModuleStartup startup = new ModuleStartup(this, getModules());
+        try {
+            startup.run();
+        } finally {
+            createdModules.addAll(startup.getCreationOrder());
+        }
+        info(GameWorld.class, "Created the modules in {} ms, critical path: {}",
+                startup.getStartupNanos() / 1000000, startup.describeCriticalPath());
         info(GameWorld.class, "Done creating game world");
     }
 
+    /**
+     * @return all the modules of the game world
+     */
+    public List<GameModule> getModules() {
+        return Arrays.<GameModule>asList(fileSystem, resourceSystem, windowingSystem, renderingSystem,
+                logicSystem, inputSystem);
+    }
+
+    /**
+     * Sets all the properties the modules need to their default values.
+     */
+    public void setDefaultProperties() {
+        debug(GameWorld.class, "Setting properties");
+        setProperty(WINDOW_TITLE, "Core OpenGL - Java w/ LWJGL");
+        setProperty(WINDOW_WIDTH, 640);
+        setProperty(WINDOW_HEIGHT, 480);
+        setProperty(FILE_SYSTEM_ARCHIVE, "res.pak");
+        setProperty(RESOURCE_VERTEX_SHADER, "res/shader.vs");
+        setProperty(RESOURCE_FRAGMENT_SHADER, "res/shader.fs");
+        setProperty(RESOURCE_LOADER_THREADS, 2);
+        setProperty(RESOURCE_UPLOAD_TIME_BUDGET, 2000);
+        setProperty(RESOURCE_UPLOAD_BYTE_BUDGET, 4 * 1024 * 1024);
+        setProperty(RESOURCE_CACHE_BUDGET, 64 * 1024 * 1024);
+        setProperty(RESOURCE_WATCH_DIRECTORIES, "res");
+        setProperty(RESOURCE_WATCH_DELAY, 100);
+        setProperty(RENDERING_ERROR_CHECK_MODE, "DEBUG_CALLBACK");
+        setProperty(RENDERING_ERROR_CHECK_INTERVAL, 60);
+        setProperty(RENDERING_SHADER_CACHE, "cache/shaders");
+        setProperty(RENDERING_CULLING_THREADS, 0);
+        setProperty(LOGIC_TICK_RATE, 60);
+        setProperty(LOGIC_MAX_CATCH_UP_STEPS, 5);
+        setProperty(LOGIC_THREADS, 0);
+        setProperty(LOGIC_PICK_CELL_SIZE, 64);
+        setProperty(RENDER_FRAME_RATE, 0);
+        setProperty(GAME_LOOP_MODE, "SINGLE_THREADED");
+        setProperty(INPUT_EVENT_QUEUE_CAPACITY, 256);
+        setProperty(PROFILER_INTERVAL, 1000);
+        setProperty(PROFILER_DUMP_FILE, "");
+    }
+
+    /**
+     * @return the registry that holds the values of all the properties
+     */
+    public PropertyRegistry getProperties() {
+        return properties;
+    }
+
+    public void setProperty(StringProperty key, String value) {
+        debug(GameWorld.class, "Setting {} to \"{}\"", key, value);
+        properties.set(key, value);
+    }
+
+    public void setProperty(IntProperty key, int value) {
+        debug(GameWorld.class, "Setting {} to {}", key, value);
+        properties.set(key, value);
+    }
+
+    public void setProperty(FloatProperty key, float value) {
+        debug(GameWorld.class, "Setting {} to {}", key, value);
+        properties.set(key, value);
+    }
+
+    /**
+     * @return the value of the property, or null if it was not set
+     */
+    public String getProperty(StringProperty key) {
+        return properties.get(key);
+    }
+
+    /**
+     * @return the value of the property, or 0 if it was not set
+     */
+    public int getProperty(IntProperty key) {
+        return properties.get(key);
+    }
+
+    /**
+     * @return the value of the property, or 0 if it was not set
+     */
+    public float getProperty(FloatProperty key) {
+        return properties.get(key);
+    }
+
+    /**
+     * Sets a string property by name, registering the property if it does not exist yet.
+     */
     public void setProperty(String key, String value) {
-        debug(GameWorld.class, "Setting " + key + " to \"" + value + "\"");
-        stringProperties.put(key, value);
+        setProperty(StringProperty.create(key), value);
     }
 
+    /**
+     * Sets an integer property by name, registering the property if it does not exist yet.
+     */
     public void setProperty(String key, Integer value) {
-        debug(GameWorld.class, "Setting " + key + " to " + value);
-        integerProperties.put(key, value);
+        setProperty(IntProperty.create(key), value);
     }
 
+    /**
+     * Looks up an integer property by name. Prefer {@link #getProperty(IntProperty)}, which does not
+     * have to find the property by its name.
+     */
     public Integer getIntegerProperty(String key) {
-        if (!integerProperties.containsKey(key)) {
+        PropertyKey property = PropertyKey.forName(key);
+        if (!(property instanceof IntProperty) || !properties.isSet(property)) {
             error(GameWorld.class, "Key " + key + " does not exist.");
             return null;
         } else {
-            return integerProperties.get(key);
+            return properties.get((IntProperty) property);
         }
     }
 
+    /**
+     * Looks up a string property by name. Prefer {@link #getProperty(StringProperty)}, which does not
+     * have to find the property by its name.
+     */
     public String getStringProperty(String key) {
-        if (!stringProperties.containsKey(key)) {
+        PropertyKey property = PropertyKey.forName(key);
+        if (!(property instanceof StringProperty) || !properties.isSet(property)) {
             error(GameWorld.class, "Key " + key + " does not exist.");
             return null;
         } else {
-            return stringProperties.get(key);
+            return properties.get((StringProperty) property);
         }
     }
 
@@ -250,12 +476,154 @@ public class GameWorld {
         return resourceSystem;
     }
 
+    /**
+     * @return the clock that decides when the logic system ticks, or null if the game world is not running
+     */
+    public FixedTimestep getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * @return the profiler that times the frames, or null if the game world has not run yet
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @return the average amount of frames between the logic publishing a snapshot and the
+     * rendering system drawing it, in the pipelined game loop
+     */
+    public double getPipelineLatency() {
+        return pipelineLatencyCount == 0 ? 0 : (double) pipelineLatencySum / pipelineLatencyCount;
+    }
+
+    /**
+     * Runs the game loop until the game world is flagged for destruction. The logic system ticks
+     * LOGIC_TICK_RATE times per second regardless of the frame rate, running at most
+     * LOGIC_MAX_CATCH_UP_STEPS ticks at once. Every frame is drawn with the interpolation alpha
+     * between the last two ticks.
+     *
+     * If GAME_LOOP_MODE is PIPELINED the logic system runs on its own thread, otherwise
+     * everything runs on the calling thread.
+     *
+     * The update of every module is timed by the frame profiler unless PROFILER_INTERVAL is 0.
+     */
     public void run() {
+        timestep = new FixedTimestep(getProperty(LOGIC_TICK_RATE), getProperty(LOGIC_MAX_CATCH_UP_STEPS));
+        profiler = new FrameProfiler(this, getProperty(PROFILER_INTERVAL), getProperty(PROFILER_DUMP_FILE));
+        inputSection = profiler.addSection("Input");
+        logicSection = profiler.addSection("Logic");
+        resourceSection = profiler.addSection("Resources");
+        renderingSection = profiler.addSection("Rendering");
+        windowingSection = profiler.addSection("Windowing");
+        profiler.start();
+        timestep.start(System.nanoTime());
+        try {
+            if ("PIPELINED".equals(getProperty(GAME_LOOP_MODE))) {
+                runPipelined();
+                info(GameWorld.class, "Average pipeline latency: {} frames", getPipelineLatency());
+            } else {
+                runSingleThreaded();
+            }
+        } finally {
+            profiler.stop();
+        }
+        info(GameWorld.class, "Ran {} ticks, dropped {} ms", timestep.getTicks(), timestep.getDroppedNanos() / 1000000);
+    }
+
+    private void runSingleThreaded() {
         while (!flaggedForDestruction.get()) {
+            long time = profiler.begin();
             inputSystem.update();
-            logicSystem.update();
-            renderingSystem.update();
+            time = inputSection.record(time);
+            int ticks = timestep.advance(System.nanoTime());
+            for (int tick = 0; tick < ticks; tick++) {
+                logicSystem.update();
+            }
+            float alpha = timestep.getAlpha();
+            logicSystem.interpolate(alpha);
+            time = logicSection.record(time);
+            resourceSystem.update();
+            time = resourceSection.record(time);
+            renderingSystem.update(alpha);
+            time = renderingSection.record(time);
             windowingSystem.update();
+            windowingSection.record(time);
+            renderFrame.incrementAndGet();
+            profiler.endFrame();
+        }
+    }
+
+    /**
+     * Runs the logic system on its own thread, which publishes a snapshot after every batch of
+     * ticks. The calling thread, which owns the OpenGL context, draws the most recent snapshot
+     * every frame and never waits for the logic thread.
+     */
+    private void runPipelined() {
+        final TripleBuffer<FrameSnapshot> snapshots = new TripleBuffer<FrameSnapshot>(
+                new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot());
+        Thread logicThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLogic(snapshots);
+            }
+        }, "Logic");
+        debug(GameWorld.class, "Starting logic thread");
+        logicThread.start();
+        FrameSnapshot snapshot = snapshots.getReadBuffer();
+        float tickNanos = timestep.getTickNanos();
+        while (!flaggedForDestruction.get()) {
+            long time = profiler.begin();
+            inputSystem.update();
+            time = inputSection.record(time);
+            if (snapshots.update()) {
+                snapshot = snapshots.getReadBuffer();
+                pipelineLatencySum += renderFrame.get() - snapshot.getRenderFrame();
+                pipelineLatencyCount++;
+            }
+            float alpha = snapshot.getPublishTime() == 0 ? 1
+                    : Math.min(1, (System.nanoTime() - snapshot.getPublishTime()) / tickNanos);
+            renderingSystem.setBias(snapshot.getBiasX(alpha), snapshot.getBiasY(alpha), snapshot.getBiasZ(alpha));
+            renderingSystem.getRenderQueue().submitAll(snapshot.getDrawCommands());
+            time = profiler.begin();
+            resourceSystem.update();
+            time = resourceSection.record(time);
+            renderingSystem.update(alpha);
+            time = renderingSection.record(time);
+            windowingSystem.update();
+            windowingSection.record(time);
+            renderFrame.incrementAndGet();
+            profiler.endFrame();
+        }
+        try {
+            logicThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        debug(GameWorld.class, "Logic thread stopped");
+    }
+
+    private void runLogic(TripleBuffer<FrameSnapshot> snapshots) {
+        try {
+            while (!flaggedForDestruction.get()) {
+                long time = profiler.begin();
+                int ticks = timestep.advance(System.nanoTime());
+                for (int tick = 0; tick < ticks; tick++) {
+                    logicSystem.update();
+                }
+                if (ticks > 0) {
+                    // Only batches that ticked are timed, so the idle wake-ups do not hide them.
+                    logicSection.record(time);
+                    FrameSnapshot snapshot = snapshots.getWriteBuffer();
+                    logicSystem.storeSnapshot(snapshot);
+                    snapshot.setTiming(timestep.getTicks(), System.nanoTime(), renderFrame.get());
+                    snapshots.publish();
+                }
+                LockSupport.parkNanos(timestep.getNanosUntilNextTick());
+            }
+        } catch (RuntimeException e) {
+            fatal(GameWorld.class, "The logic thread failed", e);
         }
     }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Creates the modules of a game world as a graph of their dependencies. A module is created
+ * as soon as all its dependencies are; modules that can be created on any thread are created
+ * on a pool of startup threads, so modules that do not depend on each other are created
+ * concurrently, while modules that need the context thread are created on the calling thread.
+ * <p>
+ * The time every module took to create is measured, as well as the critical path: the chain
+ * of dependencies that ended last, which is the part of the startup worth making faster.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ModuleStartup {
+
+    private static final int DONE = -1;
+
+    private final GameWorld gameWorld;
+    private final List<GameModule> modules;
+    /**
+     * The indices of the dependencies of every module, and of the modules that depend on it.
+     */
+    private final int[][] dependencies;
+    private final List<List<Integer>> dependents = new ArrayList<List<Integer>>();
+    private final long[] startNanos;
+    private final long[] endNanos;
+    /**
+     * The modules that were created, in the order in which they finished, guarded by itself.
+     */
+    private final List<GameModule> creationOrder = new ArrayList<GameModule>();
+    /**
+     * The amount of dependencies every module is still waiting for.
+     */
+    private AtomicIntegerArray waitingFor;
+    /**
+     * The amount of modules that were started and are not done yet.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+    /**
+     * The modules that are ready to be created on the calling thread, followed by DONE.
+     */
+    private final BlockingQueue<Integer> contextModules = new LinkedBlockingQueue<Integer>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private ExecutorService startupThreads;
+    private long startupStart;
+    private long startupEnd;
+
+    /**
+     * @param modules the modules to create
+     * @throws IllegalArgumentException if a module depends on a module that is not in the list
+     */
+    public ModuleStartup(GameWorld gameWorld, List<GameModule> modules) {
+        this.gameWorld = gameWorld;
+        this.modules = new ArrayList<GameModule>(modules);
+        int count = modules.size();
+        this.dependencies = new int[count][];
+        this.startNanos = new long[count];
+        this.endNanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            dependents.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < count; i++) {
+            Class<?>[] classes = modules.get(i).getDependencies();
+            dependencies[i] = new int[classes.length];
+            for (int d = 0; d < classes.length; d++) {
+                int dependency = indexOf(classes[d]);
+                if (dependency < 0) {
+                    throw new IllegalArgumentException(getName(i) + " depends on " + classes[d].getSimpleName()
+                            + ", which is not one of the modules");
+                }
+                dependencies[i][d] = dependency;
+                dependents.get(dependency).add(i);
+            }
+        }
+    }
+
+    private int indexOf(Class<?> moduleClass) {
+        for (int i = 0; i < modules.size(); i++) {
+            if (moduleClass.isInstance(modules.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getName(int module) {
+        return modules.get(module).getClass().getSimpleName();
+    }
+
+    /**
+     * Creates all the modules and waits until they are created. If a module throws while it is
+     * created, no further modules are started, and the exception is thrown once the modules
+     * that are being created on other threads are done.
+     * @throws IllegalStateException if the dependencies of the modules form a cycle
+     */
+    public void run() {
+        int count = modules.size();
+        waitingFor = new AtomicIntegerArray(count);
+        startupThreads = Executors.newCachedThreadPool(new ThreadFactory() {
+            private int threadCount;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Module startup " + ++threadCount);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        startupStart = System.nanoTime();
+        // Holds off the end of the startup until all the modules without dependencies are started.
+        outstanding.set(1);
+        try {
+            for (int i = 0; i < count; i++) {
+                waitingFor.set(i, dependencies[i].length);
+            }
+            for (int i = 0; i < count; i++) {
+                if (dependencies[i].length == 0) {
+                    start(i);
+                }
+            }
+            finish();
+            // The calling thread creates the modules that need it until all the modules are done.
+            int module;
+            while ((module = contextModules.take()) != DONE) {
+                create(module);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            startupThreads.shutdown();
+            startupEnd = System.nanoTime();
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException("The startup of the modules was interrupted", cause);
+        } else if (creationOrder.size() < count) {
+            throw new IllegalStateException("The dependencies of the modules form a cycle: " + getWaitingModules());
+        }
+    }
+
+    /**
+     * Starts creating a module on a startup thread, or hands it to the calling thread.
+     */
+    private void start(final int module) {
+        outstanding.incrementAndGet();
+        if (modules.get(module).getThreadAffinity() == ThreadAffinity.CONTEXT) {
+            contextModules.add(module);
+            return;
+        }
+        startupThreads.execute(new Runnable() {
+            @Override
+            public void run() {
+                create(module);
+            }
+        });
+    }
+
+    /**
+     * Creates a module, unless another module failed, and starts the modules that only
+     * waited for this one.
+     */
+    private void create(int module) {
+        if (failure.get() == null) {
+            gameWorld.debug(ModuleStartup.class, "Creating {} on {}", getName(module), Thread.currentThread().getName());
+            startNanos[module] = System.nanoTime();
+            try {
+                modules.get(module).create(gameWorld);
+                endNanos[module] = System.nanoTime();
+                gameWorld.info(ModuleStartup.class, "Created {} in {} ms", getName(module), millis(endNanos[module] - startNanos[module]));
+            } catch (Throwable t) {
+                endNanos[module] = System.nanoTime();
+                failure.compareAndSet(null, t);
+            }
+        }
+        if (failure.get() == null) {
+            synchronized (creationOrder) {
+                creationOrder.add(modules.get(module));
+            }
+            for (int dependent : dependents.get(module)) {
+                if (waitingFor.decrementAndGet(dependent) == 0) {
+                    start(dependent);
+                }
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Ends the startup once no module is being created or waiting to be created anymore.
+     */
+    private void finish() {
+        if (outstanding.decrementAndGet() == 0) {
+            contextModules.add(DONE);
+        }
+    }
+
+    private String getWaitingModules() {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < waitingFor.length(); i++) {
+            if (waitingFor.get(i) > 0) {
+                names.add(getName(i));
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * @return the modules that were created, in the order in which they finished; destroying
+     * them in the reverse order destroys every module before its dependencies
+     */
+    public List<GameModule> getCreationOrder() {
+        synchronized (creationOrder) {
+            return new ArrayList<GameModule>(creationOrder);
+        }
+    }
+
+    /**
+     * @return how long the module took to create, in nanoseconds
+     */
+    public long getCreateNanos(GameModule module) {
+        int index = modules.indexOf(module);
+        return endNanos[index] - startNanos[index];
+    }
+
+    /**
+     * @return how long creating all the modules took, in nanoseconds
+     */
+    public long getStartupNanos() {
+        return startupEnd - startupStart;
+    }
+
+    /**
+     * @return the chain of modules that decided how long the startup took: the module that was
+     * created last, preceded by its dependency that was created last, and so on
+     */
+    public List<GameModule> getCriticalPath() {
+        List<GameModule> path = new ArrayList<GameModule>();
+        int module = -1;
+        for (GameModule created : creationOrder) {
+            int index = modules.indexOf(created);
+            if (module < 0 || endNanos[index] > endNanos[module]) {
+                module = index;
+            }
+        }
+        while (module >= 0) {
+            path.add(modules.get(module));
+            int latest = -1;
+            for (int dependency : dependencies[module]) {
+                if (latest < 0 || endNanos[dependency] > endNanos[latest]) {
+                    latest = dependency;
+                }
+            }
+            module = latest;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * @return the critical path, with the time every module on it took to create
+     */
+    public String describeCriticalPath() {
+        StringBuilder description = new StringBuilder();
+        for (GameModule module : getCriticalPath()) {
+            if (description.length() > 0) {
+                description.append(" -> ");
+            }
+            description.append(module.getClass().getSimpleName()).append(" (")
+                    .append(millis(getCreateNanos(module))).append(" ms)");
+        }
+        return description.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands values from one producer thread to one consumer thread without locks and without
+ * either thread ever waiting for the other. There are three slots: the producer fills the
+ * write slot and publishes it, which swaps it with the middle slot; the consumer swaps the
+ * middle slot with its read slot whenever something new was published. The consumer always
+ * sees the most recently published value, and values it was too slow to see are skipped.
+ *
+ * The slots are reused, so a value must not be touched by the producer after it has been
+ * published, and must not be kept by the consumer after the next call to {@link #update()}.
+ *
+ * @author Oskar Veerhoek
+ */
+public class TripleBuffer<T> {
+
+    /**
+     * Set in the middle state when the middle slot holds a value the consumer has not seen yet.
+     */
+    private static final int DIRTY = 4;
+    private static final int INDEX = 3;
+
+    private final Object[] slots;
+    /**
+     * The index of the middle slot, combined with the DIRTY flag.
+     */
+    private final AtomicInteger middle = new AtomicInteger(2);
+    /**
+     * The index of the slot owned by the producer.
+     */
+    private int write = 0;
+    /**
+     * The index of the slot owned by the consumer.
+     */
+    private int read = 1;
+
+    public TripleBuffer(T first, T second, T third) {
+        slots = new Object[]{first, second, third};
+    }
+
+    /**
+     * Called by the producer.
+     * @return the slot to fill before the next call to {@link #publish()}
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) slots[write];
+    }
+
+    /**
+     * Called by the producer. Makes the filled write slot available to the consumer.
+     */
+    public void publish() {
+        write = middle.getAndSet(write | DIRTY) & INDEX;
+    }
+
+    /**
+     * Called by the consumer. Takes the most recently published value, if there is a new one.
+     * @return whether the read slot now holds a newly published value
+     */
+    public boolean update() {
+        if ((middle.get() & DIRTY) == 0) {
+            return false;
+        }
+        read = middle.getAndSet(read) & INDEX;
+        return true;
+    }
+
+    /**
+     * Called by the consumer.
+     * @return the slot holding the value taken by the last successful call to {@link #update()}
+     */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        return (T) slots[read];
+    }
+}
@@ -30,6 +30,7 @@
 package org.oskar.application;
 
 import org.oskar.GameWorld;
+import org.oskar.logging.Log;
 
 /**
  * @author Oskar Veerhoek
@@ -40,6 +41,7 @@ public class Main {
         gameWorld.create();
         gameWorld.run();
         gameWorld.destroy();
+        Log.shutdown();
         System.exit(0);
     }
 }
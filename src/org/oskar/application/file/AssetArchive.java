@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only archive of many files packed into one by the {@link AssetPacker}. The archive is
+ * mapped into memory once, and the contents of a file are handed out as a slice of the mapping,
+ * so nothing is copied and only one file has to be opened at startup.
+ *
+ * The format, in little endian:
+ * - a header of 32 bytes: the magic number "OPAK", the version, the amount of entries, the
+ *   alignment of the payloads, the offset of the index and the offset of the names
+ * - the index: 32 bytes per entry, sorted by name, with the offset and length of its name,
+ *   the offset and length of its payload and the CRC-32 of its payload
+ * - the names in UTF-8
+ * - the payloads, every one starting at a multiple of the alignment
+ *
+ * @author Oskar Veerhoek
+ */
+public class AssetArchive {
+
+    public static final int MAGIC = 'O' | 'P' << 8 | 'A' << 16 | 'K' << 24;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int INDEX_ENTRY_SIZE = 32;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final MappedByteBuffer mapping;
+    private final String[] names;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] checksums;
+
+    private AssetArchive(File file, MappedByteBuffer mapping, String[] names, long[] offsets, int[] lengths, int[] checksums) {
+        this.file = file;
+        this.mapping = mapping;
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.checksums = checksums;
+    }
+
+    /**
+     * Maps an archive into memory and reads its index.
+     */
+    public static AssetArchive open(File file) throws IOException {
+        MappedByteBuffer mapping;
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB, split it into several archives");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            input.close();
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapping.capacity() < HEADER_SIZE || mapping.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an asset archive");
+        }
+        if (mapping.getInt(4) != VERSION) {
+            throw new IOException(file + " has version " + mapping.getInt(4) + ", only version " + VERSION + " can be read");
+        }
+        int entryCount = mapping.getInt(8);
+        long indexOffset = mapping.getLong(16);
+        long namesOffset = mapping.getLong(24);
+        if (entryCount < 0 || indexOffset < 0 || namesOffset < 0 || namesOffset > mapping.capacity()
+                || indexOffset > mapping.capacity() - (long) entryCount * INDEX_ENTRY_SIZE) {
+            throw new IOException(file + " has a damaged index");
+        }
+        String[] names = new String[entryCount];
+        long[] offsets = new long[entryCount];
+        int[] lengths = new int[entryCount];
+        int[] checksums = new int[entryCount];
+        byte[] nameBytes = new byte[256];
+        for (int i = 0; i < entryCount; i++) {
+            int entry = (int) (indexOffset + (long) i * INDEX_ENTRY_SIZE);
+            int nameOffset = mapping.getInt(entry);
+            int nameLength = mapping.getInt(entry + 4);
+            offsets[i] = mapping.getLong(entry + 8);
+            long length = mapping.getLong(entry + 16);
+            checksums[i] = mapping.getInt(entry + 24);
+            // Written so that corrupt values can neither overflow nor slip through as negative numbers.
+            if (nameOffset < 0 || nameLength < 0 || offsets[i] < 0 || length < 0 || length > Integer.MAX_VALUE
+                    || offsets[i] > mapping.capacity() - length
+                    || namesOffset + nameOffset + nameLength > mapping.capacity()) {
+                throw new IOException(file + " has a damaged index entry at " + i);
+            }
+            lengths[i] = (int) length;
+            if (nameBytes.length < nameLength) {
+                nameBytes = new byte[nameLength];
+            }
+            mapping.position((int) (namesOffset + nameOffset));
+            mapping.get(nameBytes, 0, nameLength);
+            names[i] = new String(nameBytes, 0, nameLength, UTF_8);
+        }
+        mapping.clear();
+        for (int i = 1; i < entryCount; i++) {
+            if (names[i - 1].compareTo(names[i]) >= 0) {
+                throw new IOException(file + " has an index that is not sorted");
+            }
+        }
+        return new AssetArchive(file, mapping, names, offsets, lengths, checksums);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the amount of files in the archive
+     */
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param name the name of the file, with '/' between directories
+     * @return the index of the file, or a negative number if it is not in the archive
+     */
+    public int indexOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * @param name the name of the file, with '/' between directories
+     * @return a read-only slice of the mapping with the contents of the file, in native byte
+     * order, or null if it is not in the archive
+     */
+    public ByteBuffer get(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : get(index);
+    }
+
+    public ByteBuffer get(int index) {
+        ByteBuffer view = mapping.duplicate();
+        view.limit((int) offsets[index] + lengths[index]).position((int) offsets[index]);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return whether the contents of the file still match the checksum in the index
+     */
+    public boolean verify(int index) {
+        ByteBuffer contents = get(index);
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[Math.min(64 * 1024, Math.max(1, contents.remaining()))];
+        while (contents.hasRemaining()) {
+            int length = Math.min(chunk.length, contents.remaining());
+            contents.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue() == checksums[index];
+    }
+
+    /**
+     * Converts a path on disk to the name of a file in an archive.
+     */
+    public static String toName(File file) {
+        String path = file.getPath().replace(File.separatorChar, '/');
+        return path.startsWith("./") ? path.substring(2) : path;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Packs files into an {@link AssetArchive}. Every file is stored under its path as it was given,
+ * with '/' between directories, so packing the directory "res" stores "res/shader.vs" under the
+ * same name the RESOURCE_VERTEX_SHADER property refers to it by.
+ *
+ * Usage: AssetPacker output.pak directory-or-file... [--align bytes]
+ *
+ * @author Oskar Veerhoek
+ */
+public class AssetPacker {
+
+    /**
+     * The alignment of the payloads when none is given: a cache line, which also suits every
+     * OpenGL upload.
+     */
+    public static final int DEFAULT_ALIGNMENT = 64;
+
+    private AssetPacker() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: AssetPacker output.pak directory-or-file... [--align bytes]");
+            System.exit(1);
+        }
+        int alignment = DEFAULT_ALIGNMENT;
+        List<File> files = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--align") && i + 1 < args.length) {
+                alignment = Integer.parseInt(args[++i]);
+            } else {
+                collect(new File(args[i]), files);
+            }
+        }
+        long start = System.nanoTime();
+        pack(files, new File(args[0]), alignment);
+        System.out.println("Packed " + files.size() + " files into " + args[0] + " (" + new File(args[0]).length()
+                + " bytes) in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Adds the file, or all the files in the directory and its subdirectories, to the list.
+     */
+    public static void collect(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collect(child, files);
+                }
+            }
+        } else if (file.isFile()) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Writes the files into a new archive, then opens it and checks every file in it.
+     * @param files the files to pack, which must all have different names
+     * @param output the archive to write; an existing file is replaced
+     * @param alignment the multiple of bytes every payload starts at, a power of two
+     */
+    public static void pack(List<File> files, File output, int alignment) throws IOException {
+        if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("The alignment has to be a power of two, not " + alignment);
+        }
+        final String[] names = new String[files.size()];
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < names.length; i++) {
+            names[i] = AssetArchive.toName(files.get(i));
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return names[first].compareTo(names[second]);
+            }
+        });
+        int entryCount = names.length;
+        byte[][] nameBytes = new byte[entryCount][];
+        File[] sortedFiles = new File[entryCount];
+        int namesLength = 0;
+        for (int i = 0; i < entryCount; i++) {
+            String name = names[order.get(i)];
+            if (i > 0 && name.equals(names[order.get(i - 1)])) {
+                throw new IllegalArgumentException(name + " is packed twice");
+            }
+            sortedFiles[i] = files.get(order.get(i));
+            nameBytes[i] = name.getBytes(AssetArchive.UTF_8);
+            namesLength += nameBytes[i].length;
+        }
+        long indexOffset = AssetArchive.HEADER_SIZE;
+        long namesOffset = indexOffset + (long) entryCount * AssetArchive.INDEX_ENTRY_SIZE;
+        ByteBuffer front = ByteBuffer.allocate((int) (namesOffset + namesLength)).order(ByteOrder.LITTLE_ENDIAN);
+        front.putInt(AssetArchive.MAGIC).putInt(AssetArchive.VERSION).putInt(entryCount).putInt(alignment)
+                .putLong(indexOffset).putLong(namesOffset);
+        output.delete();
+        RandomAccessFile archive = new RandomAccessFile(output, "rw");
+        try {
+            FileChannel channel = archive.getChannel();
+            long payloadOffset = align(front.capacity(), alignment);
+            int nameOffset = 0;
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[64 * 1024];
+            for (int i = 0; i < entryCount; i++) {
+                // Copy the payload and compute its checksum in one pass over the file.
+                crc.reset();
+                long length = 0;
+                FileInputStream input = new FileInputStream(sortedFiles[i]);
+                try {
+                    int read;
+                    while ((read = input.read(chunk)) > 0) {
+                        crc.update(chunk, 0, read);
+                        channel.write(ByteBuffer.wrap(chunk, 0, read), payloadOffset + length);
+                        length += read;
+                    }
+                } finally {
+                    input.close();
+                }
+                front.putInt(nameOffset).putInt(nameBytes[i].length).putLong(payloadOffset).putLong(length)
+                        .putInt((int) crc.getValue()).putInt(0);
+                nameOffset += nameBytes[i].length;
+                payloadOffset = align(payloadOffset + length, alignment);
+            }
+            for (byte[] name : nameBytes) {
+                front.put(name);
+            }
+            front.flip();
+            while (front.hasRemaining()) {
+                channel.write(front, front.position());
+            }
+            // Empty payloads sit at the aligned end of the data, which has to lie within the file.
+            if (archive.length() < payloadOffset) {
+                archive.setLength(payloadOffset);
+            }
+        } finally {
+            archive.close();
+        }
+        check(output, sortedFiles, names, order);
+    }
+
+    /**
+     * Opens the archive that was just written and makes sure every file can be read back from it.
+     */
+    private static void check(File output, File[] sortedFiles, String[] names, List<Integer> order) throws IOException {
+        AssetArchive archive = AssetArchive.open(output);
+        if (archive.size() != sortedFiles.length) {
+            throw new IOException(output + " holds " + archive.size() + " files instead of " + sortedFiles.length);
+        }
+        for (int i = 0; i < sortedFiles.length; i++) {
+            if (!archive.getName(i).equals(names[order.get(i)]) || archive.get(i).remaining() != sortedFiles[i].length()
+                    || !archive.verify(i)) {
+                throw new IOException(output + " does not hold " + sortedFiles[i] + " as it was packed");
+            }
+        }
+    }
+
+    private static long align(long offset, int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+}
@@ -31,50 +31,219 @@ package org.oskar.application.file;
 
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+
+import org.lwjgl.BufferUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import static org.oskar.GameProperties.*;
 
 /**
+ * Loads files for the other modules. If the archive named by FILE_SYSTEM_ARCHIVE exists, files
+ * packed into it are served from its memory mapping without opening them on disk; all other
+ * files, and all files during development when there is no archive, are loaded from disk.
+ *
  * @author Oskar Veerhoek
  */
 public class FileSystem implements GameModule {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
     private GameWorld gameWorld;
+    private AssetArchive archive;
 
     public FileSystem() {}
 
+    /**
+     * Loads a UTF-8 text file. The whole file is read and decoded at once instead of line by line.
+     * @param file the file to load
+     * @param addNewline whether every line ends with '\n'; otherwise the lines are joined without
+     *                   anything in between. Line endings are '\n', '\r' or "\r\n", like in
+     *                   {@link java.io.BufferedReader#readLine()}.
+     * @return the contents of the file, or an empty string if it could not be read
+     */
     public String loadFileToString(File file, boolean addNewline) {
-        gameWorld.debug(FileSystem.class, "Loading " + file.toString() + " to string");
-        StringBuilder fileSource = new StringBuilder();
+        gameWorld.debug(FileSystem.class, "Loading {} to string", file);
+        ByteBuffer packed = loadFromArchive(file);
+        if (packed != null) {
+            // Copying into an array first lets String use its fast UTF-8 decoder.
+            byte[] bytes = new byte[packed.remaining()];
+            packed.get(bytes);
+            return normaliseLineEndings(new String(bytes, UTF_8), addNewline);
+        }
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(
-                    file));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (addNewline)
-                    fileSource.append(line).append('\n');
-                else
-                    fileSource.append(line);
+            byte[] bytes = readFully(file);
+            return normaliseLineEndings(new String(bytes, UTF_8), addNewline);
+        } catch (IOException e) {
+            gameWorld.fatal(FileSystem.class, e);
+            return "";
+        }
+    }
+
+    /**
+     * Reads a file into a direct buffer in native byte order, which can be handed to OpenGL
+     * without being copied again. Files in the archive are not read at all: the buffer is a
+     * read-only slice of the archive's mapping.
+     * @param file the file to load
+     * @return a buffer with the contents of the file from position 0 to the limit, or null if
+     * it could not be read
+     */
+    public ByteBuffer loadFileToBuffer(File file) {
+        gameWorld.debug(FileSystem.class, "Loading {} to buffer", file);
+        ByteBuffer packed = loadFromArchive(file);
+        if (packed != null) {
+            return packed;
+        }
+        try {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                FileChannel channel = input.getChannel();
+                ByteBuffer buffer = BufferUtils.createByteBuffer(checkSize(file, channel.size()));
+                readFully(file, channel, buffer);
+                buffer.flip();
+                return buffer;
+            } finally {
+                input.close();
             }
-            reader.close();
         } catch (IOException e) {
             gameWorld.fatal(FileSystem.class, e);
+            return null;
         }
-        return fileSource.toString();
+    }
+
+    /**
+     * Maps a file into memory for reading. The operating system pages the contents in when
+     * they are accessed, so large files do not have to be read up front; the mapping stays
+     * valid until the buffer is garbage collected.
+     * @param file the file to map
+     * @return a read-only buffer over the contents of the file, or null if it could not be mapped
+     */
+    public MappedByteBuffer mapFile(File file) {
+        gameWorld.debug(FileSystem.class, "Mapping {}", file);
+        try {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                FileChannel channel = input.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                // The mapping does not depend on the channel staying open.
+                input.close();
+            }
+        } catch (IOException e) {
+            gameWorld.fatal(FileSystem.class, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the archive the files are served from, or null if they are all loaded from disk
+     */
+    public AssetArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return whether the file is in the archive or on disk
+     */
+    public boolean exists(File file) {
+        return (archive != null && archive.contains(AssetArchive.toName(file))) || file.isFile();
+    }
+
+    /**
+     * @return the contents of the file as a slice of the archive, or null if it is not packed
+     */
+    private ByteBuffer loadFromArchive(File file) {
+        return archive == null ? null : archive.get(AssetArchive.toName(file));
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            byte[] bytes = new byte[checkSize(file, channel.size())];
+            readFully(file, channel, ByteBuffer.wrap(bytes));
+            return bytes;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void readFully(File file, FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(file + " became shorter while it was being read");
+            }
+        }
+    }
+
+    private static int checkSize(File file, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file + " is too large to load at once (" + size + " bytes), map it instead");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Turns the line endings into what {@link #loadFileToString(File, boolean)} promises. Text
+     * that already uses '\n' and ends with one is returned as it is.
+     */
+    private static String normaliseLineEndings(String text, boolean addNewline) {
+        int length = text.length();
+        if (addNewline && text.indexOf('\r') < 0 && (length == 0 || text.charAt(length - 1) == '\n')) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(length + 1);
+        boolean lineOpen = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                if (addNewline) {
+                    builder.append('\n');
+                }
+                lineOpen = false;
+            } else {
+                builder.append(c);
+                lineOpen = true;
+            }
+        }
+        if (lineOpen && addNewline) {
+            builder.append('\n');
+        }
+        return builder.toString();
     }
 
     @Override
     public void create(GameWorld gameWorld) {
         gameWorld.info(FileSystem.class, "Creating file system");
         this.gameWorld = gameWorld;
+        String archivePath = gameWorld.getProperty(FILE_SYSTEM_ARCHIVE);
+        File archiveFile = new File(archivePath == null ? "" : archivePath);
+        if (archiveFile.isFile()) {
+            try {
+                archive = AssetArchive.open(archiveFile);
+                gameWorld.info(FileSystem.class, "Serving {} files from {}", archive.size(), archiveFile);
+            } catch (IOException e) {
+                gameWorld.error(FileSystem.class, "Could not open the archive, loading files from disk", e);
+            }
+        } else {
+            gameWorld.debug(FileSystem.class, "There is no {}, loading files from disk", archiveFile);
+        }
         gameWorld.info(FileSystem.class, "Done creating file system");
     }
 
     @Override
     public void destroy() {
         gameWorld.info(FileSystem.class, "Destroying file system");
+        // The mapping is left to the garbage collector, since slices of it may still be in use.
+        archive = null;
         gameWorld.info(FileSystem.class, "Done destroying file system");
     }
 
@@ -82,4 +251,14 @@ public class FileSystem implements GameModule {
     public GameWorld getGameWorld() {
         return gameWorld;
     }
+
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.ANY;
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches directories, and their subdirectories, for files that are created or modified. A
+ * daemon thread collects the changes as the operating system reports them, and
+ * {@link #poll()} hands them out once no change has been reported for the debounce delay,
+ * so saving many files at once, or an editor that writes a file in several steps, gives one
+ * batch of changes instead of many.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FileWatcher {
+
+    private final WatchService watchService;
+    private final long debounceNanos;
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+    /**
+     * The changed files that were not handed out yet, guarded by this watcher.
+     */
+    private final Set<File> changes = new LinkedHashSet<File>();
+    private long lastChange;
+    private Thread thread;
+
+    /**
+     * @param debounceMillis how long no change has to be reported before the changes are handed out
+     * @throws IOException if the file system cannot be watched
+     */
+    public FileWatcher(long debounceMillis) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceNanos = debounceMillis * 1000000L;
+    }
+
+    /**
+     * Starts watching a directory and all its subdirectories. Subdirectories that are created
+     * later are watched as well.
+     * @param directory the directory to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    public void watch(File directory) throws IOException {
+        register(directory.toPath());
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        synchronized (directories) {
+            directories.put(key, directory);
+        }
+        DirectoryStream<Path> children = Files.newDirectoryStream(directory);
+        try {
+            for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                    register(child);
+                }
+            }
+        } finally {
+            children.close();
+        }
+    }
+
+    /**
+     * Starts the thread that collects the changes.
+     */
+    public void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                collectChanges();
+            }
+        }, "File watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void collectChanges() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory;
+                synchronized (directories) {
+                    directory = directories.get(key);
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Events that were lost because too many happened at once cannot be reloaded.
+                    if (directory == null || event.kind() == OVERFLOW) {
+                        continue;
+                    }
+                    Path path = directory.resolve((Path) event.context());
+                    if (Files.isDirectory(path)) {
+                        if (event.kind() == ENTRY_CREATE) {
+                            try {
+                                register(path);
+                            } catch (IOException e) {
+                                // The directory was removed again before it could be watched.
+                            }
+                        }
+                        continue;
+                    }
+                    synchronized (this) {
+                        changes.add(path.toFile());
+                        lastChange = System.nanoTime();
+                    }
+                }
+                if (!key.reset()) {
+                    synchronized (directories) {
+                        directories.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed.
+        } catch (ClosedWatchServiceException e) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Hands out the changed files once no change has been reported for the debounce delay. Does
+     * not block, and does not allocate when there are no changes, so it can be called every frame.
+     * @return the files that changed since the last call that returned any, in the order in which
+     * they first changed, or an empty list if there are none or more changes may follow
+     */
+    public synchronized List<File> poll() {
+        if (changes.isEmpty() || System.nanoTime() - lastChange < debounceNanos) {
+            return Collections.emptyList();
+        }
+        List<File> changed = new ArrayList<File>(changes);
+        changes.clear();
+        return changed;
+    }
+
+    /**
+     * Stops watching all the directories.
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release.
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the absolute path of the file without "." and ".." directories, so two files can be
+     * compared no matter how their paths were written
+     */
+    public static File normalise(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toFile();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of input events between one producer thread and one consumer thread.
+ * Events are stored field by field in preallocated primitive arrays that are used as a
+ * ring, so adding and taking out events does not allocate or lock. When the queue is full,
+ * new events are dropped and counted instead of blocking the producer.
+ *
+ * @author Oskar Veerhoek
+ */
+public class InputEventQueue {
+
+    public static final int KEY_PRESSED = 0;
+    public static final int KEY_RELEASED = 1;
+    public static final int MOUSE_PRESSED = 2;
+    public static final int MOUSE_RELEASED = 3;
+
+    private final int mask;
+    private final int[] types;
+    private final int[] codes;
+    private final int[] xs;
+    private final int[] ys;
+    private final long[] times;
+    /**
+     * The sequence number of the next event to take out. Only written by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * The sequence number of the next event to add. Only written by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * The producer's last view of head, so it does not have to read it for every event.
+     */
+    private long cachedHead;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile int highWaterMark;
+
+    /**
+     * @param capacity the maximum amount of queued events, rounded up to a power of two
+     */
+    public InputEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        types = new int[size];
+        codes = new int[size];
+        xs = new int[size];
+        ys = new int[size];
+        times = new long[size];
+    }
+
+    /**
+     * Called by the producer. Adds an event, or drops it if the queue is full.
+     * @return whether the event was added
+     */
+    public boolean offer(int type, int code, int x, int y, long time) {
+        long sequence = tail.get();
+        if (sequence - cachedHead > mask) {
+            cachedHead = head.get();
+            if (sequence - cachedHead > mask) {
+                droppedEvents.incrementAndGet();
+                return false;
+            }
+        }
+        int index = (int) sequence & mask;
+        types[index] = type;
+        codes[index] = code;
+        xs[index] = x;
+        ys[index] = y;
+        times[index] = time;
+        // The ordered write makes the event visible to the consumer together with the new tail.
+        tail.lazySet(sequence + 1);
+        int queued = (int) (sequence + 1 - cachedHead);
+        if (queued > highWaterMark) {
+            highWaterMark = queued;
+        }
+        return true;
+    }
+
+    /**
+     * Called by the consumer. Takes out all the queued events in order and hands them to the handler.
+     * @return the amount of events handled
+     */
+    public int drain(InputEventHandler handler) {
+        long sequence = head.get();
+        long end = tail.get();
+        int count = (int) (end - sequence);
+        for (; sequence < end; sequence++) {
+            int index = (int) sequence & mask;
+            handler.handleInputEvent(types[index], codes[index], xs[index], ys[index], times[index]);
+            // Free the slot as soon as the event was handled.
+            head.lazySet(sequence + 1);
+        }
+        return count;
+    }
+
+    /**
+     * @return the amount of queued events
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return the maximum amount of events the queue can hold
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the amount of events that were dropped because the queue was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return the largest amount of events that were queued at once, as far as the producer could tell
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+}
@@ -31,26 +31,59 @@ package org.oskar.application.input;
 
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
-import org.lwjgl.util.vector.Vector2f;
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+import org.oskar.math.Vec2;
+
+import static org.oskar.GameProperties.INPUT_EVENT_QUEUE_CAPACITY;
 
 public class InputSystem implements GameModule {
     private GameWorld gameWorld;
+    /**
+     * The mouse position as of the last update, so other threads can read it without touching LWJGL.
+     */
+    private volatile int mouseX, mouseY;
+    /**
+     * The keyboard and mouse events waiting to be handled by the logic system.
+     */
+    private InputEventQueue eventQueue;
 
     @Override
     public void create(GameWorld gameWorld) {
         this.gameWorld = gameWorld;
         gameWorld.info(InputSystem.class, "Creating input system");
+        gameWorld.debug(InputSystem.class, "Creating event queue with INPUT_EVENT_QUEUE_CAPACITY events");
+        eventQueue = new InputEventQueue(gameWorld.getProperty(INPUT_EVENT_QUEUE_CAPACITY));
         gameWorld.info(InputSystem.class, "Done creating input system");
     }
 
+    /**
+     * @return the queue of keyboard and mouse events that the logic system takes out every tick
+     */
+    public InputEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
     public String keyToString(int key) {
         return Keyboard.getKeyName(key);
     }
 
-    public Vector2f getMousePosition() {
-        return new Vector2f(Mouse.getX(), Mouse.getY());
+    public int getMouseX() {
+        return mouseX;
+    }
+
+    public int getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * Stores the mouse position as of the last update, in pixels from the bottom left corner of the window.
+     * @param result the vector the position is stored in
+     * @return the result
+     */
+    public Vec2 getMousePosition(Vec2 result) {
+        return result.set(mouseX, mouseY);
     }
 
     public boolean isKeyBeingPressed(char key) {
@@ -62,14 +95,17 @@ public class InputSystem implements GameModule {
     }
 
     public void update() {
+        mouseX = Mouse.getX();
+        mouseY = Mouse.getY();
         while (Keyboard.next()) {
-            if (Keyboard.getEventKeyState()) {
-                gameWorld.getLogicSystem().sendKeyInput(Keyboard.getEventKey());
-            }
+            eventQueue.offer(Keyboard.getEventKeyState() ? InputEventQueue.KEY_PRESSED : InputEventQueue.KEY_RELEASED,
+                    Keyboard.getEventKey(), mouseX, mouseY, Keyboard.getEventNanoseconds());
         }
         while (Mouse.next()) {
-            if (Mouse.getEventButtonState()) {
-                gameWorld.getLogicSystem().sendMouseInput(Mouse.getEventButton(), Mouse.getX(), Mouse.getY());
+            // Mouse events without a button only report movement, which is read through getMouseX and getMouseY.
+            if (Mouse.getEventButton() >= 0) {
+                eventQueue.offer(Mouse.getEventButtonState() ? InputEventQueue.MOUSE_PRESSED : InputEventQueue.MOUSE_RELEASED,
+                        Mouse.getEventButton(), Mouse.getEventX(), Mouse.getEventY(), Mouse.getEventNanoseconds());
             }
         }
     }
@@ -77,6 +113,10 @@ public class InputSystem implements GameModule {
     @Override
     public void destroy() {
         gameWorld.info(InputSystem.class, "Destroying input system");
+        if (eventQueue.getDroppedEvents() > 0) {
+            gameWorld.warn(InputSystem.class, "Dropped " + eventQueue.getDroppedEvents() + " input events, at most "
+                    + eventQueue.getHighWaterMark() + " of " + eventQueue.capacity() + " were queued");
+        }
         gameWorld.info(InputSystem.class, "Done destroying input system");
     }
 
@@ -84,4 +124,14 @@ public class InputSystem implements GameModule {
     public GameWorld getGameWorld() {
         return gameWorld;
     }
+
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.ANY;
+    }
 }
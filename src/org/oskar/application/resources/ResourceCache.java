@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources;
+
+import org.oskar.application.file.FileWatcher;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps loaded resources by their name so they are only loaded once, and counts the references
+ * to every one of them. Resources that are no longer referenced stay cached until the memory
+ * they take up pushes the cache over its budget, at which point the ones that were released
+ * longest ago are evicted and freed first.
+ *
+ * Every {@link #acquire(ResourceLoad)} has to be matched by a {@link #release(ResourceHandle)}.
+ *
+ * When the files of a resource change, the resource is invalidated: the next acquire loads it
+ * again, while the handles that were handed out before keep the old resource until they are
+ * released.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ResourceCache {
+
+    private static class Entry {
+        private final ResourceHandle<?> handle;
+        private int references;
+        private long memorySize;
+
+        private Entry(ResourceHandle<?> handle) {
+            this.handle = handle;
+        }
+    }
+
+    private final ResourceSystem resourceSystem;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    /**
+     * The entries without references, the one released longest ago first.
+     */
+    private final LinkedHashMap<String, Entry> unreferenced = new LinkedHashMap<String, Entry>();
+    /**
+     * The invalidated entries that are still referenced, by their handle.
+     */
+    private final Map<ResourceHandle<?>, Entry> stale = new IdentityHashMap<ResourceHandle<?>, Entry>();
+    private long memoryUsage;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ResourceCache(ResourceSystem resourceSystem) {
+        this.resourceSystem = resourceSystem;
+    }
+
+    /**
+     * Returns the cached resource with the name of the load, or starts loading it if it is not
+     * cached, and adds a reference to it.
+     * @param load the resource to load if it is not cached
+     * @return the handle of the resource
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> ResourceHandle<T> acquire(ResourceLoad<T> load) {
+        Entry entry = entries.get(load.getName());
+        if (entry != null) {
+            hits++;
+            unreferenced.remove(load.getName());
+        } else {
+            misses++;
+            entry = new Entry(resourceSystem.loadAsync(load));
+            entries.put(load.getName(), entry);
+        }
+        entry.references++;
+        return (ResourceHandle<T>) entry.handle;
+    }
+
+    /**
+     * Removes a reference to a resource. Once it has no references left it can be evicted.
+     * @param handle a handle returned by {@link #acquire(ResourceLoad)}
+     */
+    public synchronized void release(ResourceHandle<?> handle) {
+        Entry entry = stale.get(handle);
+        if (entry != null) {
+            // Freed by the next trim, on the OpenGL thread.
+            entry.references--;
+            return;
+        }
+        entry = entries.get(handle.getName());
+        if (entry == null || entry.handle != handle || entry.references == 0) {
+            throw new IllegalStateException(handle.getName() + " was released more often than it was acquired");
+        }
+        entry.references--;
+        if (entry.references == 0) {
+            unreferenced.put(handle.getName(), entry);
+        }
+    }
+
+    /**
+     * Counts the memory of a resource once a worker thread has loaded it.
+     */
+    synchronized void resourceLoaded(ResourceHandle<?> handle) {
+        Entry entry = entries.get(handle.getName());
+        if (entry != null && entry.handle == handle) {
+            entry.memorySize = handle.getMemorySize();
+            memoryUsage += entry.memorySize;
+        }
+    }
+
+    /**
+     * Evicts unreferenced resources, the one released longest ago first, until the cache fits in
+     * its budget. Resources that are still loading or waiting to be uploaded are not evicted. Called on the OpenGL thread,
+     * since freeing a resource may delete OpenGL objects.
+     * @param budget the amount of bytes the cached resources may take up
+     */
+    public synchronized void trim(long budget) {
+        if (!stale.isEmpty()) {
+            Iterator<Entry> staleEntries = stale.values().iterator();
+            while (staleEntries.hasNext()) {
+                Entry entry = staleEntries.next();
+                if (entry.references == 0 && isSettled(entry)) {
+                    staleEntries.remove();
+                    evict(entry);
+                }
+            }
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = unreferenced.entrySet().iterator();
+        while (memoryUsage > budget && iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            Entry entry = candidate.getValue();
+            if (!isSettled(entry)) {
+                continue;
+            }
+            iterator.remove();
+            entries.remove(candidate.getKey());
+            evict(entry);
+        }
+    }
+
+    /**
+     * Invalidates the resources that are loaded from any of the given files, so the next acquire
+     * loads them again. Unreferenced resources are freed right away, unless they are still
+     * loading or waiting to be uploaded; referenced ones are freed by the first trim after their
+     * last handle is released. Called on the OpenGL thread.
+     * @param files the files that changed
+     * @return the names of the invalidated resources
+     */
+    public synchronized Set<String> invalidate(Collection<File> files) {
+        Set<File> changed = new HashSet<File>();
+        for (File file : files) {
+            changed.add(FileWatcher.normalise(file));
+        }
+        Set<String> invalidated = new HashSet<String>();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            Entry entry = candidate.getValue();
+            if (!isLoadedFrom(entry, changed)) {
+                continue;
+            }
+            iterator.remove();
+            unreferenced.remove(candidate.getKey());
+            invalidated.add(candidate.getKey());
+            if (entry.references == 0 && isSettled(entry)) {
+                evict(entry);
+            } else {
+                stale.put(entry.handle, entry);
+            }
+        }
+        return invalidated;
+    }
+
+    private static boolean isLoadedFrom(Entry entry, Set<File> files) {
+        for (File file : entry.handle.getFiles()) {
+            if (files.contains(FileWatcher.normalise(file))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the resource is no longer being loaded or uploaded, so it can be freed
+     */
+    private static boolean isSettled(Entry entry) {
+        int state = entry.handle.getState();
+        return state == ResourceHandle.READY || state == ResourceHandle.FAILED;
+    }
+
+    /**
+     * Evicts and frees all the resources, referenced or not.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            evict(entry);
+        }
+        for (Entry entry : stale.values()) {
+            evict(entry);
+        }
+        entries.clear();
+        unreferenced.clear();
+        stale.clear();
+    }
+
+    /**
+     * Evicts and frees the uploaded resources that own OpenGL objects, referenced or not, and
+     * keeps the rest. Called on the OpenGL thread before the context is destroyed.
+     */
+    public synchronized void clearOpenGLResources() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            Entry entry = candidate.getValue();
+            if (entry.handle.isOpenGLResource()) {
+                iterator.remove();
+                unreferenced.remove(candidate.getKey());
+                evict(entry);
+            }
+        }
+        Iterator<Entry> staleEntries = stale.values().iterator();
+        while (staleEntries.hasNext()) {
+            Entry entry = staleEntries.next();
+            if (entry.handle.isOpenGLResource()) {
+                staleEntries.remove();
+                evict(entry);
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        entry.handle.free();
+        memoryUsage -= entry.memorySize;
+        evictions++;
+    }
+
+    /**
+     * @return the amount of bytes the loaded resources in the cache take up
+     */
+    public synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return entries.size() + " resources, " + memoryUsage + " bytes, " + hits + " hits, "
+                + misses + " misses, " + evictions + " evictions";
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The result of a resource that is being loaded by the resource system. It is pending while a
+ * worker thread loads it, loaded once the worker is done, and ready once it has been uploaded,
+ * or failed if loading threw an exception. Once the resource is evicted from the cache it is freed
+ * and the handle must no longer be used.
+ *
+ * @param <T> the type of the loaded resource
+ * @author Oskar Veerhoek
+ */
+public class ResourceHandle<T> {
+
+    public static final int PENDING = 0;
+    public static final int LOADED = 1;
+    public static final int UPLOADING = 2;
+    public static final int READY = 3;
+    public static final int FAILED = 4;
+    public static final int EVICTED = 5;
+
+    private final ResourceLoad<T> load;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private volatile T resource;
+    private volatile Throwable error;
+    private volatile long memorySize;
+
+    ResourceHandle(ResourceLoad<T> load) {
+        this.load = load;
+    }
+
+    public String getName() {
+        return load.getName();
+    }
+
+    /**
+     * @return the files the resource is loaded from
+     */
+    public List<File> getFiles() {
+        return load.getFiles();
+    }
+
+    /**
+     * @return one of PENDING, LOADED, UPLOADING, READY, FAILED and EVICTED
+     */
+    public int getState() {
+        return state.get();
+    }
+
+    /**
+     * @return whether the resource has been loaded and uploaded
+     */
+    public boolean isReady() {
+        return state.get() == READY;
+    }
+
+    public boolean isFailed() {
+        return state.get() == FAILED;
+    }
+
+    /**
+     * @return the resource, or null if it is not ready yet
+     */
+    public T get() {
+        return isReady() ? resource : null;
+    }
+
+    /**
+     * @return the exception that made loading fail, or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Loads the resource on the calling worker thread.
+     */
+    void load() {
+        try {
+            resource = load.load();
+            memorySize = load.getMemorySize(resource);
+            state.set(LOADED);
+        } catch (Throwable t) {
+            error = t;
+            state.set(FAILED);
+        } finally {
+            loaded.countDown();
+        }
+    }
+
+    void awaitLoaded() throws InterruptedException {
+        loaded.await();
+    }
+
+    /**
+     * @return the amount of bytes the loaded resource takes up
+     */
+    long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Frees the resource, unless it is being uploaded or was never loaded. Called on the OpenGL thread.
+     */
+    void free() {
+        int current = state.get();
+        if ((current == LOADED || current == READY) && state.compareAndSet(current, EVICTED)) {
+            load.free(resource);
+            resource = null;
+        } else if (current == FAILED) {
+            state.set(EVICTED);
+        }
+    }
+
+    /**
+     * @return whether the resource has been uploaded and owns OpenGL objects
+     */
+    boolean isOpenGLResource() {
+        return state.get() == READY && load.isOpenGLResource();
+    }
+
+    /**
+     * @return the amount of bytes {@link #upload()} would transfer
+     */
+    long getUploadSize() {
+        return state.get() == LOADED ? load.getUploadSize(resource) : 0;
+    }
+
+    /**
+     * Uploads the resource on the calling OpenGL thread, unless it was uploaded already.
+     * @return whether this call uploaded it
+     */
+    boolean upload() {
+        if (!state.compareAndSet(LOADED, UPLOADING)) {
+            return false;
+        }
+        try {
+            load.upload(resource);
+            state.set(READY);
+        } catch (RuntimeException e) {
+            error = e;
+            state.set(FAILED);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return load.getName();
+    }
+}
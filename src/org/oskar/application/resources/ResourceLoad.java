@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A resource that is loaded in two stages: {@link #load()} reads and decodes it on one of the
+ * resource system's worker threads, and {@link #upload(Object)} hands the result to OpenGL on
+ * the thread that owns the context, within the resource system's per-frame upload budget.
+ *
+ * The name identifies the resource in the {@link ResourceCache}, so two loads with the same
+ * name must load the same resource. The files tell the cache which resources have to be
+ * loaded again when files change on disk.
+ *
+ * @param <T> the type of the loaded resource
+ * @author Oskar Veerhoek
+ */
+public abstract class ResourceLoad<T> {
+
+    private final String name;
+    private final List<File> files;
+
+    /**
+     * @param name the name of the resource, e.g. its path
+     * @param files the files the resource is loaded from
+     */
+    protected ResourceLoad(String name, File... files) {
+        this(name, Arrays.asList(files));
+    }
+
+    /**
+     * @param name the name of the resource, e.g. its path
+     * @param files the files the resource is loaded from
+     */
+    protected ResourceLoad(String name, List<File> files) {
+        this.name = name;
+        this.files = Collections.unmodifiableList(files);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * Reads and decodes the resource. Called on a worker thread, so it must not make OpenGL calls.
+     * @return the loaded resource
+     */
+    protected abstract T load() throws Exception;
+
+    /**
+     * Uploads the loaded resource to OpenGL. Called on the thread that owns the OpenGL context.
+     * Does nothing by default, for resources that stay on the CPU.
+     * @param resource the result of {@link #load()}
+     */
+    protected void upload(T resource) {}
+
+    /**
+     * @param resource the result of {@link #load()}
+     * @return the amount of bytes {@link #upload(Object)} transfers, counted against the byte budget
+     */
+    protected long getUploadSize(T resource) {
+        return 0;
+    }
+
+    /**
+     * @param resource the result of {@link #load()}
+     * @return the amount of bytes the loaded resource takes up, counted against the cache budget
+     */
+    protected long getMemorySize(T resource) {
+        return 0;
+    }
+
+    /**
+     * Frees the resource when it is evicted from the cache. Called on the thread that owns the
+     * OpenGL context. Does nothing by default, leaving the resource to the garbage collector.
+     * @param resource the result of {@link #load()}
+     */
+    protected void free(T resource) {}
+
+    /**
+     * @return whether the uploaded resource owns OpenGL objects, which have to be freed before
+     * the rendering system is destroyed. False by default, for resources that stay on the CPU.
+     */
+    protected boolean isOpenGLResource() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
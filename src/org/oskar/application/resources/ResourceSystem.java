@@ -31,49 +31,488 @@ package org.oskar.application.resources;
 
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+
+import org.oskar.application.file.FileChangeListener;
+import org.oskar.application.file.FileSystem;
+import org.oskar.application.file.FileWatcher;
+import org.oskar.application.resources.texture.MipmapGenerator;
+import org.oskar.application.resources.texture.Texture;
+import org.oskar.application.resources.texture.TextureAtlas;
+import org.oskar.application.resources.texture.TextureAtlasBuilder;
+import org.oskar.application.resources.texture.TextureData;
+import org.oskar.application.resources.texture.TextureDecoder;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.oskar.GameProperties.*;
 
 /**
+ * Loads resources asynchronously. Reading and decoding happens on a pool of
+ * RESOURCE_LOADER_THREADS worker threads, and {@link #update()} uploads the loaded resources
+ * on the OpenGL thread once per frame, spending at most RESOURCE_UPLOAD_TIME_BUDGET microseconds
+ * and RESOURCE_UPLOAD_BYTE_BUDGET bytes, so loading never makes a frame take much longer.
+ *
+ * Resources acquired through {@link #acquire(ResourceLoad)} are kept in a {@link ResourceCache}
+ * of at most RESOURCE_CACHE_BUDGET bytes, and have to be released when they are no longer used.
+ *
+ * The directories in RESOURCE_WATCH_DIRECTORIES are watched for changes. Once no file has changed
+ * for RESOURCE_WATCH_DELAY milliseconds, {@link #update()} invalidates the cached resources that
+ * are loaded from the changed files, reloads the text files, and tells the
+ * {@link FileChangeListener}s, so they can acquire their resources again. Files that are served
+ * from the archive of the file system do not change, so they are never reloaded.
+ *
  * @author Oskar Veerhoek
  */
 public class ResourceSystem implements GameModule {
 
     private GameWorld gameWorld;
-    private Map<String, String> textFiles = new HashMap<String, String>();
-    private Map<String, ByteBuffer> textureFiles = new HashMap<String, ByteBuffer>();
+    private Map<String, ResourceHandle<String>> textFiles = new HashMap<String, ResourceHandle<String>>();
+    private ExecutorService loaders;
+    /**
+     * The pool that decodes the images of atlases and generates mipmaps in parallel.
+     */
+    private ForkJoinPool texturePool;
+    private ResourceCache cache = new ResourceCache(this);
+    /**
+     * The resources that were loaded by a worker thread and still have to be uploaded.
+     */
+    private final Queue<ResourceHandle<?>> loadedResources = new ConcurrentLinkedQueue<ResourceHandle<?>>();
+    private final AtomicInteger pendingLoads = new AtomicInteger();
+    /**
+     * Watches the resource directories, or null if no directories are watched.
+     */
+    private FileWatcher fileWatcher;
+    private final List<FileChangeListener> fileChangeListeners = new CopyOnWriteArrayList<FileChangeListener>();
+    private int uploadsPerFrame;
+    private long uploadedBytesPerFrame;
 
     /**
+     * Waits until the text file is loaded if it is still being loaded.
      * @param key the key of the text file
      * @return the string contents of the stored text file, or null if the key does not exist
      */
     public String getTextFileContent(String key) {
-        return textFiles.get(key);
+        ResourceHandle<String> handle = textFiles.get(key);
+        return handle == null ? null : finishLoading(handle);
     }
 
     /**
-     * @param key the key of the text file
-     * @return the ByteBuffer contents of the stored texture, or null if the key does not exist
+     * Starts loading a resource on a worker thread.
+     * @param load the resource to load
+     * @return the handle through which the resource can be obtained once it is ready
+     */
+    public <T> ResourceHandle<T> loadAsync(ResourceLoad<T> load) {
+        final ResourceHandle<T> handle = new ResourceHandle<T>(load);
+        final ExecutorService executor = loaders;
+        pendingLoads.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Loads that had not started yet when the resource system was destroyed are left out.
+                if (executor.isShutdown()) {
+                    return;
+                }
+                handle.load();
+                if (handle.isFailed()) {
+                    pendingLoads.decrementAndGet();
+                    Throwable error = handle.getError();
+                    if (error instanceof Exception) {
+                        gameWorld.error(ResourceSystem.class, "Could not load " + handle.getName(), (Exception) error);
+                    } else {
+                        gameWorld.error(ResourceSystem.class, "Could not load {}", handle.getName());
+                    }
+                } else {
+                    cache.resourceLoaded(handle);
+                    loadedResources.offer(handle);
+                }
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Returns a cached resource, or starts loading it on a worker thread if it is not cached.
+     * Has to be matched by a call to {@link #release(ResourceHandle)}.
+     * @param load the resource to load if it is not cached, identified by its name
+     * @return the handle through which the resource can be obtained once it is ready
+     */
+    public <T> ResourceHandle<T> acquire(ResourceLoad<T> load) {
+        return cache.acquire(load);
+    }
+
+    /**
+     * Tells the cache a resource acquired through {@link #acquire(ResourceLoad)} is no longer used.
+     */
+    public void release(ResourceHandle<?> handle) {
+        cache.release(handle);
+    }
+
+    /**
+     * Acquires a UTF-8 text file from the cache, loading it on a worker thread if it is not
+     * cached. Every line ends with '\n'.
+     */
+    public ResourceHandle<String> loadTextFileAsync(final File file) {
+        return acquire(new ResourceLoad<String>(file.getPath(), file) {
+            @Override
+            protected String load() {
+                return gameWorld.getFileSystem().loadFileToString(file, true);
+            }
+
+            @Override
+            protected long getMemorySize(String resource) {
+                return resource.length() * 2L;
+            }
+        });
+    }
+
+    /**
+     * Acquires the contents of a file in a direct buffer from the cache, reading it on a worker
+     * thread if it is not cached. The buffer is freed when it is evicted.
+     */
+    public ResourceHandle<ByteBuffer> loadFileToBufferAsync(final File file) {
+        return acquire(new ResourceLoad<ByteBuffer>(file.getPath() + " (buffer)", file) {
+            @Override
+            protected ByteBuffer load() {
+                return gameWorld.getFileSystem().loadFileToBuffer(file);
+            }
+
+            @Override
+            protected long getMemorySize(ByteBuffer resource) {
+                return resource == null ? 0 : resource.capacity();
+            }
+
+            @Override
+            protected void free(ByteBuffer resource) {
+                DirectBuffers.free(resource);
+            }
+        });
+    }
+
+    /**
+     * Acquires a texture from the cache, decoding the image file and generating its mipmaps on
+     * the worker threads if it is not cached. It is uploaded within the upload budget, after
+     * which the pixels in memory are freed.
+     * @param file the image file, in any format ImageIO can read
+     * @param mipmapped whether to generate mipmaps
+     */
+    public ResourceHandle<Texture> loadTextureAsync(final File file, final boolean mipmapped) {
+        return acquire(new ResourceLoad<Texture>(file.getPath() + (mipmapped ? " (mipmapped texture)" : " (texture)"), file) {
+            @Override
+            protected Texture load() throws IOException {
+                TextureData data = decodeTexture(file, mipmapped);
+                if (mipmapped) {
+                    MipmapGenerator.generate(data, texturePool);
+                }
+                return new Texture(data);
+            }
+
+            @Override
+            protected void upload(Texture resource) {
+                resource.upload(gameWorld.getRenderingSystem());
+            }
+
+            @Override
+            protected long getUploadSize(Texture resource) {
+                return resource.getByteCount();
+            }
+
+            @Override
+            protected long getMemorySize(Texture resource) {
+                return resource.getByteCount();
+            }
+
+            @Override
+            protected void free(Texture resource) {
+                resource.delete(gameWorld.getRenderingSystem());
+            }
+
+            @Override
+            protected boolean isOpenGLResource() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Acquires a texture atlas from the cache, or decodes the image files in parallel and packs
+     * them into pages on the worker threads if it is not cached. The region of every image is
+     * named after its file.
+     * @param name the name of the atlas in the cache
+     * @param files the image files, in any format ImageIO can read
+     * @param pageSize the width and height of the pages
+     * @param padding the amount of empty pixels around every image
+     * @param mipmapped whether to generate mipmaps for the pages
+     */
+    public ResourceHandle<TextureAtlas> loadTextureAtlasAsync(String name, final List<File> files, final int pageSize,
+                                                              final int padding, final boolean mipmapped) {
+        return acquire(new ResourceLoad<TextureAtlas>(name + " (atlas)", files) {
+            @Override
+            protected TextureAtlas load() throws Exception {
+                List<Callable<TextureData>> decodes = new ArrayList<Callable<TextureData>>();
+                for (final File file : files) {
+                    decodes.add(new Callable<TextureData>() {
+                        @Override
+                        public TextureData call() throws IOException {
+                            return decodeTexture(file, false);
+                        }
+                    });
+                }
+                List<Future<TextureData>> images = texturePool.invokeAll(decodes);
+                TextureAtlasBuilder builder = new TextureAtlasBuilder(pageSize, padding, mipmapped);
+                for (int i = 0; i < files.size(); i++) {
+                    builder.add(files.get(i).getPath(), images.get(i).get());
+                }
+                return builder.build(texturePool);
+            }
+
+            @Override
+            protected void upload(TextureAtlas resource) {
+                resource.upload(gameWorld.getRenderingSystem());
+            }
+
+            @Override
+            protected long getUploadSize(TextureAtlas resource) {
+                return resource.getByteCount();
+            }
+
+            @Override
+            protected long getMemorySize(TextureAtlas resource) {
+                return resource.getByteCount();
+            }
+
+            @Override
+            protected void free(TextureAtlas resource) {
+                resource.delete(gameWorld.getRenderingSystem());
+            }
+
+            @Override
+            protected boolean isOpenGLResource() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Decodes an image file loaded through the file system, so packed images come straight
+     * out of the archive.
      */
-    public ByteBuffer getTextureContent(String key) {
-        return textureFiles.get(key);
+    private TextureData decodeTexture(File file, boolean mipmapped) throws IOException {
+        ByteBuffer encoded = gameWorld.getFileSystem().loadFileToBuffer(file);
+        if (encoded == null) {
+            throw new IOException("Could not read " + file);
+        }
+        try {
+            return TextureDecoder.decode(encoded, mipmapped);
+        } finally {
+            // Frees the buffer if it was read from disk; slices of the archive are left alone.
+            DirectBuffers.free(encoded);
+        }
+    }
+
+    /**
+     * @return the cache that holds the acquired resources
+     */
+    public ResourceCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Frees the cached resources that own OpenGL objects, referenced or not. Called by the
+     * rendering system on the OpenGL thread while it is destroyed: the rendering system and the
+     * window are destroyed before this system, so by then the context is gone.
+     */
+    public void freeOpenGLResources() {
+        gameWorld.debug(ResourceSystem.class, "Freeing OpenGL resources in the cache: {}", cache);
+        cache.clearOpenGLResources();
+    }
+
+    /**
+     * Waits until the resource is loaded and uploads it right away, regardless of the upload
+     * budget. Must be called on the OpenGL thread.
+     * @return the resource, or null if it could not be loaded
+     */
+    public <T> T finishLoading(ResourceHandle<T> handle) {
+        try {
+            handle.awaitLoaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (handle.upload()) {
+            pendingLoads.decrementAndGet();
+        }
+        return handle.get();
+    }
+
+    /**
+     * Uploads loaded resources until the upload budget of this frame is spent. At least one
+     * resource is uploaded per frame, even if it is larger than the budget on its own, so
+     * large resources still get through. Afterwards the cache evicts unreferenced resources
+     * until it fits in RESOURCE_CACHE_BUDGET. Must be called on the OpenGL thread once per frame.
+     */
+    public void update() {
+        if (fileWatcher != null) {
+            List<File> changedFiles = fileWatcher.poll();
+            if (!changedFiles.isEmpty()) {
+                reload(changedFiles);
+            }
+        }
+        long timeBudget = gameWorld.getProperty(RESOURCE_UPLOAD_TIME_BUDGET) * 1000L;
+        long byteBudget = gameWorld.getProperty(RESOURCE_UPLOAD_BYTE_BUDGET);
+        long start = System.nanoTime();
+        uploadsPerFrame = 0;
+        uploadedBytesPerFrame = 0;
+        ResourceHandle<?> handle;
+        while ((handle = loadedResources.peek()) != null) {
+            long size = handle.getUploadSize();
+            if (uploadsPerFrame > 0 && (uploadedBytesPerFrame + size > byteBudget
+                    || System.nanoTime() - start > timeBudget)) {
+                break;
+            }
+            loadedResources.poll();
+            // Resources that were finished early through finishLoading are skipped.
+            if (handle.upload()) {
+                pendingLoads.decrementAndGet();
+                uploadsPerFrame++;
+                uploadedBytesPerFrame += size;
+            }
+        }
+        cache.trim(gameWorld.getProperty(RESOURCE_CACHE_BUDGET));
+    }
+
+    /**
+     * Invalidates the resources that are loaded from the changed files, starts loading the text
+     * files among them again, and tells the listeners.
+     */
+    private void reload(List<File> changedFiles) {
+        gameWorld.info(ResourceSystem.class, "Files changed: {}", changedFiles);
+        Set<String> invalidated = cache.invalidate(changedFiles);
+        for (Map.Entry<String, ResourceHandle<String>> textFile : textFiles.entrySet()) {
+            ResourceHandle<String> previous = textFile.getValue();
+            if (invalidated.contains(previous.getName())) {
+                textFile.setValue(loadTextFileAsync(previous.getFiles().get(0)));
+                release(previous);
+            }
+        }
+        gameWorld.debug(ResourceSystem.class, "Invalidated {} resources", invalidated.size());
+        for (FileChangeListener listener : fileChangeListeners) {
+            listener.filesChanged(changedFiles);
+        }
+    }
+
+    /**
+     * Adds a listener that is told about the files that changed, on the OpenGL thread.
+     */
+    public void addFileChangeListener(FileChangeListener listener) {
+        fileChangeListeners.add(listener);
+    }
+
+    public void removeFileChangeListener(FileChangeListener listener) {
+        fileChangeListeners.remove(listener);
+    }
+
+    /**
+     * @return the amount of resources that are loading or waiting to be uploaded
+     */
+    public int getPendingLoads() {
+        return pendingLoads.get();
+    }
+
+    public int getUploadsPerFrame() {
+        return uploadsPerFrame;
+    }
+
+    public long getUploadedBytesPerFrame() {
+        return uploadedBytesPerFrame;
     }
 
     @Override
     public void create(GameWorld gameWorld) {
         gameWorld.info(ResourceSystem.class, "Creating resource system");
         this.gameWorld = gameWorld;
-        textFiles.put("RESOURCE_VERTEX_SHADER", gameWorld.getFileSystem().loadFileToString(new File(gameWorld.getStringProperty("RESOURCE_VERTEX_SHADER")), true));
-        textFiles.put("RESOURCE_FRAGMENT_SHADER", gameWorld.getFileSystem().loadFileToString(new File(gameWorld.getStringProperty("RESOURCE_FRAGMENT_SHADER")), true));
+        gameWorld.debug(ResourceSystem.class, "Starting RESOURCE_LOADER_THREADS loader threads");
+        loaders = Executors.newFixedThreadPool(Math.max(1, gameWorld.getProperty(RESOURCE_LOADER_THREADS)), new ThreadFactory() {
+            private int threadCount;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Resource loader " + ++threadCount);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        texturePool = new ForkJoinPool();
+        // The shaders load while the window is being created and are waited for by the rendering system.
+        textFiles.put("RESOURCE_VERTEX_SHADER", loadTextFileAsync(new File(gameWorld.getProperty(RESOURCE_VERTEX_SHADER))));
+        textFiles.put("RESOURCE_FRAGMENT_SHADER", loadTextFileAsync(new File(gameWorld.getProperty(RESOURCE_FRAGMENT_SHADER))));
+        watchDirectories(gameWorld.getProperty(RESOURCE_WATCH_DIRECTORIES));
         gameWorld.info(ResourceSystem.class, "Done creating resource system");
     }
 
+    /**
+     * Starts watching the directories for changes.
+     * @param directories the paths of the directories, separated by commas
+     */
+    private void watchDirectories(String directories) {
+        if (directories.trim().isEmpty()) {
+            return;
+        }
+        gameWorld.debug(ResourceSystem.class, "Watching {} for changes", directories);
+        try {
+            fileWatcher = new FileWatcher(gameWorld.getProperty(RESOURCE_WATCH_DELAY));
+            for (String directory : directories.split(",")) {
+                File file = new File(directory.trim());
+                if (file.isDirectory()) {
+                    fileWatcher.watch(file);
+                } else {
+                    gameWorld.warn(ResourceSystem.class, "Cannot watch {}, it is not a directory", file);
+                }
+            }
+            fileWatcher.start();
+        } catch (IOException e) {
+            // Reloading is a convenience; the game runs fine without it.
+            gameWorld.error(ResourceSystem.class, "Could not watch the resource directories", e);
+            if (fileWatcher != null) {
+                fileWatcher.close();
+                fileWatcher = null;
+            }
+        }
+    }
+
     @Override
     public void destroy() {
         gameWorld.info(ResourceSystem.class, "Destroying resource system");
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+        // Loads that are running finish on their own; interrupting them would close their files.
+        loaders.shutdown();
+        texturePool.shutdown();
+        loadedResources.clear();
+        pendingLoads.set(0);
+        // The resources that own OpenGL objects were freed by the rendering system.
+        gameWorld.debug(ResourceSystem.class, "Clearing resource cache: {}", cache);
+        cache.clear();
+        textFiles.clear();
         gameWorld.info(ResourceSystem.class, "Done destroying resource system");
     }
 
@@ -81,4 +520,14 @@ public class ResourceSystem implements GameModule {
     public GameWorld getGameWorld() {
         return gameWorld;
     }
+
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[] {FileSystem.class};
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.ANY;
+    }
 }
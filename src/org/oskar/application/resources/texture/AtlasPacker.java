@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import java.util.Arrays;
+
+/**
+ * Packs rectangles into a fixed area with the skyline bottom-left heuristic. The packer keeps
+ * the outline of the top edges of the packed rectangles as a list of horizontal segments and
+ * places every new rectangle on the segment where its top ends up lowest.
+ *
+ * @author Oskar Veerhoek
+ */
+public class AtlasPacker {
+
+    private final int width;
+    private final int height;
+    /**
+     * The segments of the skyline from left to right: where they start, how high they are and how wide.
+     */
+    private int[] segmentX;
+    private int[] segmentY;
+    private int[] segmentWidth;
+    private int segmentCount;
+    private long usedArea;
+
+    public AtlasPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.segmentX = new int[16];
+        this.segmentY = new int[16];
+        this.segmentWidth = new int[16];
+        reset();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Removes all the packed rectangles.
+     */
+    public void reset() {
+        segmentCount = 1;
+        segmentX[0] = 0;
+        segmentY[0] = 0;
+        segmentWidth[0] = width;
+        usedArea = 0;
+    }
+
+    /**
+     * @return the fraction of the area that is covered by packed rectangles
+     */
+    public float getOccupancy() {
+        return (float) usedArea / ((long) width * height);
+    }
+
+    /**
+     * Finds a place for a rectangle and reserves it.
+     * @param rectangleWidth the width of the rectangle
+     * @param rectangleHeight the height of the rectangle
+     * @param position receives the x and the y of the bottom left corner of the rectangle
+     * @return whether the rectangle fit
+     */
+    public boolean pack(int rectangleWidth, int rectangleHeight, int[] position) {
+        int bestSegment = -1;
+        int bestY = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int y = fit(segment, rectangleWidth, rectangleHeight);
+            if (y >= 0 && (y < bestY || (y == bestY && segmentWidth[segment] < bestWidth))) {
+                bestSegment = segment;
+                bestY = y;
+                bestWidth = segmentWidth[segment];
+            }
+        }
+        if (bestSegment < 0) {
+            return false;
+        }
+        position[0] = segmentX[bestSegment];
+        position[1] = bestY;
+        addSegment(bestSegment, segmentX[bestSegment], bestY + rectangleHeight, rectangleWidth);
+        usedArea += (long) rectangleWidth * rectangleHeight;
+        return true;
+    }
+
+    /**
+     * @return the y at which the rectangle can be placed with its left edge at the start of the
+     * segment, or -1 if it does not fit there
+     */
+    private int fit(int segment, int rectangleWidth, int rectangleHeight) {
+        int x = segmentX[segment];
+        if (x + rectangleWidth > width) {
+            return -1;
+        }
+        int y = 0;
+        int remaining = rectangleWidth;
+        for (int i = segment; remaining > 0; i++) {
+            y = Math.max(y, segmentY[i]);
+            if (y + rectangleHeight > height) {
+                return -1;
+            }
+            remaining -= segmentWidth[i];
+        }
+        return y;
+    }
+
+    /**
+     * Inserts a segment for the top of a packed rectangle and cuts away the segments below it.
+     */
+    private void addSegment(int index, int x, int y, int segmentWidthToAdd) {
+        if (segmentCount == segmentX.length) {
+            segmentX = Arrays.copyOf(segmentX, segmentCount * 2);
+            segmentY = Arrays.copyOf(segmentY, segmentCount * 2);
+            segmentWidth = Arrays.copyOf(segmentWidth, segmentCount * 2);
+        }
+        System.arraycopy(segmentX, index, segmentX, index + 1, segmentCount - index);
+        System.arraycopy(segmentY, index, segmentY, index + 1, segmentCount - index);
+        System.arraycopy(segmentWidth, index, segmentWidth, index + 1, segmentCount - index);
+        segmentX[index] = x;
+        segmentY[index] = y;
+        segmentWidth[index] = segmentWidthToAdd;
+        segmentCount++;
+        int right = x + segmentWidthToAdd;
+        int next = index + 1;
+        while (next < segmentCount && segmentX[next] < right) {
+            int end = segmentX[next] + segmentWidth[next];
+            if (end <= right) {
+                removeSegment(next);
+            } else {
+                segmentWidth[next] = end - right;
+                segmentX[next] = right;
+                break;
+            }
+        }
+        // Merge neighbours of the same height so the skyline stays short.
+        for (int i = 0; i < segmentCount - 1; ) {
+            if (segmentY[i] == segmentY[i + 1]) {
+                segmentWidth[i] += segmentWidth[i + 1];
+                removeSegment(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private void removeSegment(int index) {
+        segmentCount--;
+        System.arraycopy(segmentX, index + 1, segmentX, index, segmentCount - index);
+        System.arraycopy(segmentY, index + 1, segmentY, index, segmentCount - index);
+        System.arraycopy(segmentWidth, index + 1, segmentWidth, index, segmentCount - index);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+/**
+ * The place of an image in a {@link TextureAtlas}: the page it was packed into, its rectangle
+ * in pixels and the texture coordinates of its edges.
+ *
+ * @author Oskar Veerhoek
+ */
+public class AtlasRegion {
+
+    private final String name;
+    private final int page;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final float u0, v0, u1, v1;
+
+    public AtlasRegion(String name, int page, int x, int y, int width, int height, int pageWidth, int pageHeight) {
+        this.name = name;
+        this.page = page;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.u0 = (float) x / pageWidth;
+        this.v0 = (float) y / pageHeight;
+        this.u1 = (float) (x + width) / pageWidth;
+        this.v1 = (float) (y + height) / pageHeight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the index of the page the image was packed into
+     */
+    public int getPage() {
+        return page;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the horizontal texture coordinate of the left edge
+     */
+    public float getU0() {
+        return u0;
+    }
+
+    /**
+     * @return the vertical texture coordinate of the bottom edge
+     */
+    public float getV0() {
+        return v0;
+    }
+
+    /**
+     * @return the horizontal texture coordinate of the right edge
+     */
+    public float getU1() {
+        return u1;
+    }
+
+    /**
+     * @return the vertical texture coordinate of the top edge
+     */
+    public float getV1() {
+        return v1;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills in the mipmap levels of a texture from level 0 with a 2 by 2 box filter. Every level
+ * is computed from the one above it, and the rows of a level are split over the threads of
+ * a fork-join pool.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class MipmapGenerator {
+
+    /**
+     * The amount of pixels below which a task computes its rows itself instead of splitting them.
+     */
+    private static final int PIXELS_PER_TASK = 16 * 1024;
+
+    private MipmapGenerator() {}
+
+    /**
+     * @param texture a texture with room for mipmap levels and level 0 filled in
+     * @param pool the pool to compute the levels on
+     */
+    public static void generate(TextureData texture, ForkJoinPool pool) {
+        for (int level = 1; level < texture.getLevelCount(); level++) {
+            int rowsPerTask = Math.max(1, PIXELS_PER_TASK / texture.getWidth(level));
+            pool.invoke(new LevelTask(texture, level, 0, texture.getHeight(level), rowsPerTask));
+        }
+    }
+
+    /**
+     * Fills in the mipmap levels on the calling thread.
+     * @param texture a texture with room for mipmap levels and level 0 filled in
+     */
+    public static void generate(TextureData texture) {
+        for (int level = 1; level < texture.getLevelCount(); level++) {
+            downsample(texture, level, 0, texture.getHeight(level));
+        }
+    }
+
+    /**
+     * Computes the rows from firstRow up to lastRow of a level from the level above it.
+     */
+    private static void downsample(TextureData texture, int level, int firstRow, int lastRow) {
+        ByteBuffer pixels = texture.getPixels();
+        int sourceWidth = texture.getWidth(level - 1);
+        int sourceHeight = texture.getHeight(level - 1);
+        int sourceOffset = texture.getOffset(level - 1);
+        int width = texture.getWidth(level);
+        int offset = texture.getOffset(level);
+        int sourceStride = sourceWidth * TextureData.BYTES_PER_PIXEL;
+        for (int y = firstRow; y < lastRow; y++) {
+            // Levels with an odd or unit size repeat their last row and column.
+            int row0 = sourceOffset + Math.min(2 * y, sourceHeight - 1) * sourceStride;
+            int row1 = sourceOffset + Math.min(2 * y + 1, sourceHeight - 1) * sourceStride;
+            int target = offset + y * width * TextureData.BYTES_PER_PIXEL;
+            for (int x = 0; x < width; x++) {
+                int column0 = Math.min(2 * x, sourceWidth - 1) * TextureData.BYTES_PER_PIXEL;
+                int column1 = Math.min(2 * x + 1, sourceWidth - 1) * TextureData.BYTES_PER_PIXEL;
+                for (int channel = 0; channel < TextureData.BYTES_PER_PIXEL; channel++) {
+                    int sum = (pixels.get(row0 + column0 + channel) & 0xFF)
+                            + (pixels.get(row0 + column1 + channel) & 0xFF)
+                            + (pixels.get(row1 + column0 + channel) & 0xFF)
+                            + (pixels.get(row1 + column1 + channel) & 0xFF);
+                    pixels.put(target++, (byte) ((sum + 2) >> 2));
+                }
+            }
+        }
+    }
+
+    private static class LevelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TextureData texture;
+        private final int level;
+        private final int firstRow;
+        private final int lastRow;
+        private final int rowsPerTask;
+
+        private LevelTask(TextureData texture, int level, int firstRow, int lastRow, int rowsPerTask) {
+            this.texture = texture;
+            this.level = level;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastRow - firstRow <= rowsPerTask) {
+                downsample(texture, level, firstRow, lastRow);
+            } else {
+                int middle = (firstRow + lastRow) >>> 1;
+                invokeAll(new LevelTask(texture, level, firstRow, middle, rowsPerTask),
+                        new LevelTask(texture, level, middle, lastRow, rowsPerTask));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import org.oskar.view.RenderingSystem;
+
+/**
+ * A texture that starts out as pixels in memory and becomes an OpenGL texture once it is
+ * uploaded, after which the pixels in memory are freed.
+ *
+ * @author Oskar Veerhoek
+ */
+public class Texture {
+
+    private final int width;
+    private final int height;
+    private final long byteCount;
+    private volatile TextureData data;
+    private volatile int name;
+
+    public Texture(TextureData data) {
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.byteCount = data.getByteCount();
+        this.data = data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the name of the OpenGL texture, or 0 if it has not been uploaded
+     */
+    public int getName() {
+        return name;
+    }
+
+    /**
+     * @return the pixels, or null once the texture has been uploaded
+     */
+    public TextureData getData() {
+        return data;
+    }
+
+    /**
+     * @return the amount of bytes the pixels of all the levels take up
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Creates the OpenGL texture and frees the pixels. Must be called on the OpenGL thread.
+     */
+    public void upload(RenderingSystem renderingSystem) {
+        if (data != null) {
+            name = renderingSystem.createTexture(data);
+            data.free();
+            data = null;
+        }
+    }
+
+    /**
+     * Deletes the OpenGL texture, or frees the pixels if it was never uploaded. Must be called
+     * on the OpenGL thread.
+     */
+    public void delete(RenderingSystem renderingSystem) {
+        if (name != 0) {
+            renderingSystem.deleteTexture(name);
+            name = 0;
+        }
+        if (data != null) {
+            data.free();
+            data = null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import org.oskar.view.RenderingSystem;
+
+import java.util.Map;
+
+/**
+ * Images packed together into a few large textures, the pages, so that quads with different
+ * images can be drawn without binding another texture in between.
+ *
+ * @author Oskar Veerhoek
+ */
+public class TextureAtlas {
+
+    private final Texture[] pages;
+    private final Map<String, AtlasRegion> regions;
+
+    TextureAtlas(Texture[] pages, Map<String, AtlasRegion> regions) {
+        this.pages = pages;
+        this.regions = regions;
+    }
+
+    public int getPageCount() {
+        return pages.length;
+    }
+
+    public Texture getPage(int page) {
+        return pages[page];
+    }
+
+    /**
+     * @return the region of the image with the given name, or null if it is not in the atlas
+     */
+    public AtlasRegion getRegion(String name) {
+        return regions.get(name);
+    }
+
+    /**
+     * @return the texture of the page the region was packed into
+     */
+    public Texture getTexture(AtlasRegion region) {
+        return pages[region.getPage()];
+    }
+
+    public long getByteCount() {
+        long bytes = 0;
+        for (Texture page : pages) {
+            bytes += page.getByteCount();
+        }
+        return bytes;
+    }
+
+    /**
+     * Uploads all the pages. Must be called on the OpenGL thread.
+     */
+    public void upload(RenderingSystem renderingSystem) {
+        for (Texture page : pages) {
+            page.upload(renderingSystem);
+        }
+    }
+
+    /**
+     * Deletes all the pages. Must be called on the OpenGL thread.
+     */
+    public void delete(RenderingSystem renderingSystem) {
+        for (Texture page : pages) {
+            page.delete(renderingSystem);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Packs images into the pages of a {@link TextureAtlas}. Images are packed from the tallest to
+ * the shortest into the first page they fit in, and a new page is started when they fit in none.
+ * Does not make OpenGL calls, so it can run on any thread.
+ *
+ * @author Oskar Veerhoek
+ */
+public class TextureAtlasBuilder {
+
+    private static class Image {
+        private final String name;
+        private final TextureData data;
+
+        private Image(String name, TextureData data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private final int pageSize;
+    private final int padding;
+    private final boolean mipmapped;
+    private final List<Image> images = new ArrayList<Image>();
+
+    /**
+     * @param pageSize the width and height of every page
+     * @param padding the amount of empty pixels around every image, which keeps neighbouring
+     *                images from bleeding into each other when filtering and mipmapping
+     * @param mipmapped whether the pages get mipmaps
+     */
+    public TextureAtlasBuilder(int pageSize, int padding, boolean mipmapped) {
+        this.pageSize = pageSize;
+        this.padding = padding;
+        this.mipmapped = mipmapped;
+    }
+
+    /**
+     * Adds an image to the atlas. The image is freed once it is copied into its page.
+     * @param name the name under which the region of the image can be looked up
+     * @param image the image, of which only level 0 is used
+     */
+    public void add(String name, TextureData image) {
+        if (image.getWidth() + 2 * padding > pageSize || image.getHeight() + 2 * padding > pageSize) {
+            throw new IllegalArgumentException(name + " does not fit in a page of " + pageSize + " by " + pageSize);
+        }
+        images.add(new Image(name, image));
+    }
+
+    /**
+     * Packs all the added images and copies them into the pages.
+     * @param pool the pool to generate the mipmaps of the pages on, or null to generate them on the calling thread
+     */
+    public TextureAtlas build(ForkJoinPool pool) {
+        Collections.sort(images, new Comparator<Image>() {
+            @Override
+            public int compare(Image first, Image second) {
+                int byHeight = second.data.getHeight() - first.data.getHeight();
+                return byHeight != 0 ? byHeight : second.data.getWidth() - first.data.getWidth();
+            }
+        });
+        List<AtlasPacker> packers = new ArrayList<AtlasPacker>();
+        List<TextureData> pages = new ArrayList<TextureData>();
+        Map<String, AtlasRegion> regions = new HashMap<String, AtlasRegion>();
+        int[] position = new int[2];
+        for (Image image : images) {
+            int width = image.data.getWidth();
+            int height = image.data.getHeight();
+            int page = 0;
+            while (page < packers.size() && !packers.get(page).pack(width + 2 * padding, height + 2 * padding, position)) {
+                page++;
+            }
+            if (page == packers.size()) {
+                AtlasPacker packer = new AtlasPacker(pageSize, pageSize);
+                packer.pack(width + 2 * padding, height + 2 * padding, position);
+                packers.add(packer);
+                pages.add(new TextureData(pageSize, pageSize, mipmapped));
+            }
+            int x = position[0] + padding;
+            int y = position[1] + padding;
+            copy(image.data, pages.get(page), x, y);
+            image.data.free();
+            regions.put(image.name, new AtlasRegion(image.name, page, x, y, width, height, pageSize, pageSize));
+        }
+        images.clear();
+        Texture[] textures = new Texture[pages.size()];
+        for (int page = 0; page < textures.length; page++) {
+            if (mipmapped) {
+                if (pool != null) {
+                    MipmapGenerator.generate(pages.get(page), pool);
+                } else {
+                    MipmapGenerator.generate(pages.get(page));
+                }
+            }
+            textures[page] = new Texture(pages.get(page));
+        }
+        return new TextureAtlas(textures, regions);
+    }
+
+    /**
+     * Copies level 0 of the image into level 0 of the page, row by row.
+     */
+    private static void copy(TextureData image, TextureData page, int x, int y) {
+        int rowBytes = image.getWidth() * TextureData.BYTES_PER_PIXEL;
+        int pageStride = page.getWidth() * TextureData.BYTES_PER_PIXEL;
+        ByteBuffer source = image.getPixels().duplicate();
+        ByteBuffer target = page.getPixels().duplicate();
+        for (int row = 0; row < image.getHeight(); row++) {
+            source.limit((row + 1) * rowBytes).position(row * rowBytes);
+            target.position((y + row) * pageStride + x * TextureData.BYTES_PER_PIXEL);
+            target.put(source);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import org.lwjgl.BufferUtils;
+import org.oskar.application.resources.DirectBuffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The pixels of a texture in RGBA order with one byte per channel, in a single direct buffer
+ * that holds the whole mipmap chain, level 0 first. Rows are stored bottom to top, the way
+ * OpenGL expects them.
+ *
+ * @author Oskar Veerhoek
+ */
+public class TextureData {
+
+    public static final int BYTES_PER_PIXEL = 4;
+
+    private final int width;
+    private final int height;
+    private final int levelCount;
+    private final int[] offsets;
+    private ByteBuffer pixels;
+
+    /**
+     * Allocates a texture with all its pixels transparent black.
+     * @param width the width of level 0
+     * @param height the height of level 0
+     * @param mipmapped whether to make room for the mipmap levels down to 1 by 1
+     */
+    public TextureData(int width, int height, boolean mipmapped) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("A texture cannot be " + width + " by " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.levelCount = mipmapped ? 32 - Integer.numberOfLeadingZeros(Math.max(width, height)) : 1;
+        this.offsets = new int[levelCount + 1];
+        for (int level = 0; level < levelCount; level++) {
+            offsets[level + 1] = offsets[level] + getWidth(level) * getHeight(level) * BYTES_PER_PIXEL;
+        }
+        this.pixels = BufferUtils.createByteBuffer(offsets[levelCount]);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth(int level) {
+        return Math.max(1, width >> level);
+    }
+
+    public int getHeight(int level) {
+        return Math.max(1, height >> level);
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * @return the position of the first byte of the level in {@link #getPixels()}
+     */
+    public int getOffset(int level) {
+        return offsets[level];
+    }
+
+    /**
+     * @return the buffer with all the levels; its position and limit are not used
+     */
+    public ByteBuffer getPixels() {
+        checkNotFreed();
+        return pixels;
+    }
+
+    /**
+     * @return a view of the pixels of one level, from position 0 to the limit
+     */
+    public ByteBuffer getLevel(int level) {
+        checkNotFreed();
+        ByteBuffer view = pixels.duplicate();
+        view.limit(offsets[level + 1]).position(offsets[level]);
+        return view.slice();
+    }
+
+    /**
+     * @return the amount of bytes all the levels take up
+     */
+    public int getByteCount() {
+        return offsets[levelCount];
+    }
+
+    /**
+     * Frees the pixels right away. The texture data cannot be used anymore afterwards.
+     */
+    public void free() {
+        if (pixels != null) {
+            DirectBuffers.free(pixels);
+            pixels = null;
+        }
+    }
+
+    private void checkNotFreed() {
+        if (pixels == null) {
+            throw new IllegalStateException("The texture data has been freed");
+        }
+    }
+}
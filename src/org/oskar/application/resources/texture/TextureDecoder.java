@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.application.resources.texture;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes image files (PNG, JPEG, BMP and GIF, through ImageIO) into {@link TextureData}.
+ * Does not make OpenGL calls, so it can run on any thread.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class TextureDecoder {
+
+    private TextureDecoder() {}
+
+    /**
+     * @param mipmapped whether to make room for the mipmap levels, which are left empty
+     */
+    public static TextureData decode(File file, boolean mipmapped) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException(file + " is not an image format that can be decoded");
+        }
+        return decode(image, mipmapped);
+    }
+
+    /**
+     * @param mipmapped whether to make room for the mipmap levels, which are left empty
+     */
+    public static TextureData decode(InputStream input, boolean mipmapped) throws IOException {
+        BufferedImage image = ImageIO.read(input);
+        if (image == null) {
+            throw new IOException("The stream does not hold an image format that can be decoded");
+        }
+        return decode(image, mipmapped);
+    }
+
+    /**
+     * Decodes an image file that was loaded into a buffer, e.g. a slice of an asset archive.
+     * @param encoded the contents of the image file, from the position to the limit
+     * @param mipmapped whether to make room for the mipmap levels, which are left empty
+     */
+    public static TextureData decode(ByteBuffer encoded, boolean mipmapped) throws IOException {
+        return decode(new ByteBufferInputStream(encoded.duplicate()), mipmapped);
+    }
+
+    /**
+     * Copies the pixels of the image into level 0 of a new texture, turning it upside down.
+     * @param mipmapped whether to make room for the mipmap levels, which are left empty
+     */
+    public static TextureData decode(BufferedImage image, boolean mipmapped) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        TextureData texture = new TextureData(width, height, mipmapped);
+        ByteBuffer pixels = texture.getPixels();
+        byte[] row = new byte[width * TextureData.BYTES_PER_PIXEL];
+        switch (image.getType()) {
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                // The common case for PNGs with alpha: swap the bytes straight out of the raster.
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    int source = y * width * 4;
+                    for (int x = 0; x < row.length; x += 4, source += 4) {
+                        row[x] = data[source + 3];
+                        row[x + 1] = data[source + 2];
+                        row[x + 2] = data[source + 1];
+                        row[x + 3] = data[source];
+                    }
+                    putRow(pixels, row, height - 1 - y);
+                }
+                break;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    int source = y * width * 3;
+                    for (int x = 0; x < row.length; x += 4, source += 3) {
+                        row[x] = data[source + 2];
+                        row[x + 1] = data[source + 1];
+                        row[x + 2] = data[source];
+                        row[x + 3] = (byte) 0xFF;
+                    }
+                    putRow(pixels, row, height - 1 - y);
+                }
+                break;
+            }
+            default: {
+                int[] argb = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, argb, 0, width);
+                    for (int x = 0, target = 0; x < width; x++, target += 4) {
+                        int pixel = argb[x];
+                        row[target] = (byte) (pixel >> 16);
+                        row[target + 1] = (byte) (pixel >> 8);
+                        row[target + 2] = (byte) pixel;
+                        row[target + 3] = (byte) (pixel >>> 24);
+                    }
+                    putRow(pixels, row, height - 1 - y);
+                }
+                break;
+            }
+        }
+        return texture;
+    }
+
+    /**
+     * Reads a buffer without copying it into an array first.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static void putRow(ByteBuffer pixels, byte[] row, int y) {
+        pixels.position(y * row.length);
+        pixels.put(row);
+        pixels.clear();
+    }
+}
@@ -33,6 +33,9 @@ import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.*;
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+
+import static org.oskar.GameProperties.*;
 
 /**
  * Handling all the rendering.
@@ -42,6 +45,10 @@ import org.oskar.GameWorld;
 public class WindowingSystem implements GameModule {
 
     private GameWorld gameWorld;
+    /**
+     * The maximum amount of frames per second, or 0 for no limit.
+     */
+    private int frameRate;
 
     @Override
     public void create(GameWorld gameWorld) {
@@ -49,11 +56,13 @@ public class WindowingSystem implements GameModule {
         this.gameWorld.info(WindowingSystem.class, "Creating windowing system");
         try {
             this.gameWorld.debug(WindowingSystem.class, "Setting display mode to WINDOW_WIDTH, WINDOW_HEIGHT");
-            Display.setDisplayMode(new DisplayMode(gameWorld.getIntegerProperty("WINDOW_WIDTH"), gameWorld.getIntegerProperty("WINDOW_HEIGHT")));
+            Display.setDisplayMode(new DisplayMode(gameWorld.getProperty(WINDOW_WIDTH), gameWorld.getProperty(WINDOW_HEIGHT)));
             this.gameWorld.debug(WindowingSystem.class, "Enabling VSync");
             Display.setVSyncEnabled(true);
+            this.gameWorld.debug(WindowingSystem.class, "Limiting frame rate to RENDER_FRAME_RATE");
+            frameRate = gameWorld.getProperty(RENDER_FRAME_RATE);
             this.gameWorld.debug(WindowingSystem.class, "Setting window title to WINDOW_TITLE");
-            Display.setTitle(gameWorld.getStringProperty("WINDOW_TITLE"));
+            Display.setTitle(gameWorld.getProperty(WINDOW_TITLE));
             this.gameWorld.debug(WindowingSystem.class, "Settings window.resizable to true");
             Display.setResizable(true);
             this.gameWorld.debug(WindowingSystem.class, "Creating a display with a 3.2 OpenGL core profile context");
@@ -78,13 +87,29 @@ public class WindowingSystem implements GameModule {
         return gameWorld;
     }
 
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.CONTEXT;
+    }
+
     public void update() {
         if (Display.isCloseRequested()) {
             gameWorld.setFlaggedForDestruction(true);
         }
         if (Display.wasResized()) {
             GL11.glViewport(0, 0, Display.getWidth(), Display.getHeight());
+            // Let the modules that depend on the window size know about the new size.
+            gameWorld.setProperty(WINDOW_WIDTH, Display.getWidth());
+            gameWorld.setProperty(WINDOW_HEIGHT, Display.getHeight());
         }
         Display.update();
+        if (frameRate > 0) {
+            Display.sync(frameRate);
+        }
     }
 }
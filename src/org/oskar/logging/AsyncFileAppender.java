@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logging;
+
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * A file appender that does not write on the thread that logs. Events are put into a ring
+ * of preallocated slots and a background thread writes them to the file in batches, so the
+ * game loop never waits for the disk. When the ring is full, new events are dropped and
+ * counted instead of blocking the thread that logs.
+ *
+ * Takes the same options as {@link FileAppender}, plus QueueSize, the amount of slots in
+ * the ring (1024 by default).
+ *
+ * @author Oskar Veerhoek
+ */
+public class AsyncFileAppender extends FileAppender {
+
+    private int queueSize = 1024;
+    private LoggingEvent[] queue;
+    private LoggingEvent[] batch;
+    private int head;
+    private int size;
+    private long droppedEvents;
+    private boolean closing;
+    private Thread writerThread;
+    private final Object lock = new Object();
+
+    public AsyncFileAppender() {
+        // The writer thread flushes once per batch instead of once per event.
+        setImmediateFlush(false);
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * @return the amount of events that were dropped because the queue was full
+     */
+    public long getDroppedEvents() {
+        synchronized (lock) {
+            return droppedEvents;
+        }
+    }
+
+    @Override
+    public void activateOptions() {
+        super.activateOptions();
+        synchronized (lock) {
+            if (queue == null) {
+                queue = new LoggingEvent[queueSize];
+                batch = new LoggingEvent[queueSize];
+            }
+        }
+        if (writerThread == null) {
+            writerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeEvents();
+                }
+            }, "Log writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Queues the event. Called by log4j on the thread that logs.
+     */
+    @Override
+    public void append(LoggingEvent event) {
+        if (queue == null) {
+            super.append(event);
+            return;
+        }
+        // Take everything that depends on the logging thread before handing the event over.
+        event.getThreadName();
+        event.getNDC();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        synchronized (lock) {
+            if (size == queue.length || closing) {
+                droppedEvents++;
+                return;
+            }
+            queue[(head + size) % queue.length] = event;
+            size++;
+            if (size == 1) {
+                lock.notify();
+            }
+        }
+    }
+
+    private void writeEvents() {
+        while (true) {
+            int count;
+            synchronized (lock) {
+                while (size == 0 && !closing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (size == 0) {
+                    return;
+                }
+                count = size;
+                for (int i = 0; i < count; i++) {
+                    batch[i] = queue[head];
+                    queue[head] = null;
+                    head = (head + 1) % queue.length;
+                }
+                size = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                super.append(batch[i]);
+                batch[i] = null;
+            }
+            if (qw != null) {
+                qw.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes out all the queued events and closes the file.
+     */
+    @Override
+    public void close() {
+        Thread thread = writerThread;
+        synchronized (lock) {
+            closing = true;
+            lock.notify();
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (droppedEvents > 0) {
+            errorHandler.error("Dropped " + droppedEvents + " log events because the queue was full");
+        }
+        super.close();
+    }
+}
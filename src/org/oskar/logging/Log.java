@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logging;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Logs through log4j with as little work as possible when a level is disabled. Loggers are
+ * looked up once per class and cached, the level is checked before anything else happens,
+ * and messages with arguments are only put together when they will actually be logged.
+ * Arguments are filled into the message in place of "{}", in order.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class Log {
+
+    private static final ConcurrentMap<Class<?>, Logger> loggers = new ConcurrentHashMap<Class<?>, Logger>();
+
+    private Log() {}
+
+    /**
+     * @return the logger of the class, looked up only the first time it is needed
+     */
+    public static Logger getLogger(Class<?> sender) {
+        Logger logger = loggers.get(sender);
+        if (logger == null) {
+            logger = Logger.getLogger(sender);
+            Logger existing = loggers.putIfAbsent(sender, logger);
+            if (existing != null) {
+                logger = existing;
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * @return whether messages of the given level from the class will be logged
+     */
+    public static boolean isEnabled(Class<?> sender, Level level) {
+        return getLogger(sender).isEnabledFor(level);
+    }
+
+    public static void log(Class<?> sender, Level level, String message) {
+        Logger logger = getLogger(sender);
+        if (logger.isEnabledFor(level)) {
+            logger.log(level, message);
+        }
+    }
+
+    public static void log(Class<?> sender, Level level, String format, Object argument) {
+        Logger logger = getLogger(sender);
+        if (logger.isEnabledFor(level)) {
+            logger.log(level, format(format, argument, null, 1));
+        }
+    }
+
+    public static void log(Class<?> sender, Level level, String format, Object first, Object second) {
+        Logger logger = getLogger(sender);
+        if (logger.isEnabledFor(level)) {
+            logger.log(level, format(format, first, second, 2));
+        }
+    }
+
+    public static void log(Class<?> sender, Level level, String message, Throwable throwable) {
+        Logger logger = getLogger(sender);
+        if (logger.isEnabledFor(level)) {
+            logger.log(level, message, throwable);
+        }
+    }
+
+    /**
+     * Fills up to two arguments into the "{}" placeholders of the format.
+     */
+    static String format(String format, Object first, Object second, int argumentCount) {
+        StringBuilder builder = new StringBuilder(format.length() + 32);
+        int start = 0;
+        for (int argument = 0; argument < argumentCount; argument++) {
+            int placeholder = format.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            builder.append(format, start, placeholder).append(argument == 0 ? first : second);
+            start = placeholder + 2;
+        }
+        return builder.append(format, start, format.length()).toString();
+    }
+
+    /**
+     * Closes all the appenders, which writes out everything that is still waiting in an
+     * {@link AsyncFileAppender}. Has to be called before the virtual machine exits.
+     */
+    public static void shutdown() {
+        LogManager.shutdown();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic;
+
+import org.oskar.view.DrawCommandList;
+
+/**
+ * The state the logic system hands to the rendering system after a tick. Snapshots are
+ * passed between threads through a {@link org.oskar.TripleBuffer}, which reuses them, so a
+ * snapshot is only filled in by the logic thread and is not changed once it is published.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FrameSnapshot {
+
+    private long tick;
+    private long publishTime;
+    private long renderFrame;
+    private float previousBiasX = 1, previousBiasY = 1, previousBiasZ = 1;
+    private float biasX = 1, biasY = 1, biasZ = 1;
+    private final DrawCommandList drawCommands = new DrawCommandList();
+
+    /**
+     * Stores the bias of the previous tick and of the latest tick.
+     */
+    public void setBias(float previousX, float previousY, float previousZ, float x, float y, float z) {
+        this.previousBiasX = previousX;
+        this.previousBiasY = previousY;
+        this.previousBiasZ = previousZ;
+        this.biasX = x;
+        this.biasY = y;
+        this.biasZ = z;
+    }
+
+    /**
+     * @param tick the amount of ticks the logic had run when the snapshot was taken
+     * @param publishTime the time the snapshot was published in nanoseconds, as returned by System.nanoTime()
+     * @param renderFrame the frame the rendering system was drawing when the snapshot was published
+     */
+    public void setTiming(long tick, long publishTime, long renderFrame) {
+        this.tick = tick;
+        this.publishTime = publishTime;
+        this.renderFrame = renderFrame;
+    }
+
+    /**
+     * @return the draw commands the logic submitted during the latest tick
+     */
+    public DrawCommandList getDrawCommands() {
+        return drawCommands;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    public long getRenderFrame() {
+        return renderFrame;
+    }
+
+    /**
+     * @param alpha how far between the previous tick and the latest tick, from 0 to 1
+     */
+    public float getBiasX(float alpha) {
+        return previousBiasX + (biasX - previousBiasX) * alpha;
+    }
+
+    /**
+     * @param alpha how far between the previous tick and the latest tick, from 0 to 1
+     */
+    public float getBiasY(float alpha) {
+        return previousBiasY + (biasY - previousBiasY) * alpha;
+    }
+
+    /**
+     * @param alpha how far between the previous tick and the latest tick, from 0 to 1
+     */
+    public float getBiasZ(float alpha) {
+        return previousBiasZ + (biasZ - previousBiasZ) * alpha;
+    }
+}
@@ -30,20 +30,99 @@
 package org.oskar.logic;
 
 import org.lwjgl.input.Keyboard;
-import org.lwjgl.util.vector.Vector2f;
-import org.lwjgl.util.vector.Vector3f;
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+import org.oskar.application.input.InputEventHandler;
+import org.oskar.application.input.InputEventQueue;
+import org.oskar.logic.entity.ComponentType;
+import org.oskar.logic.entity.EntityStore;
+import org.oskar.logic.entity.EntitySystem;
+import org.oskar.logic.entity.MovementSystem;
+import org.oskar.logic.entity.SystemScheduler;
+import org.oskar.logic.spatial.EntityPicker;
+import org.oskar.logic.spatial.IntList;
+import org.oskar.math.MathScratch;
+import org.oskar.math.Vec3;
+import org.oskar.property.PropertyKey;
+import org.oskar.property.PropertyListener;
+import org.oskar.property.PropertyRegistry;
+import org.oskar.view.DrawCommandList;
 
-public class LogicSystem implements GameModule {
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static org.oskar.GameProperties.LOGIC_PICK_CELL_SIZE;
+import static org.oskar.GameProperties.LOGIC_THREADS;
+import static org.oskar.GameProperties.LOGIC_TICK_RATE;
+import static org.oskar.GameProperties.WINDOW_HEIGHT;
+import static org.oskar.GameProperties.WINDOW_WIDTH;
+
+/**
+ * Advances the game by ticks of fixed length. The simulated objects are entities in an
+ * {@link EntityStore}, which the entity systems update every tick, in parallel on
+ * LOGIC_THREADS threads when there is more than one. Entities with a position and an extent
+ * can be picked with the mouse.
+ *
+ * @author Oskar Veerhoek
+ */
+public class LogicSystem implements GameModule, InputEventHandler, PropertyListener {
+    /**
+     * Marks the entity that was picked last with the left mouse button.
+     */
+    public static final ComponentType SELECTED = ComponentType.tag("Selected");
     private GameWorld gameWorld;
+    /**
+     * The size of the window, kept up to date by listening to the WINDOW_WIDTH and WINDOW_HEIGHT properties.
+     */
+    private volatile int windowWidth, windowHeight;
+    /**
+     * The bias computed by the previous tick and by the latest tick.
+     */
+    private final Vec3 previousBias = new Vec3(1, 1, 1);
+    private final Vec3 bias = new Vec3(1, 1, 1);
+    private EntityStore entities;
+    private SystemScheduler systems;
+    private ForkJoinPool systemThreads;
+    private float tickSeconds;
+    private EntityPicker picker;
+    private final IntList picked = new IntList(1);
+    private int selectedEntity;
+    private boolean hasSelectedEntity;
+    private final DrawCommandList drawCommands = new DrawCommandList();
+
+    /**
+     * Dispatches an event taken out of the input system's event queue.
+     */
+    @Override
+    public void handleInputEvent(int type, int code, int x, int y, long time) {
+        switch (type) {
+            case InputEventQueue.KEY_PRESSED:
+                sendKeyInput(code);
+                break;
+            case InputEventQueue.MOUSE_PRESSED:
+                sendMouseInput(code, x, y);
+                break;
+        }
+    }
+
+    @Override
+    public void propertyChanged(PropertyRegistry registry, PropertyKey key) {
+        if (key == WINDOW_WIDTH) {
+            windowWidth = registry.get(WINDOW_WIDTH);
+        } else if (key == WINDOW_HEIGHT) {
+            windowHeight = registry.get(WINDOW_HEIGHT);
+        }
+    }
 
     /**
      * Tells the logic system that a key was pressed.
      * @param key the key that was pressed
      */
     public void sendKeyInput(int key) {
-        gameWorld.debug(LogicSystem.class, "Processing Key " + gameWorld.getInputSystem().keyToString(key) + " which has been pressed");
+        if (gameWorld.isDebugEnabled(LogicSystem.class)) {
+            gameWorld.debug(LogicSystem.class, "Processing Key {} which has been pressed", gameWorld.getInputSystem().keyToString(key));
+        }
         if (key == Keyboard.KEY_Q) {
             gameWorld.getRenderingSystem().setIsDrawing(false);
         } else if (key == Keyboard.KEY_S) {
@@ -52,37 +131,166 @@ public class LogicSystem implements GameModule {
     }
 
     /**
-     * Tells the logic system that a mouse button was pressed.
+     * Tells the logic system that a mouse button was pressed. The left button selects the
+     * entity under the mouse, or nothing if there is none. Until there is a camera, world
+     * units are pixels from the bottom left corner of the window, like the mouse position.
      * @param mouseButton the mouse button that was pressed
      */
     public void sendMouseInput(int mouseButton, int x, int y) {
-
+        if (mouseButton != 0) {
+            return;
+        }
+        if (hasSelectedEntity && entities.isAlive(selectedEntity)) {
+            entities.remove(selectedEntity, SELECTED);
+        }
+        picked.clear();
+        hasSelectedEntity = picker.pick(x, y, picked);
+        if (hasSelectedEntity) {
+            selectedEntity = picked.get(0);
+            entities.add(selectedEntity, SELECTED);
+            if (gameWorld.isDebugEnabled(LogicSystem.class)) {
+                gameWorld.debug(LogicSystem.class, "Picked entity {} at {}", selectedEntity, x + ", " + y);
+            }
+        }
     }
 
     @Override
     public void create(GameWorld gameWorld) {
         this.gameWorld = gameWorld;
         gameWorld.info(LogicSystem.class, "Creating logic system");
+        windowWidth = gameWorld.getProperty(WINDOW_WIDTH);
+        windowHeight = gameWorld.getProperty(WINDOW_HEIGHT);
+        gameWorld.getProperties().addListener(WINDOW_WIDTH, this);
+        gameWorld.getProperties().addListener(WINDOW_HEIGHT, this);
+        tickSeconds = 1f / Math.max(1, gameWorld.getProperty(LOGIC_TICK_RATE));
+        int threads = gameWorld.getProperty(LOGIC_THREADS);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (threads > 1) {
+            systemThreads = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("Logic worker " + thread.getPoolIndex());
+                    return thread;
+                }
+            }, null, false);
+        }
+        gameWorld.debug(LogicSystem.class, "Running the entity systems on {} threads", threads > 1 ? threads : 1);
+        entities = new EntityStore();
+        systems = new SystemScheduler(entities, systemThreads);
+        systems.addSystem(new MovementSystem());
+        picker = new EntityPicker(entities, Math.max(1, gameWorld.getProperty(LOGIC_PICK_CELL_SIZE)));
         gameWorld.info(LogicSystem.class, "Done creating logic system");
     }
 
     @Override
     public void destroy() {
         gameWorld.info(LogicSystem.class, "Destroying logic system");
+        gameWorld.getProperties().removeListener(WINDOW_WIDTH, this);
+        gameWorld.getProperties().removeListener(WINDOW_HEIGHT, this);
+        if (systemThreads != null) {
+            systemThreads.shutdown();
+            systemThreads = null;
+        }
         gameWorld.info(LogicSystem.class, "Done destroying logic system");
     }
 
+    /**
+     * Advances the logic by one tick of fixed length.
+     */
     public void update() {
-        Vector2f mousePosition = gameWorld.getInputSystem().getMousePosition();
-        Vector3f bias = new Vector3f();
-        bias.x = mousePosition.x / gameWorld.getIntegerProperty("WINDOW_WIDTH");
-        bias.y = mousePosition.y / gameWorld.getIntegerProperty("WINDOW_HEIGHT");
-        bias.z = (bias.x + bias.y) / 2;
-        gameWorld.getRenderingSystem().setBias(bias.x, bias.y, bias.z);
+        // Handle the input that arrived since the previous tick first.
+        gameWorld.getInputSystem().getEventQueue().drain(this);
+        drawCommands.clear();
+        previousBias.set(bias);
+        float x = (float) gameWorld.getInputSystem().getMouseX() / windowWidth;
+        float y = (float) gameWorld.getInputSystem().getMouseY() / windowHeight;
+        bias.set(x, y, (x + y) / 2);
+        systems.run(tickSeconds);
+        picker.update();
+    }
+
+    /**
+     * @return the entities the logic simulates; they can only be created, destroyed or changed
+     * on the thread that ticks the logic, outside of {@link #update()}
+     */
+    public EntityStore getEntities() {
+        return entities;
+    }
+
+    /**
+     * Adds a system that updates the entities every tick, after the systems it conflicts with
+     * that were added before it.
+     */
+    public void addSystem(EntitySystem system) {
+        systems.addSystem(system);
+    }
+
+    public void removeSystem(EntitySystem system) {
+        systems.removeSystem(system);
+    }
+
+    public SystemScheduler getScheduler() {
+        return systems;
+    }
+
+    /**
+     * @return the index of the entities with a position and an extent, as of the last tick
+     */
+    public EntityPicker getPicker() {
+        return picker;
+    }
+
+    /**
+     * @return the draw commands of the latest tick, which the rendering system sorts into its
+     * {@link org.oskar.view.RenderQueue} every frame until the next tick. The list is cleared at the
+     * start of every tick and can only be filled on the thread that ticks the logic.
+     */
+    public DrawCommandList getDrawCommands() {
+        return drawCommands;
+    }
+
+    /**
+     * Stores the state of the last two ticks in a snapshot for the rendering system.
+     * @param snapshot the snapshot to fill in
+     */
+    public void storeSnapshot(FrameSnapshot snapshot) {
+        snapshot.setBias(previousBias.x, previousBias.y, previousBias.z, bias.x, bias.y, bias.z);
+        snapshot.getDrawCommands().set(drawCommands);
+    }
+
+    /**
+     * Hands the state between the last two ticks, and the draw commands of the latest tick, to
+     * the rendering system. Only called when the logic ticks on the OpenGL thread; otherwise
+     * they are handed over in a {@link FrameSnapshot}.
+     * @param alpha how far the frame lies between the previous tick and the latest tick, from 0 to 1
+     */
+    public void interpolate(float alpha) {
+        MathScratch scratch = MathScratch.get();
+        scratch.push();
+        try {
+            Vec3 interpolated = scratch.vec3().set(previousBias).lerp(bias, alpha);
+            gameWorld.getRenderingSystem().setBias(interpolated.x, interpolated.y, interpolated.z);
+            gameWorld.getRenderingSystem().getRenderQueue().submitAll(drawCommands);
+        } finally {
+            scratch.pop();
+        }
     }
 
     @Override
     public GameWorld getGameWorld() {
         return gameWorld;
     }
+
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.ANY;
+    }
 }
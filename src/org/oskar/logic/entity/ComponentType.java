@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A kind of component, made of named float and int fields. Every type is created once,
+ * usually as a constant, and gets a fixed bit in the masks of the {@link EntityTable}s, so
+ * finding the tables with a set of components is a matter of comparing masks.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class ComponentType {
+
+    /**
+     * The amount of component types there can be, one per bit of a mask.
+     */
+    public static final int MAX_TYPES = 64;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+    private final String[] floatFields;
+    private final String[] intFields;
+
+    private ComponentType(String name, String[] floatFields, String[] intFields) {
+        this.id = nextId.getAndIncrement();
+        if (id >= MAX_TYPES) {
+            throw new IllegalStateException("Cannot create " + name + ", there can only be " + MAX_TYPES + " component types");
+        }
+        this.name = name;
+        this.floatFields = floatFields.clone();
+        this.intFields = intFields.clone();
+    }
+
+    /**
+     * Creates a component type with both float and int fields.
+     */
+    public static ComponentType create(String name, String[] floatFields, String[] intFields) {
+        return new ComponentType(name, floatFields, intFields);
+    }
+
+    /**
+     * Creates a component type with only float fields.
+     */
+    public static ComponentType floats(String name, String... fields) {
+        return new ComponentType(name, fields, new String[0]);
+    }
+
+    /**
+     * Creates a component type with only int fields.
+     */
+    public static ComponentType ints(String name, String... fields) {
+        return new ComponentType(name, new String[0], fields);
+    }
+
+    /**
+     * Creates a component type without fields, which only marks the entities that have it.
+     */
+    public static ComponentType tag(String name) {
+        return new ComponentType(name, new String[0], new String[0]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the bit of the type in a mask
+     */
+    public int getId() {
+        return id;
+    }
+
+    public long getMask() {
+        return 1L << id;
+    }
+
+    public int getFloatFieldCount() {
+        return floatFields.length;
+    }
+
+    public int getIntFieldCount() {
+        return intFields.length;
+    }
+
+    /**
+     * @return the index of the float field with the given name
+     * @throws IllegalArgumentException if the type has no such float field
+     */
+    public int getFloatField(String field) {
+        return indexOf(floatFields, field);
+    }
+
+    /**
+     * @return the index of the int field with the given name
+     * @throws IllegalArgumentException if the type has no such int field
+     */
+    public int getIntField(String field) {
+        return indexOf(intFields, field);
+    }
+
+    private int indexOf(String[] fields, String field) {
+        int index = Arrays.asList(fields).indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException(name + " has no field " + field);
+        }
+        return index;
+    }
+
+    /**
+     * @return the mask with the bits of all the given types
+     */
+    public static long maskOf(ComponentType... types) {
+        long mask = 0;
+        for (ComponentType type : types) {
+            mask |= type.getMask();
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
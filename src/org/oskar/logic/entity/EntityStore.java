@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds all the entities and their components. Entities with the same set of components share
+ * an {@link EntityTable}; adding or removing a component moves the entity to another table.
+ * The tables an entity moves between are remembered, so after the first time neither
+ * creating, destroying nor changing the components of an entity allocates.
+ * <p>
+ * An entity is an int made of the index of its record and a generation that is increased
+ * every time the index is reused, so a stale entity is recognised as dead until its index
+ * has been reused 2^GENERATION_BITS times.
+ * <p>
+ * The store is not thread-safe. Systems that run in parallel may change the fields in the
+ * tables, but entities can only be created, destroyed or changed between systems.
+ *
+ * @author Oskar Veerhoek
+ */
+public class EntityStore {
+
+    public static final int INDEX_BITS = 22;
+    public static final int GENERATION_BITS = 32 - INDEX_BITS;
+    /**
+     * The amount of entities that can be alive at once.
+     */
+    public static final int MAX_ENTITIES = 1 << INDEX_BITS;
+    private static final int INDEX_MASK = MAX_ENTITIES - 1;
+    private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+
+    private final List<EntityTable> tables = new ArrayList<EntityTable>();
+    private final EntityTable emptyTable;
+    /**
+     * The generation, table and row of every entity index; the table is null if the index is free.
+     */
+    private int[] generations = new int[256];
+    private EntityTable[] entityTables = new EntityTable[256];
+    private int[] rows = new int[256];
+    private int indexCount;
+    private int[] freeIndices = new int[256];
+    private int freeCount;
+    private int entityCount;
+    private boolean locked;
+
+    public EntityStore() {
+        emptyTable = new EntityTable(0, new ComponentType[0]);
+        tables.add(emptyTable);
+    }
+
+    /**
+     * Creates an entity with the given components, with all their fields set to 0.
+     * @return the entity
+     * @throws IllegalStateException if MAX_ENTITIES entities are alive
+     */
+    public int create(ComponentType... types) {
+        checkUnlocked();
+        EntityTable table = emptyTable;
+        for (ComponentType type : types) {
+            table = withType(table, type);
+        }
+        int index;
+        if (freeCount > 0) {
+            index = freeIndices[--freeCount];
+        } else {
+            if (indexCount == MAX_ENTITIES) {
+                throw new IllegalStateException("There cannot be more than " + MAX_ENTITIES + " entities");
+            }
+            index = indexCount++;
+            if (index == generations.length) {
+                int capacity = Math.min(MAX_ENTITIES, generations.length * 2);
+                generations = Arrays.copyOf(generations, capacity);
+                entityTables = Arrays.copyOf(entityTables, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+            }
+        }
+        int entity = generations[index] << INDEX_BITS | index;
+        entityTables[index] = table;
+        rows[index] = table.add(entity);
+        entityCount++;
+        return entity;
+    }
+
+    /**
+     * Destroys an entity and its components. Destroying a dead entity does nothing.
+     */
+    public void destroy(int entity) {
+        checkUnlocked();
+        if (!isAlive(entity)) {
+            return;
+        }
+        int index = entity & INDEX_MASK;
+        removeRow(entityTables[index], rows[index]);
+        entityTables[index] = null;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, freeCount * 2);
+        }
+        freeIndices[freeCount++] = index;
+        entityCount--;
+    }
+
+    /**
+     * Adds a component to an entity, with all its fields set to 0. Adding a component the
+     * entity already has does nothing.
+     * @throws IllegalArgumentException if the entity is dead
+     */
+    public void add(int entity, ComponentType type) {
+        checkUnlocked();
+        int index = checkAlive(entity);
+        EntityTable table = entityTables[index];
+        if (!table.has(type)) {
+            move(index, table, withType(table, type));
+        }
+    }
+
+    /**
+     * Removes a component from an entity. Removing a component the entity does not have does nothing.
+     * @throws IllegalArgumentException if the entity is dead
+     */
+    public void remove(int entity, ComponentType type) {
+        checkUnlocked();
+        int index = checkAlive(entity);
+        EntityTable table = entityTables[index];
+        if (table.has(type)) {
+            move(index, table, withoutType(table, type));
+        }
+    }
+
+    private void move(int index, EntityTable from, EntityTable to) {
+        int row = rows[index];
+        int newRow = to.add(from.getEntities()[row]);
+        from.copyTo(row, to, newRow);
+        removeRow(from, row);
+        entityTables[index] = to;
+        rows[index] = newRow;
+    }
+
+    private void removeRow(EntityTable table, int row) {
+        if (table.remove(row)) {
+            rows[table.getEntities()[row] & INDEX_MASK] = row;
+        }
+    }
+
+    private EntityTable withType(EntityTable table, ComponentType type) {
+        EntityTable next = table.addTransitions[type.getId()];
+        if (next == null) {
+            List<ComponentType> types = new ArrayList<ComponentType>(Arrays.asList(table.getTypes()));
+            types.add(type);
+            next = getTable(table.getMask() | type.getMask(), types);
+            table.addTransitions[type.getId()] = next;
+        }
+        return next;
+    }
+
+    private EntityTable withoutType(EntityTable table, ComponentType type) {
+        EntityTable next = table.removeTransitions[type.getId()];
+        if (next == null) {
+            List<ComponentType> types = new ArrayList<ComponentType>(Arrays.asList(table.getTypes()));
+            types.remove(type);
+            next = getTable(table.getMask() & ~type.getMask(), types);
+            table.removeTransitions[type.getId()] = next;
+        }
+        return next;
+    }
+
+    /**
+     * @return the table with the given mask, which is created if it does not exist yet
+     */
+    private EntityTable getTable(long mask, List<ComponentType> types) {
+        for (EntityTable table : tables) {
+            if (table.getMask() == mask) {
+                return table;
+            }
+        }
+        EntityTable table = new EntityTable(mask, types.toArray(new ComponentType[types.size()]));
+        tables.add(table);
+        return table;
+    }
+
+    public boolean isAlive(int entity) {
+        int index = entity & INDEX_MASK;
+        return index < indexCount && entityTables[index] != null && generations[index] == entity >>> INDEX_BITS;
+    }
+
+    private int checkAlive(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("Entity " + entity + " is dead");
+        }
+        return entity & INDEX_MASK;
+    }
+
+    public boolean has(int entity, ComponentType type) {
+        return isAlive(entity) && entityTables[entity & INDEX_MASK].has(type);
+    }
+
+    /**
+     * @return the table that holds the components of a living entity
+     */
+    public EntityTable getTable(int entity) {
+        return entityTables[checkAlive(entity)];
+    }
+
+    /**
+     * @return the row of a living entity in its table
+     */
+    public int getRow(int entity) {
+        return rows[checkAlive(entity)];
+    }
+
+    public float getFloat(int entity, ComponentType type, int field) {
+        int index = checkAlive(entity);
+        return entityTables[index].getFloats(type, field)[rows[index]];
+    }
+
+    public void setFloat(int entity, ComponentType type, int field, float value) {
+        int index = checkAlive(entity);
+        entityTables[index].getFloats(type, field)[rows[index]] = value;
+    }
+
+    public int getInt(int entity, ComponentType type, int field) {
+        int index = checkAlive(entity);
+        return entityTables[index].getInts(type, field)[rows[index]];
+    }
+
+    public void setInt(int entity, ComponentType type, int field, int value) {
+        int index = checkAlive(entity);
+        entityTables[index].getInts(type, field)[rows[index]] = value;
+    }
+
+    /**
+     * @return the amount of living entities
+     */
+    public int size() {
+        return entityCount;
+    }
+
+    /**
+     * @return all the tables, including empty ones, in the order in which they were created
+     */
+    public List<EntityTable> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * Adds the tables that have at least the components of the mask and that were created
+     * since the table count was taken to the list. Tables are never removed, so keeping the
+     * list and the count finds the tables of a query without iterating over all of them.
+     * @param from the amount of tables that were already looked at
+     * @return the amount of tables now
+     */
+    public int findTables(long mask, int from, List<EntityTable> matches) {
+        for (int i = from; i < tables.size(); i++) {
+            EntityTable table = tables.get(i);
+            if ((table.getMask() & mask) == mask) {
+                matches.add(table);
+            }
+        }
+        return tables.size();
+    }
+
+    /**
+     * While the store is locked, entities cannot be created, destroyed or changed, because
+     * systems are iterating over the tables.
+     */
+    void setLocked(boolean locked) {
+        this.locked = locked;
+    }
+
+    private void checkUnlocked() {
+        if (locked) {
+            throw new IllegalStateException("Entities cannot be changed while the systems run");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Updates the entities that have a set of components, a range of rows of one table at a time.
+ * A system declares which component types it reads and which it writes, so the
+ * {@link SystemScheduler} can run systems that do not touch each other's data in parallel,
+ * and can split the rows of a table over several threads.
+ * <p>
+ * {@link #update(EntityTable, int, int, float)} may be called for different ranges at the
+ * same time, so it must only change the rows it was given.
+ *
+ * @author Oskar Veerhoek
+ */
+public abstract class EntitySystem {
+
+    private final String name;
+    private final long readMask;
+    private final long writeMask;
+    private final List<EntityTable> tables = new ArrayList<EntityTable>();
+    private EntityStore store;
+    private int tablesSeen;
+
+    /**
+     * @param reads the component types the system only reads
+     * @param writes the component types the system changes; the system updates the entities
+     *               that have all the types it reads and writes
+     */
+    protected EntitySystem(String name, ComponentType[] reads, ComponentType[] writes) {
+        this.name = name;
+        this.readMask = ComponentType.maskOf(reads);
+        this.writeMask = ComponentType.maskOf(writes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getReadMask() {
+        return readMask;
+    }
+
+    public long getWriteMask() {
+        return writeMask;
+    }
+
+    /**
+     * @return whether the two systems cannot run at the same time, because one of them changes
+     * a component type the other one reads or changes
+     */
+    public boolean conflictsWith(EntitySystem other) {
+        return (writeMask & (other.readMask | other.writeMask)) != 0 || (other.writeMask & readMask) != 0;
+    }
+
+    /**
+     * @return the tables with the entities the system updates, including tables that are empty
+     */
+    List<EntityTable> getTables(EntityStore store) {
+        if (this.store != store) {
+            this.store = store;
+            tables.clear();
+            tablesSeen = 0;
+        }
+        tablesSeen = store.findTables(readMask | writeMask, tablesSeen, tables);
+        return tables;
+    }
+
+    /**
+     * Updates a range of rows of a table.
+     * @param table a table whose entities have all the components the system reads and writes
+     * @param from the first row
+     * @param to the row after the last row
+     * @param delta the length of the tick in seconds
+     */
+    public abstract void update(EntityTable table, int from, int to, float delta);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
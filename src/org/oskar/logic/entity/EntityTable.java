@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+import java.util.Arrays;
+
+/**
+ * The entities that have exactly the same set of components, stored as a structure of
+ * arrays: every field of every component is a primitive array with one element per entity,
+ * and the entities are packed densely from row 0. Removing an entity moves the last row
+ * into its place, so the rows never have holes and a system walks every array front to back.
+ * <p>
+ * The arrays are replaced when the table grows, so they have to be fetched again after
+ * entities were added.
+ *
+ * @author Oskar Veerhoek
+ */
+public class EntityTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long mask;
+    private final ComponentType[] types;
+    /**
+     * The index of the first float and int column of every component type in the table, or -1.
+     */
+    private final int[] floatBase = new int[ComponentType.MAX_TYPES];
+    private final int[] intBase = new int[ComponentType.MAX_TYPES];
+    private float[][] floats;
+    private int[][] ints;
+    private int[] entities;
+    private int size;
+    /**
+     * The tables entities move to when a component type is added or removed, found once and
+     * then remembered, indexed by the id of the type.
+     */
+    final EntityTable[] addTransitions = new EntityTable[ComponentType.MAX_TYPES];
+    final EntityTable[] removeTransitions = new EntityTable[ComponentType.MAX_TYPES];
+
+    EntityTable(long mask, ComponentType[] types) {
+        this.mask = mask;
+        this.types = types;
+        Arrays.fill(floatBase, -1);
+        Arrays.fill(intBase, -1);
+        int floatCount = 0;
+        int intCount = 0;
+        for (ComponentType type : types) {
+            floatBase[type.getId()] = floatCount;
+            intBase[type.getId()] = intCount;
+            floatCount += type.getFloatFieldCount();
+            intCount += type.getIntFieldCount();
+        }
+        floats = new float[floatCount][INITIAL_CAPACITY];
+        ints = new int[intCount][INITIAL_CAPACITY];
+        entities = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the bits of the component types of the table
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    public ComponentType[] getTypes() {
+        return types.clone();
+    }
+
+    public boolean has(ComponentType type) {
+        return (mask & type.getMask()) != 0;
+    }
+
+    /**
+     * @return the amount of entities in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the entities in the table, from row 0 to {@link #size()}
+     */
+    public int[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return one float field of a component for all the rows of the table
+     * @throws IllegalArgumentException if the table does not have the component
+     */
+    public float[] getFloats(ComponentType type, int field) {
+        checkType(type);
+        return floats[floatBase[type.getId()] + field];
+    }
+
+    /**
+     * @return one int field of a component for all the rows of the table
+     * @throws IllegalArgumentException if the table does not have the component
+     */
+    public int[] getInts(ComponentType type, int field) {
+        checkType(type);
+        return ints[intBase[type.getId()] + field];
+    }
+
+    private void checkType(ComponentType type) {
+        if (!has(type)) {
+            throw new IllegalArgumentException("The entities in " + this + " have no " + type);
+        }
+    }
+
+    /**
+     * Appends an entity with all its fields set to 0.
+     * @return the row of the entity
+     */
+    int add(int entity) {
+        if (size == entities.length) {
+            int capacity = entities.length * 2;
+            entities = Arrays.copyOf(entities, capacity);
+            for (int column = 0; column < floats.length; column++) {
+                floats[column] = Arrays.copyOf(floats[column], capacity);
+            }
+            for (int column = 0; column < ints.length; column++) {
+                ints[column] = Arrays.copyOf(ints[column], capacity);
+            }
+        }
+        // A removed row may have left its values behind.
+        for (float[] column : floats) {
+            column[size] = 0;
+        }
+        for (int[] column : ints) {
+            column[size] = 0;
+        }
+        entities[size] = entity;
+        return size++;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     * @return whether another entity was moved into the row, which is false if the row was the last one
+     */
+    boolean remove(int row) {
+        int last = --size;
+        if (row == last) {
+            return false;
+        }
+        for (float[] column : floats) {
+            column[row] = column[last];
+        }
+        for (int[] column : ints) {
+            column[row] = column[last];
+        }
+        entities[row] = entities[last];
+        return true;
+    }
+
+    /**
+     * Copies the fields of the components both tables have from a row of this table to a row
+     * of the other table.
+     */
+    void copyTo(int row, EntityTable target, int targetRow) {
+        for (ComponentType type : types) {
+            int id = type.getId();
+            if (target.has(type)) {
+                for (int field = 0; field < type.getFloatFieldCount(); field++) {
+                    target.floats[target.floatBase[id] + field][targetRow] = floats[floatBase[id] + field][row];
+                }
+                for (int field = 0; field < type.getIntFieldCount(); field++) {
+                    target.ints[target.intBase[id] + field][targetRow] = ints[intBase[id] + field][row];
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(types);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+/**
+ * Moves every entity with a position and a velocity by its velocity, once per tick.
+ *
+ * @author Oskar Veerhoek
+ */
+public class MovementSystem extends EntitySystem {
+
+    /**
+     * Where an entity is, in world units.
+     */
+    public static final ComponentType POSITION = ComponentType.floats("Position", "x", "y", "z");
+    /**
+     * How fast an entity moves, in world units per second.
+     */
+    public static final ComponentType VELOCITY = ComponentType.floats("Velocity", "x", "y", "z");
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int Z = 2;
+
+    public MovementSystem() {
+        super("Movement", new ComponentType[] {VELOCITY}, new ComponentType[] {POSITION});
+    }
+
+    @Override
+    public void update(EntityTable table, int from, int to, float delta) {
+        move(table.getFloats(POSITION, X), table.getFloats(VELOCITY, X), from, to, delta);
+        move(table.getFloats(POSITION, Y), table.getFloats(VELOCITY, Y), from, to, delta);
+        move(table.getFloats(POSITION, Z), table.getFloats(VELOCITY, Z), from, to, delta);
+    }
+
+    /**
+     * One axis at a time, so the loop walks two arrays and the JIT can vectorise it.
+     */
+    private static void move(float[] position, float[] velocity, int from, int to, float delta) {
+        for (int row = from; row < to; row++) {
+            position[row] += velocity[row] * delta;
+        }
+    }
+}
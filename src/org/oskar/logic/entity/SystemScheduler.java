@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the entity systems once per tick. The systems are grouped into stages: a system goes
+ * into the stage after the last stage with a system it conflicts with, so systems that
+ * conflict still run in the order in which they were added, while systems that do not run
+ * together. The stages run one after another.
+ * <p>
+ * With a fork-join pool, every stage is split into tasks of at most chunkSize rows of one
+ * table for one system, which the pool runs in parallel; a stage with fewer rows than that
+ * runs on the calling thread without creating any tasks. Without a pool every system runs
+ * on the calling thread.
+ *
+ * @author Oskar Veerhoek
+ */
+public class SystemScheduler {
+
+    /**
+     * The amount of rows one task updates by default, which keeps the columns of a task
+     * within the cache of a core.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final EntityStore store;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final List<EntitySystem> systems = new ArrayList<EntitySystem>();
+    private final List<List<EntitySystem>> stages = new ArrayList<List<EntitySystem>>();
+
+    /**
+     * @param pool the pool to run the systems on, or null to run them on the calling thread
+     */
+    public SystemScheduler(EntityStore store, ForkJoinPool pool) {
+        this(store, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool the pool to run the systems on, or null to run them on the calling thread
+     * @param chunkSize the amount of rows one task updates at most
+     */
+    public SystemScheduler(EntityStore store, ForkJoinPool pool, int chunkSize) {
+        this.store = store;
+        this.pool = pool;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Adds a system that runs after the systems it conflicts with that were added before it.
+     */
+    public void addSystem(EntitySystem system) {
+        systems.add(system);
+        int stage = 0;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (conflicts(stages.get(i), system)) {
+                stage = i + 1;
+                break;
+            }
+        }
+        if (stage == stages.size()) {
+            stages.add(new ArrayList<EntitySystem>());
+        }
+        stages.get(stage).add(system);
+    }
+
+    private static boolean conflicts(List<EntitySystem> stage, EntitySystem system) {
+        for (EntitySystem other : stage) {
+            if (other.conflictsWith(system)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a system and groups the remaining systems into stages again.
+     */
+    public void removeSystem(EntitySystem system) {
+        List<EntitySystem> remaining = new ArrayList<EntitySystem>(systems);
+        remaining.remove(system);
+        systems.clear();
+        stages.clear();
+        for (EntitySystem other : remaining) {
+            addSystem(other);
+        }
+    }
+
+    public List<EntitySystem> getSystems() {
+        return new ArrayList<EntitySystem>(systems);
+    }
+
+    /**
+     * @return the systems of every stage, in the order in which the stages run
+     */
+    public List<List<EntitySystem>> getStages() {
+        List<List<EntitySystem>> copy = new ArrayList<List<EntitySystem>>();
+        for (List<EntitySystem> stage : stages) {
+            copy.add(new ArrayList<EntitySystem>(stage));
+        }
+        return copy;
+    }
+
+    /**
+     * Runs all the systems once. Entities cannot be created, destroyed or changed until they are done.
+     * @param delta the length of the tick in seconds
+     */
+    public void run(float delta) {
+        store.setLocked(true);
+        try {
+            // Indexed loops, since iterators would be garbage every tick.
+            for (int i = 0; i < stages.size(); i++) {
+                runStage(stages.get(i), delta);
+            }
+        } finally {
+            store.setLocked(false);
+        }
+    }
+
+    private void runStage(List<EntitySystem> stage, float delta) {
+        if (pool == null || countRows(stage) <= chunkSize) {
+            for (int i = 0; i < stage.size(); i++) {
+                EntitySystem system = stage.get(i);
+                List<EntityTable> tables = system.getTables(store);
+                for (int t = 0; t < tables.size(); t++) {
+                    EntityTable table = tables.get(t);
+                    if (table.size() > 0) {
+                        system.update(table, 0, table.size(), delta);
+                    }
+                }
+            }
+            return;
+        }
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (EntitySystem system : stage) {
+            for (EntityTable table : system.getTables(store)) {
+                for (int from = 0; from < table.size(); from += chunkSize) {
+                    chunks.add(new Chunk(system, table, from, Math.min(table.size(), from + chunkSize), delta));
+                }
+            }
+        }
+        pool.invoke(new Stage(chunks));
+    }
+
+    private int countRows(List<EntitySystem> stage) {
+        int rows = 0;
+        for (int i = 0; i < stage.size(); i++) {
+            List<EntityTable> tables = stage.get(i).getTables(store);
+            for (int t = 0; t < tables.size(); t++) {
+                rows += tables.get(t).size();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Runs all the chunks of a stage and waits for them.
+     */
+    private static class Stage extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+
+        Stage(List<Chunk> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(chunks);
+        }
+    }
+
+    /**
+     * Updates a range of rows of one table for one system.
+     */
+    private static class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final EntitySystem system;
+        private final EntityTable table;
+        private final int from;
+        private final int to;
+        private final float delta;
+
+        Chunk(EntitySystem system, EntityTable table, int from, int to, float delta) {
+            this.system = system;
+            this.table = table;
+            this.from = from;
+            this.to = to;
+            this.delta = delta;
+        }
+
+        @Override
+        protected void compute() {
+            system.update(table, from, to, delta);
+        }
+    }
+}
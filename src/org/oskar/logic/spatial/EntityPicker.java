@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.spatial;
+
+import org.oskar.logic.entity.ComponentType;
+import org.oskar.logic.entity.EntityStore;
+import org.oskar.logic.entity.EntityTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.oskar.logic.entity.MovementSystem.POSITION;
+import static org.oskar.logic.entity.MovementSystem.X;
+import static org.oskar.logic.entity.MovementSystem.Y;
+
+/**
+ * Finds entities by where they are. Every entity with a position and an extent is a rectangle
+ * in a {@link SpatialGrid}, centred on the x and y of its position; the grid is brought up to
+ * date with {@link #update()} after the entities moved, which only moves the rectangles of
+ * entities that left their cell.
+ *
+ * @author Oskar Veerhoek
+ */
+public class EntityPicker {
+
+    /**
+     * The half-size of an entity in the plane, in world units.
+     */
+    public static final ComponentType EXTENT = ComponentType.floats("Extent", "halfWidth", "halfHeight");
+    public static final int HALF_WIDTH = 0;
+    public static final int HALF_HEIGHT = 1;
+
+    private final EntityStore store;
+    private final SpatialGrid grid;
+    private final long mask = ComponentType.maskOf(POSITION, EXTENT);
+    private final IntList hits = new IntList();
+    /**
+     * The tables with a position and an extent, out of the first tablesSeen tables of the store.
+     */
+    private final List<EntityTable> tables = new ArrayList<EntityTable>();
+    private int tablesSeen;
+
+    /**
+     * @param cellSize the size of the cells of the grid, see {@link SpatialGrid#SpatialGrid(float)}
+     */
+    public EntityPicker(EntityStore store, float cellSize) {
+        this.store = store;
+        this.grid = new SpatialGrid(cellSize);
+    }
+
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Moves the rectangles of all the entities with a position and an extent to where the
+     * entities are now, and removes those of entities that were destroyed or lost a component.
+     */
+    public void update() {
+        tablesSeen = store.findTables(mask, tablesSeen, tables);
+        for (int t = 0; t < tables.size(); t++) {
+            EntityTable table = tables.get(t);
+            if (table.size() == 0) {
+                continue;
+            }
+            int[] entities = table.getEntities();
+            float[] x = table.getFloats(POSITION, X);
+            float[] y = table.getFloats(POSITION, Y);
+            float[] halfWidth = table.getFloats(EXTENT, HALF_WIDTH);
+            float[] halfHeight = table.getFloats(EXTENT, HALF_HEIGHT);
+            for (int row = 0; row < table.size(); row++) {
+                grid.update(entities[row], x[row] - halfWidth[row], y[row] - halfHeight[row],
+                        x[row] + halfWidth[row], y[row] + halfHeight[row]);
+            }
+        }
+        grid.removeStale();
+    }
+
+    /**
+     * Finds the entity under a point. When several entities overlap there, the smallest one
+     * is picked, since it is the one that is hardest to click otherwise.
+     * @param result the list the picked entity is added to, if there is one
+     * @return whether there is an entity under the point
+     */
+    public boolean pick(float x, float y, IntList result) {
+        hits.clear();
+        grid.queryPoint(x, y, hits);
+        int picked = 0;
+        float pickedArea = Float.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int i = 0; i < hits.size(); i++) {
+            int entity = hits.get(i);
+            // The entity may have been destroyed since the last update.
+            if (!store.has(entity, EXTENT) || !store.has(entity, POSITION)) {
+                continue;
+            }
+            float area = store.getFloat(entity, EXTENT, HALF_WIDTH) * store.getFloat(entity, EXTENT, HALF_HEIGHT);
+            if (area < pickedArea || !found) {
+                picked = entity;
+                pickedArea = area;
+                found = true;
+            }
+        }
+        if (found) {
+            result.add(picked);
+        }
+        return found;
+    }
+
+    /**
+     * Adds the entities whose rectangles overlap the rectangle to the list.
+     */
+    public void queryRectangle(float minX, float minY, float maxX, float maxY, IntList result) {
+        grid.queryRectangle(minX, minY, maxX, maxY, result);
+    }
+
+    /**
+     * Finds the entity whose rectangle is closest to a point.
+     * @param result the list the closest entity is added to, if there is one
+     * @return whether there is an entity within maxDistance
+     */
+    public boolean findNearest(float x, float y, float maxDistance, IntList result) {
+        return grid.findNearest(x, y, maxDistance, result);
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.logic.spatial;
+
+import java.util.Arrays;
+
+/**
+ * A loose uniform grid over axis-aligned rectangles in the plane, for picking and proximity
+ * queries without looking at every rectangle. Every item lives in exactly one square cell,
+ * the one that holds its centre; queries look at the cells around the area they cover, widened
+ * by the largest half-size of all the items, so an item never has to be in several cells.
+ * <p>
+ * Items are kept up to date incrementally: updating an item whose centre stays in its cell only
+ * overwrites its bounds, and otherwise moves it to the list of another cell. Only occupied
+ * cells are stored, in a hash map, so the plane is unbounded. Items and cells live in
+ * primitive arrays, and neither updating nor querying allocates once the arrays are large enough.
+ * <p>
+ * Items are identified by an int chosen by the caller, such as an entity. The grid is not
+ * thread-safe.
+ *
+ * @author Oskar Veerhoek
+ */
+public class SpatialGrid {
+
+    private static final int NONE = -1;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+    /**
+     * The slot of every item, by id, and the first slot of every occupied cell, by cell key.
+     */
+    private final LongIntMap slotsById = new LongIntMap(256);
+    private final LongIntMap cellHeads = new LongIntMap(256);
+    /**
+     * The items, by slot: the id, the bounds, the key of the cell, the neighbours in its list,
+     * whether the slot holds an item and whether the item was updated since removeStale().
+     */
+    private int[] ids = new int[256];
+    private float[] minX = new float[256];
+    private float[] minY = new float[256];
+    private float[] maxX = new float[256];
+    private float[] maxY = new float[256];
+    private long[] cells = new long[256];
+    private int[] next = new int[256];
+    private int[] previous = new int[256];
+    private boolean[] used = new boolean[256];
+    private boolean[] updated = new boolean[256];
+    private int slotCount;
+    private int[] freeSlots = new int[256];
+    private int freeCount;
+    private int size;
+    /**
+     * Upper bounds of the half-width and half-height of all the items, which widen every query.
+     */
+    private float maxHalfWidth;
+    private float maxHalfHeight;
+
+    /**
+     * @param cellSize the width and height of the cells; about the size of the common items
+     *                 works best
+     */
+    public SpatialGrid(float cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("The cells must have a positive size, not " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1 / cellSize;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return the amount of items in the grid
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return slotsById.get(id) != LongIntMap.ABSENT;
+    }
+
+    /**
+     * Adds an item, or moves it if it is already in the grid.
+     */
+    public void update(int id, float minX, float minY, float maxX, float maxY) {
+        long cell = cellOf(minX, minY, maxX, maxY);
+        int slot = slotsById.get(id);
+        if (slot == LongIntMap.ABSENT) {
+            slot = allocateSlot();
+            slotsById.put(id, slot);
+            ids[slot] = id;
+            used[slot] = true;
+            size++;
+            link(slot, cell);
+        } else if (cell != cells[slot]) {
+            unlink(slot);
+            link(slot, cell);
+        }
+        setBounds(slot, minX, minY, maxX, maxY);
+    }
+
+    private void setBounds(int slot, float minX, float minY, float maxX, float maxY) {
+        this.minX[slot] = minX;
+        this.minY[slot] = minY;
+        this.maxX[slot] = maxX;
+        this.maxY[slot] = maxY;
+        maxHalfWidth = Math.max(maxHalfWidth, (maxX - minX) / 2);
+        maxHalfHeight = Math.max(maxHalfHeight, (maxY - minY) / 2);
+        updated[slot] = true;
+    }
+
+    /**
+     * Removes an item. Removing an item that is not in the grid does nothing.
+     */
+    public void remove(int id) {
+        int slot = slotsById.get(id);
+        if (slot != LongIntMap.ABSENT) {
+            removeSlot(slot);
+        }
+    }
+
+    private void removeSlot(int slot) {
+        unlink(slot);
+        slotsById.remove(ids[slot]);
+        used[slot] = false;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Removes the items that were not added or updated since the previous call, so the grid can
+     * be kept in sync with a set of objects by updating all the objects that still exist and
+     * then calling this. Also tightens the largest half-size to that of the remaining items.
+     * @return the amount of items that were removed
+     */
+    public int removeStale() {
+        int removed = 0;
+        float halfWidth = 0;
+        float halfHeight = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!used[slot]) {
+                continue;
+            }
+            if (!updated[slot]) {
+                removeSlot(slot);
+                removed++;
+            } else {
+                updated[slot] = false;
+                halfWidth = Math.max(halfWidth, (maxX[slot] - minX[slot]) / 2);
+                halfHeight = Math.max(halfHeight, (maxY[slot] - minY[slot]) / 2);
+            }
+        }
+        maxHalfWidth = halfWidth;
+        maxHalfHeight = halfHeight;
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        slotsById.clear();
+        cellHeads.clear();
+        slotCount = 0;
+        freeCount = 0;
+        size = 0;
+        maxHalfWidth = 0;
+        maxHalfHeight = 0;
+    }
+
+    /**
+     * Adds the ids of the items whose bounds contain the point to the list.
+     */
+    public void queryPoint(float x, float y, IntList result) {
+        queryRectangle(x, y, x, y, result);
+    }
+
+    /**
+     * Adds the ids of the items whose bounds overlap the rectangle, or touch it, to the list.
+     */
+    public void queryRectangle(float minX, float minY, float maxX, float maxY, IntList result) {
+        int firstX = cellCoordinate(minX - maxHalfWidth);
+        int lastX = cellCoordinate(maxX + maxHalfWidth);
+        int firstY = cellCoordinate(minY - maxHalfHeight);
+        int lastY = cellCoordinate(maxY + maxHalfHeight);
+        if (((long) lastX - firstX + 1) * ((long) lastY - firstY + 1) > cellHeads.size()) {
+            // The area covers more cells than are occupied; looking at every item is cheaper.
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (used[slot] && overlaps(slot, minX, minY, maxX, maxY)) {
+                    result.add(ids[slot]);
+                }
+            }
+            return;
+        }
+        for (int cellY = firstY; cellY <= lastY; cellY++) {
+            for (int cellX = firstX; cellX <= lastX; cellX++) {
+                for (int slot = cellHeads.get(key(cellX, cellY)); slot != NONE; slot = next[slot]) {
+                    if (overlaps(slot, minX, minY, maxX, maxY)) {
+                        result.add(ids[slot]);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(int slot, float minX, float minY, float maxX, float maxY) {
+        return this.minX[slot] <= maxX && this.maxX[slot] >= minX && this.minY[slot] <= maxY && this.maxY[slot] >= minY;
+    }
+
+    /**
+     * Finds the item closest to a point, measured to the nearest point of its bounds, so every
+     * item that contains the point is at distance 0.
+     * @param maxDistance how far from the point to look
+     * @param result the list the id of the closest item is added to, if there is one
+     * @return whether an item was found within maxDistance
+     */
+    public boolean findNearest(float x, float y, float maxDistance, IntList result) {
+        int best = NONE;
+        float bestDistanceSquared = maxDistance * maxDistance;
+        int centreX = cellCoordinate(x);
+        int centreY = cellCoordinate(y);
+        // Every ring of cells around the centre cell is a cell further away, but an item can
+        // reach up to its half-size out of its cell.
+        float reach = Math.max(maxHalfWidth, maxHalfHeight);
+        int maxRing = (int) Math.min(Integer.MAX_VALUE / 4, Math.ceil((maxDistance + reach) * inverseCellSize) + 1);
+        if ((long) (2 * maxRing + 1) * (2 * maxRing + 1) > cellHeads.size()) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (used[slot]) {
+                    float distanceSquared = distanceSquared(slot, x, y);
+                    if (distanceSquared <= bestDistanceSquared && (best == NONE || distanceSquared < bestDistanceSquared)) {
+                        best = slot;
+                        bestDistanceSquared = distanceSquared;
+                    }
+                }
+            }
+        } else {
+            for (int ring = 0; ring <= maxRing; ring++) {
+                float ringDistance = (ring - 1) * cellSize - reach;
+                if (best != NONE && ringDistance > 0 && ringDistance * ringDistance > bestDistanceSquared) {
+                    break;
+                }
+                for (int cellY = centreY - ring; cellY <= centreY + ring; cellY++) {
+                    boolean edgeRow = cellY == centreY - ring || cellY == centreY + ring;
+                    // Inside the ring only the first and the last cell of a row belong to it.
+                    int step = edgeRow || ring == 0 ? 1 : 2 * ring;
+                    for (int cellX = centreX - ring; cellX <= centreX + ring; cellX += step) {
+                        for (int slot = cellHeads.get(key(cellX, cellY)); slot != NONE; slot = next[slot]) {
+                            float distanceSquared = distanceSquared(slot, x, y);
+                            if (distanceSquared <= bestDistanceSquared && (best == NONE || distanceSquared < bestDistanceSquared)) {
+                                best = slot;
+                                bestDistanceSquared = distanceSquared;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (best == NONE) {
+            return false;
+        }
+        result.add(ids[best]);
+        return true;
+    }
+
+    private float distanceSquared(int slot, float x, float y) {
+        float dx = Math.max(0, Math.max(minX[slot] - x, x - maxX[slot]));
+        float dy = Math.max(0, Math.max(minY[slot] - y, y - maxY[slot]));
+        return dx * dx + dy * dy;
+    }
+
+    private int cellCoordinate(float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private long cellOf(float minX, float minY, float maxX, float maxY) {
+        return key(cellCoordinate((minX + maxX) / 2), cellCoordinate((minY + maxY) / 2));
+    }
+
+    private static long key(int cellX, int cellY) {
+        return (long) cellX << 32 | (cellY & 0xFFFFFFFFL);
+    }
+
+    private void link(int slot, long cell) {
+        int head = cellHeads.get(cell);
+        cells[slot] = cell;
+        previous[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            previous[head] = slot;
+        }
+        cellHeads.put(cell, slot);
+    }
+
+    private void unlink(int slot) {
+        int before = previous[slot];
+        int after = next[slot];
+        if (after != NONE) {
+            previous[after] = before;
+        }
+        if (before != NONE) {
+            next[before] = after;
+        } else if (after != NONE) {
+            cellHeads.put(cells[slot], after);
+        } else {
+            // Empty cells are dropped, so the map only holds the occupied ones.
+            cellHeads.remove(cells[slot]);
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = slotCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            cells = Arrays.copyOf(cells, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            used = Arrays.copyOf(used, capacity);
+            updated = Arrays.copyOf(updated, capacity);
+        }
+        return slotCount++;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mutable 4x4 matrix of floats. The element in column c and row r is mcr, and matrices are
+ * stored in column-major order, the order OpenGL expects for uniforms. Vectors are column
+ * vectors, so a matrix that is multiplied by another one on the right applies the other one
+ * first. Every operation changes the matrix it is called on and returns it.
+ *
+ * @author Oskar Veerhoek
+ */
+public class Mat4 {
+    public float m00, m01, m02, m03;
+    public float m10, m11, m12, m13;
+    public float m20, m21, m22, m23;
+    public float m30, m31, m32, m33;
+
+    /**
+     * Creates an identity matrix.
+     */
+    public Mat4() {
+        identity();
+    }
+
+    public Mat4 identity() {
+        m00 = 1; m01 = 0; m02 = 0; m03 = 0;
+        m10 = 0; m11 = 1; m12 = 0; m13 = 0;
+        m20 = 0; m21 = 0; m22 = 1; m23 = 0;
+        m30 = 0; m31 = 0; m32 = 0; m33 = 1;
+        return this;
+    }
+
+    public Mat4 set(Mat4 other) {
+        m00 = other.m00; m01 = other.m01; m02 = other.m02; m03 = other.m03;
+        m10 = other.m10; m11 = other.m11; m12 = other.m12; m13 = other.m13;
+        m20 = other.m20; m21 = other.m21; m22 = other.m22; m23 = other.m23;
+        m30 = other.m30; m31 = other.m31; m32 = other.m32; m33 = other.m33;
+        return this;
+    }
+
+    /**
+     * Replaces the matrix by its product with another one, this * right. The other matrix may
+     * be this matrix itself.
+     */
+    public Mat4 mul(Mat4 right) {
+        float n00 = m00 * right.m00 + m10 * right.m01 + m20 * right.m02 + m30 * right.m03;
+        float n01 = m01 * right.m00 + m11 * right.m01 + m21 * right.m02 + m31 * right.m03;
+        float n02 = m02 * right.m00 + m12 * right.m01 + m22 * right.m02 + m32 * right.m03;
+        float n03 = m03 * right.m00 + m13 * right.m01 + m23 * right.m02 + m33 * right.m03;
+        float n10 = m00 * right.m10 + m10 * right.m11 + m20 * right.m12 + m30 * right.m13;
+        float n11 = m01 * right.m10 + m11 * right.m11 + m21 * right.m12 + m31 * right.m13;
+        float n12 = m02 * right.m10 + m12 * right.m11 + m22 * right.m12 + m32 * right.m13;
+        float n13 = m03 * right.m10 + m13 * right.m11 + m23 * right.m12 + m33 * right.m13;
+        float n20 = m00 * right.m20 + m10 * right.m21 + m20 * right.m22 + m30 * right.m23;
+        float n21 = m01 * right.m20 + m11 * right.m21 + m21 * right.m22 + m31 * right.m23;
+        float n22 = m02 * right.m20 + m12 * right.m21 + m22 * right.m22 + m32 * right.m23;
+        float n23 = m03 * right.m20 + m13 * right.m21 + m23 * right.m22 + m33 * right.m23;
+        float n30 = m00 * right.m30 + m10 * right.m31 + m20 * right.m32 + m30 * right.m33;
+        float n31 = m01 * right.m30 + m11 * right.m31 + m21 * right.m32 + m31 * right.m33;
+        float n32 = m02 * right.m30 + m12 * right.m31 + m22 * right.m32 + m32 * right.m33;
+        float n33 = m03 * right.m30 + m13 * right.m31 + m23 * right.m32 + m33 * right.m33;
+        m00 = n00; m01 = n01; m02 = n02; m03 = n03;
+        m10 = n10; m11 = n11; m12 = n12; m13 = n13;
+        m20 = n20; m21 = n21; m22 = n22; m23 = n23;
+        m30 = n30; m31 = n31; m32 = n32; m33 = n33;
+        return this;
+    }
+
+    /**
+     * Applies a translation before the transformation of the matrix.
+     */
+    public Mat4 translate(float x, float y, float z) {
+        m30 += m00 * x + m10 * y + m20 * z;
+        m31 += m01 * x + m11 * y + m21 * z;
+        m32 += m02 * x + m12 * y + m22 * z;
+        m33 += m03 * x + m13 * y + m23 * z;
+        return this;
+    }
+
+    /**
+     * Applies a scale before the transformation of the matrix.
+     */
+    public Mat4 scale(float x, float y, float z) {
+        m00 *= x; m01 *= x; m02 *= x; m03 *= x;
+        m10 *= y; m11 *= y; m12 *= y; m13 *= y;
+        m20 *= z; m21 *= z; m22 *= z; m23 *= z;
+        return this;
+    }
+
+    /**
+     * Applies a counter-clockwise rotation around the z axis before the transformation of the matrix.
+     * @param radians the angle of the rotation
+     */
+    public Mat4 rotateZ(float radians) {
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float n00 = m00 * cos + m10 * sin;
+        float n01 = m01 * cos + m11 * sin;
+        float n02 = m02 * cos + m12 * sin;
+        float n03 = m03 * cos + m13 * sin;
+        m10 = m10 * cos - m00 * sin;
+        m11 = m11 * cos - m01 * sin;
+        m12 = m12 * cos - m02 * sin;
+        m13 = m13 * cos - m03 * sin;
+        m00 = n00; m01 = n01; m02 = n02; m03 = n03;
+        return this;
+    }
+
+    /**
+     * Replaces the matrix by an orthographic projection, like glOrtho.
+     */
+    public Mat4 ortho(float left, float right, float bottom, float top, float near, float far) {
+        identity();
+        m00 = 2 / (right - left);
+        m11 = 2 / (top - bottom);
+        m22 = -2 / (far - near);
+        m30 = -(right + left) / (right - left);
+        m31 = -(top + bottom) / (top - bottom);
+        m32 = -(far + near) / (far - near);
+        return this;
+    }
+
+    /**
+     * Transforms a position in place, as a vector with a fourth component of 1. The
+     * projection part of the matrix is left out, so this is meant for affine transformations.
+     */
+    public Vec3 transformPosition(Vec3 position) {
+        return position.set(
+                m00 * position.x + m10 * position.y + m20 * position.z + m30,
+                m01 * position.x + m11 * position.y + m21 * position.z + m31,
+                m02 * position.x + m12 * position.y + m22 * position.z + m32);
+    }
+
+    /**
+     * Transforms a vector in place.
+     */
+    public Vec4 transform(Vec4 vector) {
+        return vector.set(
+                m00 * vector.x + m10 * vector.y + m20 * vector.z + m30 * vector.w,
+                m01 * vector.x + m11 * vector.y + m21 * vector.z + m31 * vector.w,
+                m02 * vector.x + m12 * vector.y + m22 * vector.z + m32 * vector.w,
+                m03 * vector.x + m13 * vector.y + m23 * vector.z + m33 * vector.w);
+    }
+
+    /**
+     * Transforms a run of positions, stored as x, y, z triples, and puts the results into the
+     * buffer at its position, ready to be uploaded as vertex data. The positions are neither
+     * copied nor wrapped in vectors on the way.
+     * @param positions the positions to transform, which are not changed
+     * @param offset the index of the x of the first position
+     * @param count the amount of positions
+     */
+    public void transformPositions(float[] positions, int offset, int count, FloatBuffer buffer) {
+        int end = offset + count * 3;
+        for (int i = offset; i < end; i += 3) {
+            float x = positions[i], y = positions[i + 1], z = positions[i + 2];
+            buffer.put(m00 * x + m10 * y + m20 * z + m30)
+                    .put(m01 * x + m11 * y + m21 * z + m31)
+                    .put(m02 * x + m12 * y + m22 * z + m32);
+        }
+    }
+
+    /**
+     * Puts the elements into the buffer at its position in column-major order and advances the
+     * position, so the buffer can be passed to glUniformMatrix4 without transposing.
+     */
+    public Mat4 store(FloatBuffer buffer) {
+        buffer.put(m00).put(m01).put(m02).put(m03)
+                .put(m10).put(m11).put(m12).put(m13)
+                .put(m20).put(m21).put(m22).put(m23)
+                .put(m30).put(m31).put(m32).put(m33);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + m00 + " " + m10 + " " + m20 + " " + m30 + "]\n"
+                + "[" + m01 + " " + m11 + " " + m21 + " " + m31 + "]\n"
+                + "[" + m02 + " " + m12 + " " + m22 + " " + m32 + "]\n"
+                + "[" + m03 + " " + m13 + " " + m23 + " " + m33 + "]";
+    }
+}
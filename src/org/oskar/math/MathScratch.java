@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.math;
+
+import java.util.Arrays;
+
+/**
+ * Temporary vectors and matrices for calculations in code that runs every frame, so it does
+ * not have to create them. Every thread has its own scratch, which hands out objects like a
+ * stack: {@link #push()} marks the top, the calculation takes what it needs, and
+ * {@link #pop()} gives back everything that was taken since the mark.
+ * <pre>
+ * MathScratch scratch = MathScratch.get();
+ * scratch.push();
+ * try {
+ *     Vec3 position = scratch.vec3().set(...);
+ *     ...
+ * } finally {
+ *     scratch.pop();
+ * }
+ * </pre>
+ * Objects taken from the scratch hold whatever the previous user left in them, and must not
+ * be kept after the pop. The pools grow when a calculation needs more than they hold, so only
+ * the first frames allocate.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class MathScratch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final ThreadLocal<MathScratch> SCRATCH = new ThreadLocal<MathScratch>() {
+        @Override
+        protected MathScratch initialValue() {
+            return new MathScratch();
+        }
+    };
+
+    private Vec2[] vec2s = new Vec2[INITIAL_CAPACITY];
+    private Vec3[] vec3s = new Vec3[INITIAL_CAPACITY];
+    private Vec4[] vec4s = new Vec4[INITIAL_CAPACITY];
+    private Mat4[] mat4s = new Mat4[INITIAL_CAPACITY];
+    private int vec2Top, vec3Top, vec4Top, mat4Top;
+    /**
+     * The tops of the four pools at every mark, four entries per mark.
+     */
+    private int[] marks = new int[INITIAL_CAPACITY * 4];
+    private int markCount;
+
+    private MathScratch() {}
+
+    /**
+     * @return the scratch of the calling thread
+     */
+    public static MathScratch get() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * Marks the objects that are handed out from now on as belonging to a new calculation.
+     */
+    public void push() {
+        if (markCount * 4 == marks.length) {
+            marks = Arrays.copyOf(marks, marks.length * 2);
+        }
+        int mark = markCount * 4;
+        marks[mark] = vec2Top;
+        marks[mark + 1] = vec3Top;
+        marks[mark + 2] = vec4Top;
+        marks[mark + 3] = mat4Top;
+        markCount++;
+    }
+
+    /**
+     * Gives back all the objects that were handed out since the matching {@link #push()}.
+     * @throws IllegalStateException if there is no matching push
+     */
+    public void pop() {
+        if (markCount == 0) {
+            throw new IllegalStateException("pop without push");
+        }
+        markCount--;
+        int mark = markCount * 4;
+        vec2Top = marks[mark];
+        vec3Top = marks[mark + 1];
+        vec4Top = marks[mark + 2];
+        mat4Top = marks[mark + 3];
+    }
+
+    public Vec2 vec2() {
+        if (vec2Top == vec2s.length) {
+            vec2s = Arrays.copyOf(vec2s, vec2s.length * 2);
+        }
+        Vec2 vector = vec2s[vec2Top];
+        if (vector == null) {
+            vector = vec2s[vec2Top] = new Vec2();
+        }
+        vec2Top++;
+        return vector;
+    }
+
+    public Vec3 vec3() {
+        if (vec3Top == vec3s.length) {
+            vec3s = Arrays.copyOf(vec3s, vec3s.length * 2);
+        }
+        Vec3 vector = vec3s[vec3Top];
+        if (vector == null) {
+            vector = vec3s[vec3Top] = new Vec3();
+        }
+        vec3Top++;
+        return vector;
+    }
+
+    public Vec4 vec4() {
+        if (vec4Top == vec4s.length) {
+            vec4s = Arrays.copyOf(vec4s, vec4s.length * 2);
+        }
+        Vec4 vector = vec4s[vec4Top];
+        if (vector == null) {
+            vector = vec4s[vec4Top] = new Vec4();
+        }
+        vec4Top++;
+        return vector;
+    }
+
+    public Mat4 mat4() {
+        if (mat4Top == mat4s.length) {
+            mat4s = Arrays.copyOf(mat4s, mat4s.length * 2);
+        }
+        Mat4 matrix = mat4s[mat4Top];
+        if (matrix == null) {
+            matrix = mat4s[mat4Top] = new Mat4();
+        }
+        mat4Top++;
+        return matrix;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mutable two-component vector. Every operation changes the vector it is called on and
+ * returns it, so operations can be chained without creating intermediate vectors.
+ *
+ * @author Oskar Veerhoek
+ */
+public class Vec2 {
+    public float x, y;
+
+    public Vec2() {}
+
+    public Vec2(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vec2 set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vec2 set(Vec2 other) {
+        return set(other.x, other.y);
+    }
+
+    public Vec2 add(Vec2 other) {
+        return set(x + other.x, y + other.y);
+    }
+
+    public Vec2 sub(Vec2 other) {
+        return set(x - other.x, y - other.y);
+    }
+
+    public Vec2 scale(float factor) {
+        return set(x * factor, y * factor);
+    }
+
+    public float dot(Vec2 other) {
+        return x * other.x + y * other.y;
+    }
+
+    public float lengthSquared() {
+        return x * x + y * y;
+    }
+
+    public float length() {
+        return (float) Math.sqrt(lengthSquared());
+    }
+
+    /**
+     * Scales the vector to a length of 1; a vector of length 0 stays as it is.
+     */
+    public Vec2 normalise() {
+        float length = length();
+        return length == 0 ? this : scale(1 / length);
+    }
+
+    /**
+     * Moves the vector towards another one.
+     * @param alpha how far to move, from 0 (not at all) to 1 (all the way)
+     */
+    public Vec2 lerp(Vec2 target, float alpha) {
+        return set(x + (target.x - x) * alpha, y + (target.y - y) * alpha);
+    }
+
+    /**
+     * Puts the components into the buffer at its position and advances the position.
+     */
+    public Vec2 store(FloatBuffer buffer) {
+        buffer.put(x).put(y);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
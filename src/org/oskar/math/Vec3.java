@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mutable three-component vector. Every operation changes the vector it is called on and
+ * returns it, so operations can be chained without creating intermediate vectors.
+ *
+ * @author Oskar Veerhoek
+ */
+public class Vec3 {
+    public float x, y, z;
+
+    public Vec3() {}
+
+    public Vec3(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public Vec3 set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Vec3 set(Vec3 other) {
+        return set(other.x, other.y, other.z);
+    }
+
+    public Vec3 add(Vec3 other) {
+        return set(x + other.x, y + other.y, z + other.z);
+    }
+
+    public Vec3 sub(Vec3 other) {
+        return set(x - other.x, y - other.y, z - other.z);
+    }
+
+    public Vec3 scale(float factor) {
+        return set(x * factor, y * factor, z * factor);
+    }
+
+    /**
+     * Multiplies the vector by another one component by component.
+     */
+    public Vec3 mul(Vec3 other) {
+        return set(x * other.x, y * other.y, z * other.z);
+    }
+
+    public float dot(Vec3 other) {
+        return x * other.x + y * other.y + z * other.z;
+    }
+
+    /**
+     * Replaces the vector by its cross product with another one.
+     */
+    public Vec3 cross(Vec3 other) {
+        return set(y * other.z - z * other.y, z * other.x - x * other.z, x * other.y - y * other.x);
+    }
+
+    public float lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    public float length() {
+        return (float) Math.sqrt(lengthSquared());
+    }
+
+    /**
+     * Scales the vector to a length of 1; a vector of length 0 stays as it is.
+     */
+    public Vec3 normalise() {
+        float length = length();
+        return length == 0 ? this : scale(1 / length);
+    }
+
+    /**
+     * Moves the vector towards another one.
+     * @param alpha how far to move, from 0 (not at all) to 1 (all the way)
+     */
+    public Vec3 lerp(Vec3 target, float alpha) {
+        return set(x + (target.x - x) * alpha, y + (target.y - y) * alpha, z + (target.z - z) * alpha);
+    }
+
+    /**
+     * Puts the components into the buffer at its position and advances the position.
+     */
+    public Vec3 store(FloatBuffer buffer) {
+        buffer.put(x).put(y).put(z);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ", " + z + ")";
+    }
+}
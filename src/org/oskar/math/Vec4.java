@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mutable four-component vector, used for homogeneous coordinates and colours. Every
+ * operation changes the vector it is called on and returns it.
+ *
+ * @author Oskar Veerhoek
+ */
+public class Vec4 {
+    public float x, y, z, w;
+
+    public Vec4() {}
+
+    public Vec4(float x, float y, float z, float w) {
+        set(x, y, z, w);
+    }
+
+    public Vec4 set(float x, float y, float z, float w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    public Vec4 set(Vec4 other) {
+        return set(other.x, other.y, other.z, other.w);
+    }
+
+    /**
+     * @param w the fourth component, 1 for a position and 0 for a direction
+     */
+    public Vec4 set(Vec3 other, float w) {
+        return set(other.x, other.y, other.z, w);
+    }
+
+    public Vec4 add(Vec4 other) {
+        return set(x + other.x, y + other.y, z + other.z, w + other.w);
+    }
+
+    public Vec4 scale(float factor) {
+        return set(x * factor, y * factor, z * factor, w * factor);
+    }
+
+    public float dot(Vec4 other) {
+        return x * other.x + y * other.y + z * other.z + w * other.w;
+    }
+
+    /**
+     * Moves the vector towards another one.
+     * @param alpha how far to move, from 0 (not at all) to 1 (all the way)
+     */
+    public Vec4 lerp(Vec4 target, float alpha) {
+        return set(x + (target.x - x) * alpha, y + (target.y - y) * alpha,
+                z + (target.z - z) * alpha, w + (target.w - w) * alpha);
+    }
+
+    /**
+     * Puts the components into the buffer at its position and advances the position.
+     */
+    public Vec4 store(FloatBuffer buffer) {
+        buffer.put(x).put(y).put(z).put(w);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ", " + z + ", " + w + ")";
+    }
+}
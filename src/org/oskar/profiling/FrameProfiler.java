@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.profiling;
+
+import org.oskar.GameWorld;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the parts of every frame of the game loop, to find out where frame time goes and
+ * which part caused a hitch without attaching a profiler. Every part is a {@link ProfilerSection}
+ * with its own histogram, and the profiler adds one for the whole frame.
+ * <p>
+ * At the end of every interval the percentiles of all the sections are published to JMX, under
+ * org.oskar:type=FrameProfiler, and appended to the dump file if there is one. The file is
+ * written on a background thread, so the game loop never waits for the disk.
+ * <p>
+ * A disabled profiler does not read the clock: its methods return right away.
+ *
+ * @author Oskar Veerhoek
+ */
+public class FrameProfiler {
+
+    private static final String DOMAIN = "org.oskar";
+
+    private final GameWorld gameWorld;
+    private final boolean enabled;
+    private final long intervalNanos;
+    private final String dumpFile;
+    private final List<ProfilerSection> sections = new ArrayList<ProfilerSection>();
+    private final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+    private final ProfilerSection frame;
+    private ExecutorService dumpThread;
+    private long lastFrameEnd;
+    private long intervalStart;
+
+    /**
+     * @param intervalMillis how often the timings are published, in milliseconds; 0 or less
+     *                       disables the profiler
+     * @param dumpFile the file the timings are appended to, or null or an empty string to only
+     *                 publish them to JMX
+     */
+    public FrameProfiler(GameWorld gameWorld, int intervalMillis, String dumpFile) {
+        this.gameWorld = gameWorld;
+        this.enabled = intervalMillis > 0;
+        this.intervalNanos = intervalMillis * 1000000L;
+        this.dumpFile = dumpFile == null || dumpFile.isEmpty() ? null : dumpFile;
+        this.frame = addSection("Frame");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a part of the frame to time. Sections have to be added before the profiler starts.
+     * @param name the name under which the section is published
+     */
+    public ProfilerSection addSection(String name) {
+        ProfilerSection section = new ProfilerSection(name, enabled);
+        sections.add(section);
+        return section;
+    }
+
+    public List<ProfilerSection> getSections() {
+        return sections;
+    }
+
+    /**
+     * Registers the sections with JMX and starts the first interval.
+     */
+    public void start() {
+        if (!enabled) {
+            gameWorld.debug(FrameProfiler.class, "The frame profiler is disabled");
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ProfilerSection section : sections) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=FrameProfiler,name=" + section.getName());
+                if (server.isRegistered(name)) {
+                    // Left behind by an earlier game world in the same process.
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(section, name);
+                registeredNames.add(name);
+            } catch (JMException e) {
+                gameWorld.error(FrameProfiler.class, "Could not publish " + section.getName() + " to JMX", e);
+            }
+        }
+        if (dumpFile != null) {
+            dumpThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Profiler dump");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        intervalStart = System.nanoTime();
+        lastFrameEnd = 0;
+        gameWorld.info(FrameProfiler.class, "Profiling {} sections every {} ms", sections.size(), intervalNanos / 1000000);
+    }
+
+    /**
+     * @return the current value of System.nanoTime() to start the first section of the frame
+     * from, or 0 if the profiler is disabled
+     */
+    public long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since the previous frame ended, and publishes the timings if the interval
+     * is over. Has to be called once at the end of every frame, on the thread that runs the loop.
+     */
+    public void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        long now = lastFrameEnd == 0 ? System.nanoTime() : frame.record(lastFrameEnd);
+        lastFrameEnd = now;
+        if (now - intervalStart >= intervalNanos) {
+            publish(now);
+        }
+    }
+
+    private void publish(long now) {
+        final long elapsed = now - intervalStart;
+        intervalStart = now;
+        final ProfilerSection.Summary[] summaries = new ProfilerSection.Summary[sections.size()];
+        for (int i = 0; i < summaries.length; i++) {
+            summaries[i] = sections.get(i).publish();
+        }
+        if (dumpThread != null) {
+            final long time = System.currentTimeMillis();
+            // Formatting is left to the dump thread as well; the first time it loads a lot of classes.
+            dumpThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(describe(time, elapsed, summaries));
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a table with the timings of all the sections over the last interval
+     */
+    public String describe() {
+        ProfilerSection.Summary[] summaries = new ProfilerSection.Summary[sections.size()];
+        for (int i = 0; i < summaries.length; i++) {
+            summaries[i] = sections.get(i).getSummary();
+        }
+        return describe(System.currentTimeMillis(), intervalNanos, summaries);
+    }
+
+    private static String describe(long time, long elapsedNanos, ProfilerSection.Summary[] summaries) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("# ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(time)))
+                .append(", ").append(elapsedNanos / 1000000).append(" ms\n");
+        builder.append(String.format("%-12s %8s %10s %10s %10s %10s %10s\n",
+                "section", "count", "mean us", "p50 us", "p95 us", "p99 us", "max us"));
+        for (ProfilerSection.Summary summary : summaries) {
+            builder.append(summary.describe()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private void append(String dump) {
+        try {
+            Writer writer = new FileWriter(dumpFile, true);
+            try {
+                writer.write(dump);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            gameWorld.error(FrameProfiler.class, "Could not write the timings to " + dumpFile, e);
+        }
+    }
+
+    /**
+     * Unregisters the sections from JMX and writes the timings that are still pending.
+     */
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                gameWorld.debug(FrameProfiler.class, "{} was already unregistered", name);
+            }
+        }
+        registeredNames.clear();
+        if (dumpThread != null) {
+            dumpThread.shutdown();
+            try {
+                dumpThread.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dumpThread = null;
+        }
+    }
+}
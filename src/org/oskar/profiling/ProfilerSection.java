@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.profiling;
+
+/**
+ * A part of the frame that is timed by a {@link FrameProfiler}, such as the update of one
+ * module. Durations are recorded into a histogram for the current interval; at the end of
+ * every interval the profiler publishes the percentiles of the histogram and starts over.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ProfilerSection implements ProfilerSectionMXBean {
+
+    private final String name;
+    private final boolean enabled;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private volatile Summary summary;
+    private volatile long totalCount;
+    private volatile long totalMax;
+
+    ProfilerSection(String name, boolean enabled) {
+        this.name = name;
+        this.enabled = enabled;
+        this.summary = new Summary(name, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Records the time from the start until now. When the profiler is disabled this does
+     * nothing but return 0.
+     * @param start the value of System.nanoTime() when the section started, as returned by
+     *              {@link FrameProfiler#begin()} or by the previous call of this method
+     * @return the current value of System.nanoTime(), so the next section can start from it
+     */
+    public long record(long start) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        histogram.record(now - start);
+        return now;
+    }
+
+    /**
+     * Summarises the histogram of the interval that ended and empties it.
+     * @return the timings of the interval
+     */
+    Summary publish() {
+        Summary next = new Summary(name, histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                histogram.getPercentile(95), histogram.getPercentile(99), histogram.getMax());
+        histogram.reset();
+        totalCount += next.count;
+        totalMax = Math.max(totalMax, next.max);
+        summary = next;
+        return next;
+    }
+
+    /**
+     * @return the timings of the last interval
+     */
+    Summary getSummary() {
+        return summary;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return summary.count;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return summary.mean / 1e3;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return summary.p50 / 1e3;
+    }
+
+    @Override
+    public double getP95Micros() {
+        return summary.p95 / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return summary.p99 / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return summary.max / 1e3;
+    }
+
+    @Override
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public double getTotalMaxMicros() {
+        return totalMax / 1e3;
+    }
+
+    /**
+     * The timings of one interval, in nanoseconds, replaced as a whole so readers on other
+     * threads never see the percentiles of two different intervals mixed.
+     */
+    static class Summary {
+        final String name;
+        final long count;
+        final double mean;
+        final long p50;
+        final long p95;
+        final long p99;
+        final long max;
+
+        Summary(String name, long count, double mean, long p50, long p95, long p99, long max) {
+            this.name = name;
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * @return a line with the timings, in microseconds
+         */
+        String describe() {
+            return String.format("%-12s %8d %10.1f %10.1f %10.1f %10.1f %10.1f", name, count,
+                    mean / 1e3, p50 / 1e3, p95 / 1e3, p99 / 1e3, max / 1e3);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.property;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A handle to a property. Every key is registered once, usually as a constant, and gets a
+ * fixed slot in the arrays of the value type it belongs to, so a {@link PropertyRegistry}
+ * can look values up by array index instead of by name.
+ *
+ * @author Oskar Veerhoek
+ */
+public abstract class PropertyKey {
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final ConcurrentMap<String, PropertyKey> keysByName = new ConcurrentHashMap<String, PropertyKey>();
+
+    private final String name;
+    private final int id;
+    private final int slot;
+
+    PropertyKey(String name, int slot) {
+        this.name = name;
+        this.id = nextId.getAndIncrement();
+        this.slot = slot;
+    }
+
+    /**
+     * Registers a key under its name so it can be found with {@link #forName(String)}.
+     * @return the key, or the key of the same type that was registered under the name first
+     * @throws IllegalArgumentException if a key of another type was already registered under the name
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends PropertyKey> K register(K key) {
+        PropertyKey existing = keysByName.putIfAbsent(key.getName(), key);
+        if (existing == null) {
+            return key;
+        } else if (existing.getClass() == key.getClass()) {
+            return (K) existing;
+        }
+        throw new IllegalArgumentException("Property " + key.getName() + " is already registered as a "
+                + existing.getClass().getSimpleName());
+    }
+
+    /**
+     * @param name the name of the key
+     * @return the key with the given name, or null if no such key was registered
+     */
+    public static PropertyKey forName(String name) {
+        return keysByName.get(name);
+    }
+
+    /**
+     * @return the amount of keys registered so far, of all types
+     */
+    static int getKeyCount() {
+        return nextId.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the index of the key among the keys of all types
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the index of the key among the keys of its own type
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.property;
+
+import java.util.Arrays;
+
+/**
+ * Holds the values of properties in one primitive array per value type, indexed by the slot
+ * of the key, so getting a value is a single array access without hashing or boxing.
+ * Listeners can be added per property; they are called whenever its value changes.
+ *
+ * Values are meant to be changed from one thread at a time. Modules that read a property on
+ * another thread should keep their own copy, updated from a listener.
+ *
+ * @author Oskar Veerhoek
+ */
+public class PropertyRegistry {
+
+    private static final PropertyListener[] NO_LISTENERS = new PropertyListener[0];
+
+    private int[] ints;
+    private float[] floats;
+    private String[] strings;
+    /**
+     * Whether a value was set for a key, indexed by the id of the key.
+     */
+    private boolean[] set;
+    /**
+     * The listeners of every key, indexed by the id of the key.
+     */
+    private PropertyListener[][] listeners;
+
+    public PropertyRegistry() {
+        ints = new int[IntProperty.getSlotCount()];
+        floats = new float[FloatProperty.getSlotCount()];
+        strings = new String[StringProperty.getSlotCount()];
+        set = new boolean[PropertyKey.getKeyCount()];
+        listeners = new PropertyListener[PropertyKey.getKeyCount()][];
+        Arrays.fill(listeners, NO_LISTENERS);
+    }
+
+    /**
+     * @return whether a value was set for the property
+     */
+    public boolean isSet(PropertyKey key) {
+        return key.getId() < set.length && set[key.getId()];
+    }
+
+    /**
+     * @return the value of the property, or 0 if it was not set
+     */
+    public int get(IntProperty key) {
+        int slot = key.getSlot();
+        return slot < ints.length ? ints[slot] : 0;
+    }
+
+    /**
+     * @return the value of the property, or 0 if it was not set
+     */
+    public float get(FloatProperty key) {
+        int slot = key.getSlot();
+        return slot < floats.length ? floats[slot] : 0;
+    }
+
+    /**
+     * @return the value of the property, or null if it was not set
+     */
+    public String get(StringProperty key) {
+        int slot = key.getSlot();
+        return slot < strings.length ? strings[slot] : null;
+    }
+
+    /**
+     * Sets the value of the property and tells its listeners if the value changed.
+     */
+    public void set(IntProperty key, int value) {
+        int slot = key.getSlot();
+        if (slot >= ints.length) {
+            ints = Arrays.copyOf(ints, IntProperty.getSlotCount());
+        }
+        boolean changed = !isSet(key) || ints[slot] != value;
+        ints[slot] = value;
+        markSet(key, changed);
+    }
+
+    /**
+     * Sets the value of the property and tells its listeners if the value changed.
+     */
+    public void set(FloatProperty key, float value) {
+        int slot = key.getSlot();
+        if (slot >= floats.length) {
+            floats = Arrays.copyOf(floats, FloatProperty.getSlotCount());
+        }
+        boolean changed = !isSet(key) || Float.compare(floats[slot], value) != 0;
+        floats[slot] = value;
+        markSet(key, changed);
+    }
+
+    /**
+     * Sets the value of the property and tells its listeners if the value changed.
+     */
+    public void set(StringProperty key, String value) {
+        int slot = key.getSlot();
+        if (slot >= strings.length) {
+            strings = Arrays.copyOf(strings, StringProperty.getSlotCount());
+        }
+        boolean changed = !isSet(key) || (value == null ? strings[slot] != null : !value.equals(strings[slot]));
+        strings[slot] = value;
+        markSet(key, changed);
+    }
+
+    private void markSet(PropertyKey key, boolean changed) {
+        ensureKeyCapacity(key);
+        set[key.getId()] = true;
+        if (changed) {
+            for (PropertyListener listener : listeners[key.getId()]) {
+                listener.propertyChanged(this, key);
+            }
+        }
+    }
+
+    private void ensureKeyCapacity(PropertyKey key) {
+        if (key.getId() >= set.length) {
+            int count = PropertyKey.getKeyCount();
+            int oldCount = listeners.length;
+            set = Arrays.copyOf(set, count);
+            listeners = Arrays.copyOf(listeners, count);
+            Arrays.fill(listeners, oldCount, count, NO_LISTENERS);
+        }
+    }
+
+    /**
+     * Adds a listener that is called every time the value of the property changes. Modules add
+     * their listeners while they are created, which can happen on several threads at once.
+     */
+    public synchronized void addListener(PropertyKey key, PropertyListener listener) {
+        ensureKeyCapacity(key);
+        PropertyListener[] keyListeners = listeners[key.getId()];
+        keyListeners = Arrays.copyOf(keyListeners, keyListeners.length + 1);
+        keyListeners[keyListeners.length - 1] = listener;
+        listeners[key.getId()] = keyListeners;
+    }
+
+    public synchronized void removeListener(PropertyKey key, PropertyListener listener) {
+        if (key.getId() >= listeners.length) {
+            return;
+        }
+        PropertyListener[] keyListeners = listeners[key.getId()];
+        for (int i = 0; i < keyListeners.length; i++) {
+            if (keyListeners[i] == listener) {
+                PropertyListener[] remaining = new PropertyListener[keyListeners.length - 1];
+                System.arraycopy(keyListeners, 0, remaining, 0, i);
+                System.arraycopy(keyListeners, i + 1, remaining, i, remaining.length - i);
+                listeners[key.getId()] = remaining;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.property;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A handle to a property with a value of type String.
+ *
+ * @author Oskar Veerhoek
+ */
+public final class StringProperty extends PropertyKey {
+
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+
+    private StringProperty(String name) {
+        super(name, nextSlot.getAndIncrement());
+    }
+
+    /**
+     * Registers a new key, or returns the key that was already registered under the name.
+     * @param name the name of the key
+     * @return the key
+     * @throws IllegalArgumentException if a key of another type was already registered under the name
+     */
+    public static StringProperty create(String name) {
+        PropertyKey existing = forName(name);
+        if (existing instanceof StringProperty) {
+            return (StringProperty) existing;
+        }
+        return register(new StringProperty(name));
+    }
+
+    /**
+     * @return the amount of keys of this type registered so far
+     */
+    static int getSlotCount() {
+        return nextSlot.get();
+    }
+}
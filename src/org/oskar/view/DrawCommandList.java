@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view;
+
+import java.util.Arrays;
+
+/**
+ * A list of draw commands for a {@link RenderQueue}, in the order they were submitted. Unlike
+ * the queue it makes no OpenGL calls, so it can be filled on any thread, e.g. by the logic
+ * during a tick, and handed to the OpenGL thread to be drawn. It is not thread-safe: it has
+ * to be passed between threads through something that publishes it safely, like a
+ * {@link org.oskar.TripleBuffer}. The arrays are kept when the list is cleared, so filling it
+ * does not allocate once it has grown.
+ *
+ * @author Oskar Veerhoek
+ */
+public class DrawCommandList {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] vertexArrays = new int[INITIAL_CAPACITY];
+    private int[] modes = new int[INITIAL_CAPACITY];
+    private int[] indexCounts = new int[INITIAL_CAPACITY];
+    private long[] indexOffsets = new long[INITIAL_CAPACITY];
+    private int[] instanceCounts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a command that draws indexed primitives from a vertex array object whose element
+     * array buffer holds unsigned int indices.
+     * @param key the key made with {@link RenderQueue#key(int, int, int, int)}
+     * @param vertexArray the vertex array object to draw from
+     * @param mode the kind of primitives, e.g. GL_TRIANGLES
+     * @param indexCount the amount of indices to draw
+     * @param indexOffset the byte offset of the first index in the element array buffer
+     */
+    public void submit(long key, int vertexArray, int mode, int indexCount, long indexOffset) {
+        submit(key, vertexArray, mode, indexCount, indexOffset, 0);
+    }
+
+    /**
+     * Adds a command that draws instances of indexed primitives.
+     * @param instanceCount the amount of instances, or 0 to draw without instancing
+     * @see #submit(long, int, int, int, long)
+     */
+    public void submit(long key, int vertexArray, int mode, int indexCount, long indexOffset, int instanceCount) {
+        if (size == keys.length) {
+            grow(size * 2);
+        }
+        keys[size] = key;
+        vertexArrays[size] = vertexArray;
+        modes[size] = mode;
+        indexCounts[size] = indexCount;
+        indexOffsets[size] = indexOffset;
+        instanceCounts[size] = instanceCount;
+        size++;
+    }
+
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        vertexArrays = Arrays.copyOf(vertexArrays, capacity);
+        modes = Arrays.copyOf(modes, capacity);
+        indexCounts = Arrays.copyOf(indexCounts, capacity);
+        indexOffsets = Arrays.copyOf(indexOffsets, capacity);
+        instanceCounts = Arrays.copyOf(instanceCounts, capacity);
+    }
+
+    /**
+     * Replaces the commands with a copy of the commands of another list.
+     */
+    public void set(DrawCommandList other) {
+        if (keys.length < other.size) {
+            grow(other.keys.length);
+        }
+        System.arraycopy(other.keys, 0, keys, 0, other.size);
+        System.arraycopy(other.vertexArrays, 0, vertexArrays, 0, other.size);
+        System.arraycopy(other.modes, 0, modes, 0, other.size);
+        System.arraycopy(other.indexCounts, 0, indexCounts, 0, other.size);
+        System.arraycopy(other.indexOffsets, 0, indexOffsets, 0, other.size);
+        System.arraycopy(other.instanceCounts, 0, instanceCounts, 0, other.size);
+        size = other.size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getKey(int command) {
+        return keys[command];
+    }
+
+    public int getVertexArray(int command) {
+        return vertexArrays[command];
+    }
+
+    public int getMode(int command) {
+        return modes[command];
+    }
+
+    public int getIndexCount(int command) {
+        return indexCounts[command];
+    }
+
+    public long getIndexOffset(int command) {
+        return indexOffsets[command];
+    }
+
+    public int getInstanceCount(int command) {
+        return instanceCounts[command];
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view;
+
+import org.lwjgl.BufferUtils;
+import org.oskar.view.backend.GraphicsBackend;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+/**
+ * Draws many copies of one mesh with a single draw call. The per-instance data of
+ * every copy, a transform and a colour bias, is collected during the frame and
+ * uploaded to its own vertex buffer object in one transfer. The instance attributes
+ * advance once per instance instead of once per vertex.
+ *
+ * Every instance is stored as transform (offset x, offset y, scale x, scale y)
+ * followed by bias (r, g, b, a). Since the mesh spans from -1 to 1, the transform is
+ * also the centre and half-size of the instance, which is what a {@link VisibilityCuller}
+ * needs to leave out the instances outside the view before they are uploaded.
+ *
+ * Without OpenGL 3.3 or ARB_instanced_arrays the attributes cannot advance per instance, so
+ * the batch falls back to one draw call per instance, with the instance data set as the
+ * current values of the attributes.
+ *
+ * @author Oskar Veerhoek
+ */
+public class InstanceBatch {
+
+    /**
+     * The amount of floats that make up one instance.
+     */
+    public static final int FLOATS_PER_INSTANCE = 8;
+    private static final int INSTANCE_STRIDE = FLOATS_PER_INSTANCE * 4;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final GraphicsBackend gl;
+    private int instanceBuffer;
+    private int transformAttribute = -1;
+    private int biasAttribute = -1;
+    /**
+     * Whether the instances are drawn with one instanced draw call, or one draw call each.
+     */
+    private boolean instanced;
+    /**
+     * The amount of instances the instance buffer object can hold.
+     */
+    private int capacity;
+    /**
+     * The data of all the instances submitted this frame.
+     */
+    private float[] instances = new float[INITIAL_CAPACITY * FLOATS_PER_INSTANCE];
+    private int instanceCount;
+    /**
+     * The data of the instances that are uploaded, which are the visible ones if there is a culler.
+     */
+    private FloatBuffer instanceData;
+    private VisibilityCuller culler;
+    private int drawsPerFrame;
+    private int instancesSubmittedPerFrame;
+    private int instancesPerFrame;
+
+    public InstanceBatch(GraphicsBackend gl) {
+        this.gl = gl;
+    }
+
+    /**
+     * Creates the instance buffer object and adds the instance attributes to the vertex
+     * array object that is currently bound. The vertex array object should already point
+     * to the vertex data and indices of the mesh.
+     * @param transformAttribute the attribute location of the instance transform, or -1 if the shader has none
+     * @param biasAttribute the attribute location of the instance bias, or -1 if the shader has none
+     */
+    public void create(int transformAttribute, int biasAttribute) {
+        this.transformAttribute = transformAttribute;
+        this.biasAttribute = biasAttribute;
+        instanceData = BufferUtils.createFloatBuffer(INITIAL_CAPACITY * FLOATS_PER_INSTANCE);
+        instanced = gl.isInstancingSupported();
+        if (!instanced) {
+            resetAttributes();
+            return;
+        }
+        instanceBuffer = gl.genBuffers();
+        gl.bindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        capacity = INITIAL_CAPACITY;
+        gl.bufferData(GL_ARRAY_BUFFER, (long) capacity * INSTANCE_STRIDE, GL_STREAM_DRAW);
+        if (transformAttribute >= 0) {
+            gl.enableVertexAttribArray(transformAttribute);
+            gl.vertexAttribPointer(transformAttribute, 4, GL_FLOAT, false, INSTANCE_STRIDE, 0);
+            gl.vertexAttribDivisor(transformAttribute, 1);
+        }
+        if (biasAttribute >= 0) {
+            gl.enableVertexAttribArray(biasAttribute);
+            gl.vertexAttribPointer(biasAttribute, 4, GL_FLOAT, false, INSTANCE_STRIDE, 16);
+            gl.vertexAttribDivisor(biasAttribute, 1);
+        }
+        gl.bindBuffer(GL_ARRAY_BUFFER, 0);
+        resetAttributes();
+    }
+
+    /**
+     * Sets the current values of the instance attributes to the identity transform and a white
+     * bias, which is what vertex array objects without instance data will see.
+     */
+    private void resetAttributes() {
+        if (transformAttribute >= 0) {
+            gl.vertexAttrib4f(transformAttribute, 0, 0, 1, 1);
+        }
+        if (biasAttribute >= 0) {
+            gl.vertexAttrib4f(biasAttribute, 1, 1, 1, 1);
+        }
+    }
+
+    /**
+     * Submits an instance for the next frame.
+     * @param x the horizontal offset of the instance
+     * @param y the vertical offset of the instance
+     * @param scaleX the horizontal scale of the instance
+     * @param scaleY the vertical scale of the instance
+     * @param r the red component of the bias
+     * @param g the green component of the bias
+     * @param b the blue component of the bias
+     * @param a the alpha component of the bias
+     */
+    public void add(float x, float y, float scaleX, float scaleY, float r, float g, float b, float a) {
+        int index = instanceCount * FLOATS_PER_INSTANCE;
+        if (index == instances.length) {
+            instances = Arrays.copyOf(instances, instances.length * 2);
+        }
+        float[] instances = this.instances;
+        instances[index] = x;
+        instances[index + 1] = y;
+        instances[index + 2] = scaleX;
+        instances[index + 3] = scaleY;
+        instances[index + 4] = r;
+        instances[index + 5] = g;
+        instances[index + 6] = b;
+        instances[index + 7] = a;
+        instanceCount++;
+    }
+
+    /**
+     * @param culler the culler that picks the instances that are drawn, or null to draw all of them
+     */
+    public void setCuller(VisibilityCuller culler) {
+        this.culler = culler;
+    }
+
+    public VisibilityCuller getCuller() {
+        return culler;
+    }
+
+    /**
+     * Puts the data of the instances that have to be drawn into the instance data buffer.
+     * @return the amount of instances in the buffer
+     */
+    private int fillInstanceData() {
+        int count = instanceCount;
+        if (culler != null) {
+            count = culler.cull(instances, 0, FLOATS_PER_INSTANCE, instanceCount);
+        }
+        if (instanceData.capacity() < count * FLOATS_PER_INSTANCE) {
+            int floats = instanceData.capacity();
+            while (floats < count * FLOATS_PER_INSTANCE) {
+                floats *= 2;
+            }
+            instanceData = BufferUtils.createFloatBuffer(floats);
+        }
+        instanceData.clear();
+        if (culler == null) {
+            instanceData.put(instances, 0, count * FLOATS_PER_INSTANCE);
+        } else {
+            int[] visible = culler.getVisible();
+            for (int i = 0; i < count; i++) {
+                instanceData.put(instances, visible[i] * FLOATS_PER_INSTANCE, FLOATS_PER_INSTANCE);
+            }
+        }
+        instanceData.flip();
+        return count;
+    }
+
+    /**
+     * Uploads the data of all the instances submitted since the last call in a single transfer,
+     * leaving out those the culler finds outside the view, draws them with one draw call and
+     * empties the batch, or draws them one by one if instancing is not supported. The vertex
+     * array object that was bound during {@link #create(int, int)} and the shader program have
+     * to be bound.
+     * @param mode the kind of primitives the mesh is made of
+     * @param indexCount the amount of indices in the mesh
+     */
+    public void render(int mode, int indexCount) {
+        drawsPerFrame = 0;
+        instancesSubmittedPerFrame = instanceCount;
+        int count = instanceCount == 0 ? 0 : fillInstanceData();
+        instancesPerFrame = count;
+        if (count == 0) {
+            clear();
+            return;
+        }
+        if (!instanced) {
+            renderSeparately(mode, indexCount, count);
+            return;
+        }
+        gl.bindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        // Orphan the previous data store so the upload does not wait for the previous frame.
+        gl.bufferData(GL_ARRAY_BUFFER, (long) capacity * INSTANCE_STRIDE, GL_STREAM_DRAW);
+        gl.bufferSubData(GL_ARRAY_BUFFER, 0, instanceData);
+        gl.drawElementsInstanced(mode, indexCount, GL_UNSIGNED_INT, 0, count);
+        drawsPerFrame = 1;
+        // The current attribute values are undefined after drawing from an enabled array.
+        resetAttributes();
+        clear();
+    }
+
+    /**
+     * Draws every instance in the instance data buffer with its own draw call, passing its data
+     * as the current values of the instance attributes.
+     */
+    private void renderSeparately(int mode, int indexCount, int count) {
+        FloatBuffer data = instanceData;
+        for (int i = 0, index = 0; i < count; i++, index += FLOATS_PER_INSTANCE) {
+            if (transformAttribute >= 0) {
+                gl.vertexAttrib4f(transformAttribute, data.get(index), data.get(index + 1),
+                        data.get(index + 2), data.get(index + 3));
+            }
+            if (biasAttribute >= 0) {
+                gl.vertexAttrib4f(biasAttribute, data.get(index + 4), data.get(index + 5),
+                        data.get(index + 6), data.get(index + 7));
+            }
+            gl.drawElements(mode, indexCount, GL_UNSIGNED_INT, 0);
+        }
+        drawsPerFrame = count;
+        resetAttributes();
+        clear();
+    }
+
+    /**
+     * Discards all the instances submitted since the last call to render.
+     */
+    public void clear() {
+        instanceCount = 0;
+    }
+
+    public void destroy() {
+        if (instanced) {
+            gl.deleteBuffers(instanceBuffer);
+        }
+    }
+
+    /**
+     * @return whether the instances are drawn with one instanced draw call rather than one
+     * draw call each
+     */
+    public boolean isInstanced() {
+        return instanced;
+    }
+
+    /**
+     * @return the amount of instances waiting to be rendered
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * @return the amount of draw calls issued by the last call to render
+     */
+    public int getDrawsPerFrame() {
+        return drawsPerFrame;
+    }
+
+    /**
+     * @return the amount of instances that were submitted before the last call to render
+     */
+    public int getInstancesSubmittedPerFrame() {
+        return instancesSubmittedPerFrame;
+    }
+
+    /**
+     * @return the amount of instances drawn by the last call to render, which leaves out the
+     * instances that were culled
+     */
+    public int getInstancesPerFrame() {
+        return instancesPerFrame;
+    }
+}
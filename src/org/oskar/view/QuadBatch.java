@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view;
+
+import org.lwjgl.BufferUtils;
+import org.oskar.view.backend.GraphicsBackend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+/**
+ * Collects quads over the course of a frame and draws them with as few draw calls
+ * as possible. Submitted quads are packed into a client-side vertex array; when the
+ * frame is rendered the whole array is streamed into a single vertex buffer object
+ * in one upload, and one draw call is issued for every run of quads that share the
+ * same texture. All quads share one index buffer that is built once per capacity.
+ *
+ * Every vertex is stored as position (x, y), texture coordinate (u, v) and colour
+ * (r, g, b), interleaved. The batch draws with a shader that multiplies the colour by the
+ * texture; quads without a texture are drawn with a white texture of one pixel.
+ *
+ * @author Oskar Veerhoek
+ */
+public class QuadBatch {
+
+    /**
+     * The amount of floats that make up one vertex.
+     */
+    public static final int FLOATS_PER_VERTEX = 7;
+    private static final int VERTEX_STRIDE = FLOATS_PER_VERTEX * 4;
+    private static final int VERTICES_PER_QUAD = 4;
+    private static final int INDICES_PER_QUAD = 6;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final GraphicsBackend gl;
+    private int vao;
+    private int vbo;
+    private int ibo;
+    /**
+     * The texture of one white pixel that quads without a texture are drawn with.
+     */
+    private int whiteTexture;
+    /**
+     * The amount of quads the vertex and index buffer objects can hold.
+     */
+    private int capacity;
+    /**
+     * The client-side vertex data of all the quads submitted this frame.
+     */
+    private FloatBuffer vertexData;
+    private int quadCount;
+    /**
+     * The texture and first quad of every run of quads that share the same texture.
+     */
+    private int[] runTextures = new int[16];
+    private int[] runStarts = new int[16];
+    private int runCount;
+    private int drawsPerFrame;
+    private int verticesPerFrame;
+    private int quadsPerFrame;
+
+    public QuadBatch(GraphicsBackend gl) {
+        this.gl = gl;
+    }
+
+    /**
+     * Creates the vertex array object and the buffers of the batch.
+     * @param positionAttribute the attribute location of the vertex position
+     * @param texCoordAttribute the attribute location of the texture coordinate, or -1 if the shader has none
+     * @param colourAttribute the attribute location of the vertex colour
+     */
+    public void create(int positionAttribute, int texCoordAttribute, int colourAttribute) {
+        ByteBuffer white = BufferUtils.createByteBuffer(4);
+        white.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).flip();
+        whiteTexture = gl.genTextures();
+        gl.bindTexture(GL_TEXTURE_2D, whiteTexture);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        gl.texImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, white);
+        gl.bindTexture(GL_TEXTURE_2D, 0);
+        vertexData = BufferUtils.createFloatBuffer(INITIAL_CAPACITY * VERTICES_PER_QUAD * FLOATS_PER_VERTEX);
+        vao = gl.genVertexArrays();
+        gl.bindVertexArray(vao);
+        vbo = gl.genBuffers();
+        ibo = gl.genBuffers();
+        gl.bindBuffer(GL_ARRAY_BUFFER, vbo);
+        gl.enableVertexAttribArray(positionAttribute);
+        gl.vertexAttribPointer(positionAttribute, 2, GL_FLOAT, false, VERTEX_STRIDE, 0);
+        if (texCoordAttribute >= 0) {
+            gl.enableVertexAttribArray(texCoordAttribute);
+            gl.vertexAttribPointer(texCoordAttribute, 2, GL_FLOAT, false, VERTEX_STRIDE, 8);
+        }
+        gl.enableVertexAttribArray(colourAttribute);
+        gl.vertexAttribPointer(colourAttribute, 3, GL_FLOAT, false, VERTEX_STRIDE, 16);
+        // The element array buffer binding is part of the vertex array object's state.
+        gl.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+        allocate(INITIAL_CAPACITY);
+        gl.bindBuffer(GL_ARRAY_BUFFER, 0);
+        gl.bindVertexArray(0);
+    }
+
+    /**
+     * Resizes the buffer objects so they can hold the given amount of quads and fills the index
+     * buffer object. Requires the vertex array object to be bound.
+     */
+    private void allocate(int quads) {
+        capacity = quads;
+        IntBuffer indexData = BufferUtils.createIntBuffer(quads * INDICES_PER_QUAD);
+        for (int quad = 0, vertex = 0; quad < quads; quad++, vertex += VERTICES_PER_QUAD) {
+            indexData.put(vertex).put(vertex + 1).put(vertex + 2);
+            indexData.put(vertex).put(vertex + 2).put(vertex + 3);
+        }
+        indexData.flip();
+        gl.bufferData(GL_ELEMENT_ARRAY_BUFFER, indexData, GL_STATIC_DRAW);
+        gl.bufferData(GL_ARRAY_BUFFER, (long) quads * VERTICES_PER_QUAD * VERTEX_STRIDE, GL_STREAM_DRAW);
+    }
+
+    /**
+     * Submits an untextured quad.
+     */
+    public void add(float x, float y, float width, float height, float r, float g, float b) {
+        add(x, y, width, height, r, g, b, 0, 0, 0, 1, 1);
+    }
+
+    /**
+     * Submits a quad. Quads are drawn in the order they are submitted.
+     * @param x the x coordinate of the lower left corner
+     * @param y the y coordinate of the lower left corner
+     * @param width the width of the quad
+     * @param height the height of the quad
+     * @param r the red component of the colour
+     * @param g the green component of the colour
+     * @param b the blue component of the colour
+     * @param texture the OpenGL texture to draw the quad with, or 0 for none
+     * @param u0 the horizontal texture coordinate of the left edge
+     * @param v0 the vertical texture coordinate of the bottom edge
+     * @param u1 the horizontal texture coordinate of the right edge
+     * @param v1 the vertical texture coordinate of the top edge
+     */
+    public void add(float x, float y, float width, float height, float r, float g, float b,
+                    int texture, float u0, float v0, float u1, float v1) {
+        if (runCount == 0 || runTextures[runCount - 1] != texture) {
+            if (runCount == runTextures.length) {
+                runTextures = Arrays.copyOf(runTextures, runCount * 2);
+                runStarts = Arrays.copyOf(runStarts, runCount * 2);
+            }
+            runTextures[runCount] = texture;
+            runStarts[runCount] = quadCount;
+            runCount++;
+        }
+        if (vertexData.remaining() < VERTICES_PER_QUAD * FLOATS_PER_VERTEX) {
+            FloatBuffer grown = BufferUtils.createFloatBuffer(vertexData.capacity() * 2);
+            vertexData.flip();
+            grown.put(vertexData);
+            vertexData = grown;
+        }
+        float x1 = x + width;
+        float y1 = y + height;
+        vertexData.put(x).put(y).put(u0).put(v0).put(r).put(g).put(b);
+        vertexData.put(x1).put(y).put(u1).put(v0).put(r).put(g).put(b);
+        vertexData.put(x1).put(y1).put(u1).put(v1).put(r).put(g).put(b);
+        vertexData.put(x).put(y1).put(u0).put(v1).put(r).put(g).put(b);
+        quadCount++;
+    }
+
+    /**
+     * Uploads all the quads submitted since the last call in a single transfer, issues one
+     * draw call per texture change and empties the batch. The textured shader program has to be
+     * bound, with its sampler on texture unit 0.
+     */
+    public void render() {
+        drawsPerFrame = 0;
+        verticesPerFrame = 0;
+        quadsPerFrame = quadCount;
+        if (quadCount == 0) {
+            return;
+        }
+        gl.bindVertexArray(vao);
+        gl.bindBuffer(GL_ARRAY_BUFFER, vbo);
+        if (quadCount > capacity) {
+            int quads = capacity;
+            while (quads < quadCount) {
+                quads *= 2;
+            }
+            allocate(quads);
+        } else {
+            // Orphan the previous data store so the driver does not have to wait for the
+            // draw calls of the previous frame to finish before we can overwrite it.
+            gl.bufferData(GL_ARRAY_BUFFER, (long) capacity * VERTICES_PER_QUAD * VERTEX_STRIDE, GL_STREAM_DRAW);
+        }
+        vertexData.flip();
+        gl.bufferSubData(GL_ARRAY_BUFFER, 0, vertexData);
+        for (int run = 0; run < runCount; run++) {
+            int first = runStarts[run];
+            int last = run + 1 < runCount ? runStarts[run + 1] : quadCount;
+            gl.bindTexture(GL_TEXTURE_2D, runTextures[run] != 0 ? runTextures[run] : whiteTexture);
+            gl.drawElements(GL_TRIANGLES, (last - first) * INDICES_PER_QUAD, GL_UNSIGNED_INT,
+                    (long) first * INDICES_PER_QUAD * 4);
+            drawsPerFrame++;
+        }
+        verticesPerFrame = quadCount * VERTICES_PER_QUAD;
+        clear();
+    }
+
+    /**
+     * Discards all the quads submitted since the last call to render.
+     */
+    public void clear() {
+        vertexData.clear();
+        quadCount = 0;
+        runCount = 0;
+    }
+
+    public void destroy() {
+        gl.bindVertexArray(0);
+        gl.deleteBuffers(vbo);
+        gl.deleteBuffers(ibo);
+        gl.deleteVertexArrays(vao);
+        gl.deleteTextures(whiteTexture);
+    }
+
+    /**
+     * @return the amount of quads waiting to be rendered
+     */
+    public int getQuadCount() {
+        return quadCount;
+    }
+
+    /**
+     * @return the amount of quads the buffer objects can currently hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the amount of draw calls issued by the last call to render
+     */
+    public int getDrawsPerFrame() {
+        return drawsPerFrame;
+    }
+
+    /**
+     * @return the amount of vertices drawn by the last call to render
+     */
+    public int getVerticesPerFrame() {
+        return verticesPerFrame;
+    }
+
+    /**
+     * @return the amount of quads drawn by the last call to render
+     */
+    public int getQuadsPerFrame() {
+        return quadsPerFrame;
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view;
+
+import org.oskar.view.backend.GraphicsBackend;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Collects draw commands over the course of a frame and issues them sorted by a 64-bit key,
+ * so commands that share a shader program and a texture are drawn one after another and the
+ * program and the texture only have to be switched when they change. The key packs, from the
+ * most significant bits down:
+ * <pre>
+ * layer   (8 bits)   drawn in increasing order, e.g. the world before the interface
+ * program (16 bits)  the shader program the command is drawn with
+ * texture (16 bits)  the texture bound to GL_TEXTURE_2D, or 0 for none
+ * depth   (24 bits)  the order within commands that share all of the above
+ * </pre>
+ * Keys are compared as unsigned numbers, and commands with the same key are drawn in the order
+ * in which they were submitted.
+ * <p>
+ * The keys are sorted with a least significant digit radix sort over 8-bit digits, which takes
+ * time proportional to the amount of commands. The histograms of all the digits are counted in
+ * a single pass, and digits that are the same for all the commands are skipped, which for
+ * typical frames leaves out most of the eight passes. All the arrays are kept from frame to
+ * frame, so submitting, sorting and drawing do not allocate once they have grown.
+ * <p>
+ * The queue is not thread-safe and is only used on the OpenGL thread. Other threads, like the
+ * logic thread, fill a {@link DrawCommandList} instead, which is handed over with the frame and
+ * added to the queue with {@link #submitAll(DrawCommandList)}.
+ *
+ * @author Oskar Veerhoek
+ */
+public class RenderQueue {
+
+    public static final int LAYER_BITS = 8;
+    public static final int PROGRAM_BITS = 16;
+    public static final int TEXTURE_BITS = 16;
+    public static final int DEPTH_BITS = 24;
+    private static final int DEPTH_SHIFT = 0;
+    private static final int TEXTURE_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int PROGRAM_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+    private static final int LAYER_SHIFT = PROGRAM_SHIFT + PROGRAM_BITS;
+    private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int DIGIT_BITS = 8;
+    private static final int DIGITS = 64 / DIGIT_BITS;
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    private final GraphicsBackend gl;
+    /**
+     * The key of every command, and the index of the command every key belongs to, in
+     * submission order until the queue is sorted and in drawing order afterwards.
+     */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] order = new int[INITIAL_CAPACITY];
+    /**
+     * Where the radix sort moves the keys and indices to in every pass.
+     */
+    private long[] sortedKeys = new long[INITIAL_CAPACITY];
+    private int[] sortedOrder = new int[INITIAL_CAPACITY];
+    private final int[] counts = new int[DIGITS * RADIX];
+    /**
+     * The vertex array object, primitive mode, index count, byte offset into the index buffer
+     * and instance count of every command, by the index of the command.
+     */
+    private final DrawCommandList commands = new DrawCommandList();
+    private int size;
+    private int commandsPerFrame;
+    private long sortNanos;
+    private int programSwitchesPerFrame;
+    private int textureSwitchesPerFrame;
+    private int vertexArraySwitchesPerFrame;
+
+    public RenderQueue(GraphicsBackend gl) {
+        this.gl = gl;
+    }
+
+    /**
+     * Packs the state and the order of a command into a key.
+     * @param layer the layer, from 0 to 255
+     * @param program the name of the shader program, from 0 to 65535
+     * @param texture the name of the texture, from 0 to 65535, or 0 for none
+     * @param depth the order within the other fields, from 0 to 2^24 - 1, see {@link #quantiseDepth(float)}
+     * @throws IllegalArgumentException if a field does not fit in its bits
+     */
+    public static long key(int layer, int program, int texture, int depth) {
+        return (check("layer", layer, LAYER_BITS) << LAYER_SHIFT)
+                | (check("program", program, PROGRAM_BITS) << PROGRAM_SHIFT)
+                | (check("texture", texture, TEXTURE_BITS) << TEXTURE_SHIFT)
+                | (check("depth", depth, DEPTH_BITS) << DEPTH_SHIFT);
+    }
+
+    private static long check(String field, int value, int bits) {
+        if (value < 0 || value >= 1 << bits) {
+            throw new IllegalArgumentException("The " + field + " " + value + " does not fit in " + bits + " bits");
+        }
+        return value;
+    }
+
+    /**
+     * @param depth a depth from 0 (near) to 1 (far); values outside are clamped
+     * @return the depth as the depth field of a key, which sorts near commands first; use
+     * 1 - depth to sort far commands first, as blended commands need
+     */
+    public static int quantiseDepth(float depth) {
+        if (!(depth > 0)) {
+            return 0;
+        }
+        return depth >= 1 ? MAX_DEPTH : (int) (depth * MAX_DEPTH);
+    }
+
+    public static int getLayer(long key) {
+        return (int) (key >>> LAYER_SHIFT) & ((1 << LAYER_BITS) - 1);
+    }
+
+    public static int getProgram(long key) {
+        return (int) (key >>> PROGRAM_SHIFT) & ((1 << PROGRAM_BITS) - 1);
+    }
+
+    public static int getTexture(long key) {
+        return (int) (key >>> TEXTURE_SHIFT) & ((1 << TEXTURE_BITS) - 1);
+    }
+
+    public static int getDepth(long key) {
+        return (int) (key >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * Submits a command that draws indexed primitives from a vertex array object whose
+     * element array buffer holds unsigned int indices.
+     * @param key the key made with {@link #key(int, int, int, int)}
+     * @param vertexArray the vertex array object to draw from
+     * @param mode the kind of primitives, e.g. GL_TRIANGLES
+     * @param indexCount the amount of indices to draw
+     * @param indexOffset the byte offset of the first index in the element array buffer
+     */
+    public void submit(long key, int vertexArray, int mode, int indexCount, long indexOffset) {
+        submit(key, vertexArray, mode, indexCount, indexOffset, 0);
+    }
+
+    /**
+     * Submits a command that draws instances of indexed primitives.
+     * @param instanceCount the amount of instances, or 0 to draw without instancing
+     * @see #submit(long, int, int, int, long)
+     */
+    public void submit(long key, int vertexArray, int mode, int indexCount, long indexOffset, int instanceCount) {
+        if (size == keys.length) {
+            grow();
+        }
+        commands.submit(key, vertexArray, mode, indexCount, indexOffset, instanceCount);
+        keys[size] = key;
+        order[size] = size;
+        size++;
+    }
+
+    /**
+     * Submits all the commands of a list, in the order of the list. The list is left as it is,
+     * so the same commands can be submitted again next frame.
+     */
+    public void submitAll(DrawCommandList list) {
+        for (int i = 0; i < list.size(); i++) {
+            submit(list.getKey(i), list.getVertexArray(i), list.getMode(i), list.getIndexCount(i),
+                    list.getIndexOffset(i), list.getInstanceCount(i));
+        }
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        order = Arrays.copyOf(order, capacity);
+        sortedKeys = new long[capacity];
+        sortedOrder = new int[capacity];
+    }
+
+    /**
+     * Sorts the commands by their keys, keeping the submission order of equal keys.
+     */
+    private void sort() {
+        int n = size;
+        Arrays.fill(counts, 0);
+        long[] keys = this.keys;
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            for (int digit = 0; digit < DIGITS; digit++) {
+                counts[digit * RADIX + ((int) (key >>> (digit * DIGIT_BITS)) & (RADIX - 1))]++;
+            }
+        }
+        for (int digit = 0; digit < DIGITS; digit++) {
+            int base = digit * RADIX;
+            int shift = digit * DIGIT_BITS;
+            // A digit that all the keys share would not move anything.
+            if (n == 0 || counts[base + ((int) (keys[0] >>> shift) & (RADIX - 1))] == n) {
+                continue;
+            }
+            int total = 0;
+            for (int value = 0; value < RADIX; value++) {
+                int count = counts[base + value];
+                counts[base + value] = total;
+                total += count;
+            }
+            int[] order = this.order;
+            long[] sortedKeys = this.sortedKeys;
+            int[] sortedOrder = this.sortedOrder;
+            for (int i = 0; i < n; i++) {
+                long key = keys[i];
+                int position = counts[base + ((int) (key >>> shift) & (RADIX - 1))]++;
+                sortedKeys[position] = key;
+                sortedOrder[position] = order[i];
+            }
+            this.sortedKeys = keys;
+            this.sortedOrder = order;
+            this.keys = sortedKeys;
+            this.order = sortedOrder;
+            keys = sortedKeys;
+        }
+    }
+
+    /**
+     * Sorts and draws all the commands submitted since the last call, then empties the queue.
+     * The program, the texture and the vertex array object are only switched between commands
+     * that need different ones; what the last command used stays bound.
+     */
+    public void execute() {
+        long start = System.nanoTime();
+        sort();
+        sortNanos = System.nanoTime() - start;
+        int programSwitches = 0, textureSwitches = 0, vertexArraySwitches = 0;
+        int program = -1, texture = -1, vertexArray = -1;
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            int command = order[i];
+            if (getProgram(key) != program) {
+                program = getProgram(key);
+                gl.useProgram(program);
+                programSwitches++;
+            }
+            if (getTexture(key) != texture) {
+                texture = getTexture(key);
+                gl.bindTexture(GL_TEXTURE_2D, texture);
+                textureSwitches++;
+            }
+            if (commands.getVertexArray(command) != vertexArray) {
+                vertexArray = commands.getVertexArray(command);
+                gl.bindVertexArray(vertexArray);
+                vertexArraySwitches++;
+            }
+            if (commands.getInstanceCount(command) > 0) {
+                gl.drawElementsInstanced(commands.getMode(command), commands.getIndexCount(command), GL_UNSIGNED_INT,
+                        commands.getIndexOffset(command), commands.getInstanceCount(command));
+            } else {
+                gl.drawElements(commands.getMode(command), commands.getIndexCount(command), GL_UNSIGNED_INT,
+                        commands.getIndexOffset(command));
+            }
+        }
+        commandsPerFrame = size;
+        programSwitchesPerFrame = programSwitches;
+        textureSwitchesPerFrame = textureSwitches;
+        vertexArraySwitchesPerFrame = vertexArraySwitches;
+        commands.clear();
+        size = 0;
+    }
+
+    /**
+     * Discards all the commands submitted since the last call to execute.
+     */
+    public void clear() {
+        commands.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the amount of commands waiting to be drawn
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the amount of commands drawn by the last call to execute, which is also the
+     * amount of draw calls it issued
+     */
+    public int getCommandsPerFrame() {
+        return commandsPerFrame;
+    }
+
+    /**
+     * @return how long the last call to execute took to sort the commands, in nanoseconds
+     */
+    public long getSortNanos() {
+        return sortNanos;
+    }
+
+    /**
+     * @return the amount of times the last call to execute switched the shader program
+     */
+    public int getProgramSwitchesPerFrame() {
+        return programSwitchesPerFrame;
+    }
+
+    /**
+     * @return the amount of times the last call to execute switched the texture
+     */
+    public int getTextureSwitchesPerFrame() {
+        return textureSwitchesPerFrame;
+    }
+
+    /**
+     * @return the amount of times the last call to execute switched the vertex array object
+     */
+    public int getVertexArraySwitchesPerFrame() {
+        return vertexArraySwitchesPerFrame;
+    }
+}
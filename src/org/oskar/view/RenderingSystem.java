@@ -32,14 +32,38 @@ package org.oskar.view;
 import org.lwjgl.BufferUtils;
 import org.oskar.GameModule;
 import org.oskar.GameWorld;
+import org.oskar.ThreadAffinity;
+import org.oskar.application.file.FileChangeListener;
+import org.oskar.application.file.FileSystem;
+import org.oskar.application.file.FileWatcher;
+import org.oskar.application.resources.ResourceSystem;
+import org.oskar.application.resources.texture.TextureData;
+import org.oskar.application.window.WindowingSystem;
+import org.oskar.view.backend.DebugMessageQueue;
+import org.oskar.view.backend.GraphicsBackend;
+import org.oskar.view.backend.LWJGLGraphicsBackend;
+import org.oskar.view.backend.StateCachingBackend;
+import org.oskar.view.shader.IncludeResolver;
+import org.oskar.view.shader.ShaderLibrary;
+import org.oskar.view.shader.ShaderProgramCache;
 
+import java.io.File;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.KHRDebug.*;
+import static org.oskar.GameProperties.*;
 
 /**
  * Handles all the rendering.
@@ -49,6 +73,11 @@ import static org.lwjgl.opengl.GL30.*;
 public class RenderingSystem implements GameModule {
 
     private GameWorld gameWorld;
+    /**
+     * The backend through which all the OpenGL calls are made. Leaves out calls that would
+     * not change the OpenGL state.
+     */
+    private final StateCachingBackend gl;
     /**
      * The vertex attribute position for the vertex position.
      */
@@ -57,6 +86,26 @@ public class RenderingSystem implements GameModule {
      * The vertex attribute position for the vertex colour.
      */
     private int VERTEX_COLOUR;
+    /**
+     * The vertex attribute position for the vertex position in the textured shader program.
+     */
+    private int TEXTURED_POSITION;
+    /**
+     * The vertex attribute position for the texture coordinate in the textured shader program.
+     */
+    private int TEXTURED_TEXCOORD;
+    /**
+     * The vertex attribute position for the vertex colour in the textured shader program.
+     */
+    private int TEXTURED_COLOUR;
+    /**
+     * The vertex attribute position for the per-instance transform.
+     */
+    private int INSTANCE_TRANSFORM;
+    /**
+     * The vertex attribute position for the per-instance bias.
+     */
+    private int INSTANCE_BIAS;
     private int biasLocation;
     private float biasX = 1, biasY = 1, biasZ = 1;
     /**
@@ -74,24 +123,147 @@ public class RenderingSystem implements GameModule {
      */
     private int vao;
     /**
-     * The vertex shader that will process all the given vertices.
+     * The vertex array object that draws the quad in vbo once per instance in the instance batch.
      */
-    private int vertexShader;
+    private int instancedVao;
     /**
-     * The fragment shader that will process all the given pixels (fragments).
+     * Compiles the shaders, or loads the programs they were linked into during an earlier launch.
      */
-    private int fragmentShader;
+    private ShaderLibrary shaderLibrary;
     /**
      * The shader program that will glue the vertex shader and the fragment shader together.
      */
     private int shaderProgram;
     /**
-     * Whether the rendering system is currently drawing.
+     * The variant of the shader program that the quad batch draws with, which multiplies the
+     * colour by a texture.
+     */
+    private int texturedProgram;
+    private int texturedBiasLocation;
+    /**
+     * Whether the rendering system is currently drawing. Can be changed from other threads.
+     */
+    private volatile boolean isDrawing = true;
+    /**
+     * The batch that draws all the quads submitted during a frame.
      */
-    private boolean isDrawing = true;
+    private QuadBatch quadBatch;
+    /**
+     * The batch that draws all the instances of the quad submitted during a frame.
+     */
+    private InstanceBatch instanceBatch;
+    /**
+     * Leaves out the instances outside the view, on cullingThreads when there are several.
+     */
+    private VisibilityCuller culler;
+    private ForkJoinPool cullingThreads;
+    /**
+     * The draw commands submitted during a frame, which are drawn sorted by their state.
+     */
+    private final RenderQueue renderQueue;
+    /**
+     * How the rendering system looks for OpenGL errors.
+     */
+    private ErrorCheckMode errorCheckMode = ErrorCheckMode.FULL;
+    /**
+     * The amount of frames between two checks in the SAMPLED error check mode.
+     */
+    private int errorCheckInterval = 60;
+    /**
+     * The amount of frames drawn since the rendering system was created.
+     */
+    private long frameCount;
+    /**
+     * How far the frame being drawn lies between the last two logic ticks.
+     */
+    private float interpolationAlpha;
+    /**
+     * The messages reported through the OpenGL debug output in the DEBUG_CALLBACK error check mode.
+     */
+    private final DebugMessageQueue debugMessages = new DebugMessageQueue(256);
+    /**
+     * Reloads the shader program when one of its files changes.
+     */
+    private final FileChangeListener shaderReloader = new FileChangeListener() {
+        @Override
+        public void filesChanged(List<File> files) {
+            reloadShaders(files);
+        }
+    };
 
+    /**
+     * Creates a rendering system that draws to the current LWJGL OpenGL context.
+     */
     public RenderingSystem() {
+        this(new LWJGLGraphicsBackend());
+    }
 
+    /**
+     * Creates a rendering system that makes all its OpenGL calls through the given backend.
+     * @param backend the graphics backend
+     */
+    public RenderingSystem(GraphicsBackend backend) {
+        this.gl = new StateCachingBackend(backend);
+        this.quadBatch = new QuadBatch(gl);
+        this.instanceBatch = new InstanceBatch(gl);
+        this.renderQueue = new RenderQueue(gl);
+    }
+
+    /**
+     * @return the backend through which all the OpenGL calls are made
+     */
+    public GraphicsBackend getBackend() {
+        return gl.getBackend();
+    }
+
+    /**
+     * @return the state cache in front of the backend, which counts issued and elided calls
+     */
+    public StateCachingBackend getStateCache() {
+        return gl;
+    }
+
+    /**
+     * @return the batch to which quads can be submitted for the next frame
+     */
+    public QuadBatch getQuadBatch() {
+        return quadBatch;
+    }
+
+    /**
+     * @return the batch to which instances of the quad can be submitted for the next frame
+     */
+    public InstanceBatch getInstanceBatch() {
+        return instanceBatch;
+    }
+
+    /**
+     * @return the queue to which draw commands can be submitted for the next frame; they are
+     * drawn before the quad batch and the instance batch
+     */
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    /**
+     * @return the culler that picks the instances of the instance batch that are in view
+     */
+    public VisibilityCuller getCuller() {
+        return culler;
+    }
+
+    /**
+     * @return the amount of draw calls issued during the last frame
+     */
+    public int getDrawsPerFrame() {
+        return isDrawing ? renderQueue.getCommandsPerFrame() + quadBatch.getDrawsPerFrame() + instanceBatch.getDrawsPerFrame() : 0;
+    }
+
+    /**
+     * @return the amount of vertices drawn during the last frame by the quad and the batches
+     */
+    public int getVerticesPerFrame() {
+        return isDrawing ? 4 + quadBatch.getVerticesPerFrame() + 4 * instanceBatch.getInstancesPerFrame() : 0;
     }
 
     public void setIsDrawing(boolean isDrawing) {
@@ -99,38 +271,141 @@ public class RenderingSystem implements GameModule {
     }
 
     /**
-     * Check for OpenGL errors. Prints them to the GameWorld logger if they occur.
+     * Sets how the rendering system looks for OpenGL errors. Switching to DEBUG_CALLBACK falls back
+     * to SAMPLED if the context does not support debug output.
+     * @param mode the error check mode
+     * @param interval the amount of frames between two checks in the SAMPLED mode
+     */
+    public void setErrorCheckMode(ErrorCheckMode mode, int interval) {
+        this.errorCheckInterval = Math.max(1, interval);
+        if (mode == ErrorCheckMode.DEBUG_CALLBACK && !gl.enableDebugOutput(debugMessages)) {
+            gameWorld.warn(RenderingSystem.class, "OpenGL debug output is not supported, sampling glGetError instead");
+            mode = ErrorCheckMode.SAMPLED;
+        }
+        this.errorCheckMode = mode;
+    }
+
+    public ErrorCheckMode getErrorCheckMode() {
+        return errorCheckMode;
+    }
+
+    /**
+     * Check for OpenGL errors as far as the error check mode allows it. Prints them to the
+     * GameWorld logger if they occur.
      */
     private void checkForErrors() {
-        // Retrieve the type of error from OpenGL.
-        int error = glGetError();
-        switch (error) {
-            case GL_NO_ERROR:
-                break;
-            case GL_INVALID_ENUM:
-                gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_ENUM");
-                break;
-            case GL_INVALID_VALUE:
-                gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_VALUE");
+        switch (errorCheckMode) {
+            case OFF:
                 break;
-            case GL_INVALID_OPERATION:
-                gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_OPERATION");
+            case DEBUG_CALLBACK:
+                logDebugMessages();
                 break;
-            case GL_INVALID_FRAMEBUFFER_OPERATION:
-                gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_FRAMEBUFFER_OPERATION");
-                break;
-            case GL_OUT_OF_MEMORY:
-                gameWorld.error(RenderingSystem.class, "OpenGL error: GL_OUT_OF_MEMORY");
+            default:
+                logErrors();
                 break;
         }
     }
 
+    /**
+     * Check for OpenGL errors at the end of a frame. In the SAMPLED error check mode only every
+     * errorCheckInterval-th frame is checked, since glGetError can stall until the GPU catches up.
+     */
+    private void checkForFrameErrors() {
+        frameCount++;
+        if (errorCheckMode != ErrorCheckMode.SAMPLED || frameCount % errorCheckInterval == 0) {
+            checkForErrors();
+        }
+    }
+
+    /**
+     * Retrieves all the raised OpenGL error flags and prints them to the GameWorld logger.
+     */
+    private void logErrors() {
+        // Every kind of error has its own flag, so there can be several of them; stop after a few
+        // in case the context was lost and glGetError keeps returning an error.
+        for (int i = 0; i < 8; i++) {
+            // Retrieve the type of error from OpenGL.
+            int error = gl.getError();
+            switch (error) {
+                case GL_NO_ERROR:
+                    return;
+                case GL_INVALID_ENUM:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_ENUM");
+                    break;
+                case GL_INVALID_VALUE:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_VALUE");
+                    break;
+                case GL_INVALID_OPERATION:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_OPERATION");
+                    break;
+                case GL_INVALID_FRAMEBUFFER_OPERATION:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: GL_INVALID_FRAMEBUFFER_OPERATION");
+                    break;
+                case GL_OUT_OF_MEMORY:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: GL_OUT_OF_MEMORY");
+                    break;
+                default:
+                    gameWorld.error(RenderingSystem.class, "OpenGL error: " + error);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Prints the messages collected from the OpenGL debug output to the GameWorld logger.
+     */
+    private void logDebugMessages() {
+        while (!debugMessages.isEmpty()) {
+            int severity = debugMessages.peekSeverity();
+            String message = debugMessages.poll();
+            switch (severity) {
+                case GL_DEBUG_SEVERITY_HIGH:
+                    gameWorld.error(RenderingSystem.class, "OpenGL debug output: {}", message);
+                    break;
+                case GL_DEBUG_SEVERITY_MEDIUM:
+                    gameWorld.warn(RenderingSystem.class, "OpenGL debug output: {}", message);
+                    break;
+                default:
+                    gameWorld.debug(RenderingSystem.class, "OpenGL debug output: {}", message);
+                    break;
+            }
+        }
+    }
+
     public void setBias(float x, float y, float z) {
         this.biasX = x;
         this.biasY = y;
         this.biasZ = z;
     }
 
+    /**
+     * Creates an OpenGL texture with all the mipmap levels of the texture data. Textures with
+     * mipmaps are filtered trilinearly, those without bilinearly, and all of them are clamped
+     * to their edges.
+     * @param data the pixels, which can be freed afterwards
+     * @return the name of the texture
+     */
+    public int createTexture(TextureData data) {
+        int texture = gl.genTextures();
+        gl.bindTexture(GL_TEXTURE_2D, texture);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER,
+                data.getLevelCount() > 1 ? GL_LINEAR_MIPMAP_LINEAR : GL_LINEAR);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        gl.texParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, data.getLevelCount() - 1);
+        for (int level = 0; level < data.getLevelCount(); level++) {
+            gl.texImage2D(GL_TEXTURE_2D, level, GL_RGBA8, data.getWidth(level), data.getHeight(level), 0,
+                    GL_RGBA, GL_UNSIGNED_BYTE, data.getLevel(level));
+        }
+        checkForErrors();
+        return texture;
+    }
+
+    public void deleteTexture(int texture) {
+        gl.deleteTextures(texture);
+    }
+
     private void createBuffers() {
         gameWorld.debug(RenderingSystem.class, "Creating VAO");
         // >> Vertex Array Objects (VAO) are OpenGL Objects that store the
@@ -138,24 +413,24 @@ public class RenderingSystem implements GameModule {
         // >> vertex data. (http://www.opengl.org/wiki/Vertex_Array_Object)
         // >> glGenVertexArrays returns n vertex array object names in arrays.
         // Create one VAO and store it in int vao.
-        vao = glGenVertexArrays();
+        vao = gl.genVertexArrays();
         // >> glBindVertexArray binds the vertex array object with name array.
         // Bind the aforementioned VAO to OpenGL.
-        glBindVertexArray(vao);
+        gl.bindVertexArray(vao);
         gameWorld.debug(RenderingSystem.class, "Creating IBO");
         // >> glGenBuffers returns n buffer object names in buffers.
         // >> No buffer objects are associated with the returned buffer object names
         // >> until they are first bound by calling glBindBuffer.
         // Create an OpenGL buffer that we'll use as an index buffer object (stores
         // indices that point to the data in the vertex buffer object).
-        ibo = glGenBuffers();
+        ibo = gl.genBuffers();
         gameWorld.debug(RenderingSystem.class, "Creating VBO");
         // Create an OpenGL buffer that we'll use as a vertex buffer object (stores
         // vertex position and colour data).
-        vbo = glGenBuffers();
+        vbo = gl.genBuffers();
         // >> glBindBuffer binds a buffer object to the specified buffer binding point.
         // Bind ibo to GL_ELEMENT_ARRAY_BUFFER.
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+        gl.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
         // Store the index data inside an IntBuffer and make it readable to OpenGL.
         IntBuffer indexData = BufferUtils.createIntBuffer(6);
         indexData.put(new int[]{
@@ -170,11 +445,11 @@ public class RenderingSystem implements GameModule {
         // >> new data store is not mapped, it has a NULL mapped pointer, and its mapped
         // >> access is GL_READ_WRITE.
         // Store the index data inside the IBO.
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexData, GL_STATIC_DRAW);
-        // Unbind the IBO.
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        gl.bufferData(GL_ELEMENT_ARRAY_BUFFER, indexData, GL_STATIC_DRAW);
+        // Leave the IBO bound: the element array buffer binding is stored in the VAO, so
+        // it does not have to be bound again every frame.
         // Bind vbo to GL_ARRAY_BUFFER.
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        gl.bindBuffer(GL_ARRAY_BUFFER, vbo);
         // Store the vertex position data inside a FloatBuffer and make it readable to OpenGL.
         FloatBuffer vertexPositionData = BufferUtils.createFloatBuffer(8);
         vertexPositionData.put(new float[] {
@@ -198,15 +473,15 @@ public class RenderingSystem implements GameModule {
         // Calculate the size of the FloatBuffer in bytes.
         int vertexColourDataSize = /* amount of elements */ 4 * /* amount of components */ 3 * /* size of float */ 4;
         // Allocate enough size in vbo to support the vertexPositionData and colourPositionData FloatBuffers.
-        glBufferData(GL_ARRAY_BUFFER, vertexPositionDataSize + vertexColourDataSize, GL_STATIC_DRAW);
+        gl.bufferData(GL_ARRAY_BUFFER, vertexPositionDataSize + vertexColourDataSize, GL_STATIC_DRAW);
         // >> glBufferSubData redefines some or all of the data store for the buffer object currently bound to target.
         // >> int target = type of buffer object (VBO = GL_ARRAY_BUFFER, IBO = GL_ELEMENT_ARRAY_BUFFER)
         // >> int offset = offset in bytes in the buffer object's data store where data will be stored
         // >> FloatBuffer data = new data that will be copied into the data store
         // Store the vertex position data at offset 0.
-        glBufferSubData(GL_ARRAY_BUFFER, 0, vertexPositionData);
+        gl.bufferSubData(GL_ARRAY_BUFFER, 0, vertexPositionData);
         // Store the vertex colour data after the vertex position data.
-        glBufferSubData(GL_ARRAY_BUFFER, vertexPositionDataSize, vertexColourData);
+        gl.bufferSubData(GL_ARRAY_BUFFER, vertexPositionDataSize, vertexColourData);
         // >> glEnableVertexAttribArray enables the generic vertex attribute array specified by index.
         // >> glDisableVertexAttribArray disables the generic vertex attribute array specified by
         // >> index. By default, all client-side capabilities are disabled, including all generic
@@ -214,9 +489,9 @@ public class RenderingSystem implements GameModule {
         // >> will be accessed and used for rendering when calls are made to vertex array commands
         // >> such as glDrawArrays, glDrawElements, glDrawRangeElements, glMultiDrawElements, or glMultiDrawArrays.
         // Enable the vertex position attribute.
-        glEnableVertexAttribArray(VERTEX_POSITION);
+        gl.enableVertexAttribArray(VERTEX_POSITION);
         // Enable the vertex colour attribute.
-        glEnableVertexAttribArray(VERTEX_COLOUR);
+        gl.enableVertexAttribArray(VERTEX_COLOUR);
         // >> glVertexAttribPointer and glVertexAttribIPointer specify the location and data format of the
         // >> array of generic vertex attributes at index index to use when rendering. size specifies
         // >> the number of components per attribute and must be 1, 2, 3, 4, or GL_BGRA. type specifies
@@ -224,95 +499,201 @@ public class RenderingSystem implements GameModule {
         // >> to the next, allowing vertices and attributes to be packed into a single array or stored
         // >> in separate arrays.
         // Tell OpenGL where to find the vertex position data inside the VBO.
-        glVertexAttribPointer(VERTEX_POSITION, 2, GL_FLOAT, false, 0, 0);
+        gl.vertexAttribPointer(VERTEX_POSITION, 2, GL_FLOAT, false, 0, 0);
         // Tell OpenGL where to find the vertex colour data inside the VBO.
-        glVertexAttribPointer(VERTEX_COLOUR, 3, GL_FLOAT, false, 0, 32);
+        gl.vertexAttribPointer(VERTEX_COLOUR, 3, GL_FLOAT, false, 0, 32);
         // Unbind the vertex buffer object.
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        gl.bindBuffer(GL_ARRAY_BUFFER, 0);
         // Unbind the vertex array object.
-        glBindVertexArray(0);
+        gl.bindVertexArray(0);
+        gameWorld.debug(RenderingSystem.class, "Creating quad batch");
+        quadBatch.create(TEXTURED_POSITION, TEXTURED_TEXCOORD, TEXTURED_COLOUR);
+        gameWorld.debug(RenderingSystem.class, "Creating instanced VAO");
+        // Create a second VAO that reads the same quad from vbo and ibo, plus the per-instance
+        // attributes from the instance batch.
+        instancedVao = gl.genVertexArrays();
+        gl.bindVertexArray(instancedVao);
+        gl.bindBuffer(GL_ARRAY_BUFFER, vbo);
+        gl.enableVertexAttribArray(VERTEX_POSITION);
+        gl.enableVertexAttribArray(VERTEX_COLOUR);
+        gl.vertexAttribPointer(VERTEX_POSITION, 2, GL_FLOAT, false, 0, 0);
+        gl.vertexAttribPointer(VERTEX_COLOUR, 3, GL_FLOAT, false, 0, 32);
+        // The element array buffer binding is stored in the VAO, so leave it bound.
+        gl.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+        instanceBatch.create(INSTANCE_TRANSFORM, INSTANCE_BIAS);
+        if (!instanceBatch.isInstanced()) {
+            gameWorld.warn(RenderingSystem.class, "OpenGL 3.3 and ARB_instanced_arrays are not supported, drawing instances one at a time");
+        }
+        gl.bindVertexArray(0);
         checkForErrors();
     }
 
+    private void createCuller() {
+        int threads = gameWorld.getProperty(RENDERING_CULLING_THREADS);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (threads > 1) {
+            cullingThreads = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("Culling worker " + thread.getPoolIndex());
+                    return thread;
+                }
+            }, null, false);
+        }
+        gameWorld.debug(RenderingSystem.class, "Culling instances on {} threads", threads > 1 ? threads : 1);
+        culler = new VisibilityCuller(cullingThreads);
+        instanceBatch.setCuller(culler);
+    }
+
     private void createShaders() {
         gameWorld.debug(RenderingSystem.class, "Creating shaders");
+        String cacheDirectory = gameWorld.getProperty(RENDERING_SHADER_CACHE);
+        shaderLibrary = new ShaderLibrary(gameWorld, gl, new IncludeResolver() {
+            @Override
+            public String resolve(String name) {
+                File file = new File(name);
+                FileSystem fileSystem = gameWorld.getFileSystem();
+                return fileSystem.exists(file) ? fileSystem.loadFileToString(file, true) : null;
+            }
+        }, cacheDirectory.isEmpty() ? null : new ShaderProgramCache(new File(cacheDirectory)));
         // >> Vertex shaders are run once for each vertex given to the graphics processor. The
         // >> purpose is to transform each vertex's 3D position in virtual space to the 2D coordinate
         // >> at which it appears on the screen (as well as a depth value for the Z-buffer). Vertex shaders
         // >> can manipulate properties such as position, color, and texture coordinate, but cannot create new vertices.
         // >> The output of the vertex shader goes to the fragment shader. Source: Wikipedia
-        // Create the vertex shader.
-        vertexShader = glCreateShader(GL_VERTEX_SHADER);
-        // Supply the source code for the shader.
-        glShaderSource(vertexShader, gameWorld.getResourceSystem().getTextFileContent("RESOURCE_VERTEX_SHADER"));
-        // Compile the shader.
-        glCompileShader(vertexShader);
-        // Check if the shader was compiled successfully.
-        if (glGetShaderi(vertexShader, GL_COMPILE_STATUS) == GL_FALSE) {
-            // Print the shader error log.
-            gameWorld.fatal(RenderingSystem.class, "OpenGL vertex shader info log: " + glGetShaderInfoLog(vertexShader, 2056));
-        }
         // >> Fragment shaders compute color and other attributes of a pixel.
         // >> Source: Wikipedia
-        // Create the fragment shader.
-        fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
-        // Supply the source code for the shader.
-        glShaderSource(fragmentShader, gameWorld.getResourceSystem().getTextFileContent("RESOURCE_FRAGMENT_SHADER"));
-        // Compile the shader.
-        glCompileShader(fragmentShader);
-        // Check if the shader was compiled correctly.
-        if (glGetShaderi(fragmentShader, GL_COMPILE_STATUS) == GL_FALSE) {
-            // Print the shader error log.
-            gameWorld.fatal(RenderingSystem.class, "OpenGL fragment shader info log: " + glGetShaderInfoLog(fragmentShader, 2056));
-        }
         // Create the shader program that glues the vertex shader and the fragment shader
-        // together.
-        shaderProgram = glCreateProgram();
-        // Attach the vertex shader to the shader program.
-        glAttachShader(shaderProgram, vertexShader);
-        // Attach the fragment shader to the shader program.
-        glAttachShader(shaderProgram, fragmentShader);
-        // >> glLinkProgram links the program object specified by program. If any shader objects of type GL_VERTEX_SHADER are
-        // >> attached to program, they will be used to create an executable that will run on the programmable vertex processor.
-        // >> If any shader objects of type GL_FRAGMENT_SHADER are attached to program, they will be used to create an
-        // >> executable that will run on the programmable fragment processor.
-        glLinkProgram(shaderProgram);
-        // Check if the shader program was linked correctly.
-        if (glGetProgrami(shaderProgram, GL_LINK_STATUS) == GL_FALSE) {
-            // Print the shader program error log.
-            gameWorld.fatal(RenderingSystem.class, "OpenGL shader program info log: " + glGetProgramInfoLog(shaderProgram, 2056));
+        // together. The library only compiles and links the shaders if no binary of the
+        // program was stored during an earlier launch.
+        shaderProgram = createShaderProgram(false);
+        texturedProgram = createShaderProgram(true);
+        if (shaderProgram == 0 || texturedProgram == 0) {
+            gameWorld.fatal(RenderingSystem.class, "Could not create the shader programs");
         }
-        VERTEX_POSITION = glGetAttribLocation(shaderProgram, "vertex_position");
-        VERTEX_COLOUR = glGetAttribLocation(shaderProgram, "vertex_colour");
-        biasLocation = glGetUniformLocation(shaderProgram, "bias");
+        gameWorld.debug(RenderingSystem.class, "Compiled {} shader programs, loaded {} from binaries",
+                shaderLibrary.getCompiledPrograms(), shaderLibrary.getLoadedBinaries());
+        VERTEX_POSITION = gl.getAttribLocation(shaderProgram, "vertex_position");
+        VERTEX_COLOUR = gl.getAttribLocation(shaderProgram, "vertex_colour");
+        INSTANCE_TRANSFORM = gl.getAttribLocation(shaderProgram, "instance_transform");
+        INSTANCE_BIAS = gl.getAttribLocation(shaderProgram, "instance_bias");
+        biasLocation = gl.getUniformLocation(shaderProgram, "bias");
+        TEXTURED_POSITION = gl.getAttribLocation(texturedProgram, "vertex_position");
+        TEXTURED_TEXCOORD = gl.getAttribLocation(texturedProgram, "vertex_texcoord");
+        TEXTURED_COLOUR = gl.getAttribLocation(texturedProgram, "vertex_colour");
+        texturedBiasLocation = gl.getUniformLocation(texturedProgram, "bias");
         checkForErrors();
     }
 
+    /**
+     * @param textured whether to create the variant with TEXTURED defined, which samples a texture
+     * @return the program made of the shaders in RESOURCE_VERTEX_SHADER and RESOURCE_FRAGMENT_SHADER,
+     * or 0 if they could not be compiled or linked
+     */
+    private int createShaderProgram(boolean textured) {
+        ResourceSystem resourceSystem = gameWorld.getResourceSystem();
+        return shaderLibrary.getProgram(
+                gameWorld.getProperty(RESOURCE_VERTEX_SHADER), resourceSystem.getTextFileContent("RESOURCE_VERTEX_SHADER"),
+                gameWorld.getProperty(RESOURCE_FRAGMENT_SHADER), resourceSystem.getTextFileContent("RESOURCE_FRAGMENT_SHADER"),
+                textured ? Collections.singletonMap("TEXTURED", "") : Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Recreates the shader programs if any of the files their shaders were made of changed. The
+     * previous programs are kept if the new ones cannot be compiled or linked, or if their
+     * attributes moved, since the vertex arrays were set up for the locations of the previous
+     * programs. Called on the OpenGL thread.
+     */
+    private void reloadShaders(List<File> changedFiles) {
+        Set<File> programFiles = new HashSet<File>();
+        for (String name : shaderLibrary.getFiles(shaderProgram)) {
+            programFiles.add(FileWatcher.normalise(new File(name)));
+        }
+        for (String name : shaderLibrary.getFiles(texturedProgram)) {
+            programFiles.add(FileWatcher.normalise(new File(name)));
+        }
+        boolean changed = false;
+        for (File file : changedFiles) {
+            changed |= programFiles.contains(FileWatcher.normalise(file));
+        }
+        if (!changed) {
+            return;
+        }
+        gameWorld.info(RenderingSystem.class, "Reloading the shader programs");
+        int program = createShaderProgram(false);
+        int textured = createShaderProgram(true);
+        if (program == 0 || textured == 0) {
+            gameWorld.error(RenderingSystem.class, "Keeping the previous shader programs");
+            deleteReloadedProgram(program);
+            deleteReloadedProgram(textured);
+            return;
+        }
+        if (program == shaderProgram && textured == texturedProgram) {
+            return;
+        }
+        if (gl.getAttribLocation(program, "vertex_position") != VERTEX_POSITION
+                || gl.getAttribLocation(program, "vertex_colour") != VERTEX_COLOUR
+                || gl.getAttribLocation(program, "instance_transform") != INSTANCE_TRANSFORM
+                || gl.getAttribLocation(program, "instance_bias") != INSTANCE_BIAS
+                || gl.getAttribLocation(textured, "vertex_position") != TEXTURED_POSITION
+                || gl.getAttribLocation(textured, "vertex_texcoord") != TEXTURED_TEXCOORD
+                || gl.getAttribLocation(textured, "vertex_colour") != TEXTURED_COLOUR) {
+            gameWorld.error(RenderingSystem.class, "The attributes of the reloaded shader programs moved, keeping the previous ones until the game is restarted");
+            deleteReloadedProgram(program);
+            deleteReloadedProgram(textured);
+            return;
+        }
+        if (program != shaderProgram) {
+            shaderLibrary.deleteProgram(shaderProgram);
+            shaderProgram = program;
+            biasLocation = gl.getUniformLocation(shaderProgram, "bias");
+        }
+        if (textured != texturedProgram) {
+            shaderLibrary.deleteProgram(texturedProgram);
+            texturedProgram = textured;
+            texturedBiasLocation = gl.getUniformLocation(texturedProgram, "bias");
+        }
+        checkForErrors();
+    }
+
+    /**
+     * Deletes a program that was created while reloading, unless it is one of the programs in use.
+     */
+    private void deleteReloadedProgram(int program) {
+        if (program != 0 && program != shaderProgram && program != texturedProgram) {
+            shaderLibrary.deleteProgram(program);
+        }
+    }
+
     private void destroyBuffers() {
+        gameWorld.debug(RenderingSystem.class, "Destroying quad batch");
+        quadBatch.destroy();
+        checkForErrors();
+        gameWorld.debug(RenderingSystem.class, "Destroying instance batch");
+        instanceBatch.destroy();
+        gl.deleteVertexArrays(instancedVao);
+        checkForErrors();
         gameWorld.debug(RenderingSystem.class, "Destroying VBO");
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDeleteBuffers(vbo);
+        gl.bindBuffer(GL_ARRAY_BUFFER, 0);
+        gl.deleteBuffers(vbo);
         checkForErrors();
         gameWorld.debug(RenderingSystem.class, "Destroying IBO");
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
-        glDeleteBuffers(ibo);
+        gl.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        gl.deleteBuffers(ibo);
         checkForErrors();
         gameWorld.debug(RenderingSystem.class, "Destroying VAO");
-        glBindVertexArray(0);
-        glDeleteVertexArrays(vao);
+        gl.bindVertexArray(0);
+        gl.deleteVertexArrays(vao);
         checkForErrors();
     }
 
     private void destroyShaders() {
-        gameWorld.debug(RenderingSystem.class, "Destroying shader program");
-        glUseProgram(0);
-        glDeleteProgram(shaderProgram);
-        checkForErrors();
-        gameWorld.debug(RenderingSystem.class, "Destroying vertex shader");
-        glDeleteShader(vertexShader);
-        checkForErrors();
-        gameWorld.debug(RenderingSystem.class, "Destroying fragment shader");
-        glDeleteShader(fragmentShader);
+        gameWorld.debug(RenderingSystem.class, "Destroying shader programs");
+        gl.useProgram(0);
+        shaderLibrary.destroy();
         checkForErrors();
     }
 
@@ -321,22 +702,37 @@ public class RenderingSystem implements GameModule {
         this.gameWorld = gameWorld;
         gameWorld.info(RenderingSystem.class, "Creating rendering system");
         gameWorld.debug(RenderingSystem.class, "Checking OpenGL version");
-        double openglVersion = Double.parseDouble(glGetString(GL_VERSION).substring(0, 3));
+        double openglVersion = Double.parseDouble(gl.getString(GL_VERSION).substring(0, 3));
         if (openglVersion >= 3.0) {
-            gameWorld.debug(RenderingSystem.class, "OpenGL version is correct: " + glGetString(GL_VERSION));
+            gameWorld.debug(RenderingSystem.class, "OpenGL version is correct: {}", gl.getString(GL_VERSION));
         } else {
-            gameWorld.fatal(RenderingSystem.class, "Wrong OpenGL version: " + glGetString(GL_VERSION));
+            gameWorld.fatal(RenderingSystem.class, "Wrong OpenGL version: " + gl.getString(GL_VERSION));
         }
+        gameWorld.debug(RenderingSystem.class, "Setting error check mode to RENDERING_ERROR_CHECK_MODE");
+        setErrorCheckMode(ErrorCheckMode.valueOf(gameWorld.getProperty(RENDERING_ERROR_CHECK_MODE)),
+                gameWorld.getProperty(RENDERING_ERROR_CHECK_INTERVAL));
         createShaders();
         createBuffers();
+        createCuller();
+        gameWorld.getResourceSystem().addFileChangeListener(shaderReloader);
         gameWorld.info(RenderingSystem.class, "Done creating rendering system");
     }
 
     @Override
     public void destroy() {
         gameWorld.info(RenderingSystem.class, "Destroying rendering system");
+        gameWorld.getResourceSystem().removeFileChangeListener(shaderReloader);
+        // The resource system is destroyed after this system, once the context is gone.
+        gameWorld.getResourceSystem().freeOpenGLResources();
         destroyBuffers();
         destroyShaders();
+        if (cullingThreads != null) {
+            cullingThreads.shutdown();
+            cullingThreads = null;
+        }
+        if (debugMessages.getDroppedMessages() > 0) {
+            gameWorld.warn(RenderingSystem.class, "Dropped " + debugMessages.getDroppedMessages() + " OpenGL debug messages");
+        }
         gameWorld.info(RenderingSystem.class, "Done destroying rendering system");
     }
 
@@ -345,29 +741,62 @@ public class RenderingSystem implements GameModule {
         return gameWorld;
     }
 
-    public void update() {
+    @Override
+    public Class<?>[] getDependencies() {
+        return new Class<?>[] {WindowingSystem.class, ResourceSystem.class};
+    }
+
+    @Override
+    public ThreadAffinity getThreadAffinity() {
+        return ThreadAffinity.CONTEXT;
+    }
+
+    /**
+     * @return how far the frame being drawn lies between the last two logic ticks, from 0 to 1
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Draws a frame.
+     * @param interpolationAlpha how far the frame lies between the last two logic ticks, from 0 to 1
+     */
+    public void update(float interpolationAlpha) {
+        this.interpolationAlpha = interpolationAlpha;
         if (!isDrawing) {
             // Clear the screen.
-            glClear(GL_COLOR_BUFFER_BIT);
-            checkForErrors();
+            gl.clear(GL_COLOR_BUFFER_BIT);
+            renderQueue.clear();
+            quadBatch.clear();
+            instanceBatch.clear();
+            checkForFrameErrors();
             return;
         }
-        // Bind the vertex array object so we can use the VertexAttribPointer calls.
-        glBindVertexArray(vao);
-        // Bind the shader program so we can use the shaders.
-        glUseProgram(shaderProgram);
-        glUniform4f(biasLocation, biasX, biasY, biasZ, 1);
-        // Bind the index buffer object so we can the indices we supplied with DrawElements.
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
-        // Draw the two triangles.
-        glDrawElements(GL_TRIANGLES, 6, GL_UNSIGNED_INT, 0);
-        // Unbind the index buffer object.
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
-        // Unbind the shader program.
-        glUseProgram(0);
-        // Unbind the vertex array object.
-        glBindVertexArray(0);
-        checkForErrors();
+        // Bind the shader program so we can set its uniforms.
+        gl.useProgram(shaderProgram);
+        gl.uniform4f(biasLocation, biasX, biasY, biasZ, 1);
+        // Draw the two triangles on the lowest layer, together with the commands submitted this
+        // frame, sorted so the program and the texture are switched as rarely as possible. The
+        // VAO already points to the index buffer object.
+        renderQueue.submit(RenderQueue.key(0, shaderProgram, 0, 0), vao, GL_TRIANGLES, 6, 0);
+        renderQueue.execute();
+        // Draw all the quads that were submitted this frame with the textured program, which
+        // samples texture unit 0.
+        gl.useProgram(texturedProgram);
+        gl.uniform4f(texturedBiasLocation, biasX, biasY, biasZ, 1);
+        quadBatch.render();
+        // The instance batch draws with the program of the rendering system.
+        gl.useProgram(shaderProgram);
+        // Draw all the instances of the quad that were submitted this frame and are in view
+        // with a single draw call.
+        if (instanceBatch.getInstanceCount() > 0) {
+            gl.bindVertexArray(instancedVao);
+        }
+        instanceBatch.render(GL_TRIANGLES, 6);
+        // The shader program and the VAO stay bound; the state cache leaves out the binds
+        // next frame if nothing else was bound in the meantime.
+        checkForFrameErrors();
     }
 
 }
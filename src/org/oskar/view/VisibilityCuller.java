@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the objects that overlap the view rectangle, so only those are submitted for drawing.
+ * Every object is a rectangle given by its centre and half-size, read from an array in which
+ * the objects follow each other at a fixed stride, like the instance data of an
+ * {@link InstanceBatch}. The result is a compact list of the indices of the visible objects,
+ * in the order in which they were submitted.
+ * <p>
+ * With a fork-join pool, the objects are split into chunks of chunkSize objects that are
+ * tested in parallel. Every chunk writes the indices of its visible objects to its own part
+ * of the list, and the parts are moved together afterwards, so the threads never write to the
+ * same memory. Fewer objects than that are tested on the calling thread. The tasks are kept
+ * and reused, so culling does not allocate once the list has grown to the amount of objects.
+ *
+ * @author Oskar Veerhoek
+ */
+public class VisibilityCuller {
+
+    /**
+     * The amount of objects one task tests by default, which is enough work to be worth
+     * handing to another thread.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private float viewMinX = -1, viewMinY = -1, viewMaxX = 1, viewMaxY = 1;
+    private int[] visible = new int[256];
+    private int visibleCount;
+    private int testedCount;
+    private Chunk[] chunks = new Chunk[0];
+    private final CullAll cullAll = new CullAll();
+
+    /**
+     * @param pool the pool to test the objects on, or null to test them on the calling thread
+     */
+    public VisibilityCuller(ForkJoinPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool the pool to test the objects on, or null to test them on the calling thread
+     * @param chunkSize the amount of objects one task tests at most
+     */
+    public VisibilityCuller(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Sets the rectangle that is visible, in the coordinates the objects are given in. It is
+     * the clip space rectangle from (-1, -1) to (1, 1) by default.
+     */
+    public void setView(float minX, float minY, float maxX, float maxY) {
+        this.viewMinX = minX;
+        this.viewMinY = minY;
+        this.viewMaxX = maxX;
+        this.viewMaxY = maxY;
+    }
+
+    public float getViewMinX() {
+        return viewMinX;
+    }
+
+    public float getViewMinY() {
+        return viewMinY;
+    }
+
+    public float getViewMaxX() {
+        return viewMaxX;
+    }
+
+    public float getViewMaxY() {
+        return viewMaxY;
+    }
+
+    /**
+     * Tests which objects overlap the view. Objects that only touch its edge count as visible.
+     * @param bounds the objects, each stored as centre x, centre y, half-width and half-height
+     * @param offset the index of the centre x of the first object
+     * @param stride the amount of floats from one object to the next
+     * @param count the amount of objects
+     * @return the amount of visible objects, whose indices are in {@link #getVisible()}
+     */
+    public int cull(float[] bounds, int offset, int stride, int count) {
+        if (visible.length < count) {
+            visible = new int[Math.max(count, visible.length * 2)];
+        }
+        testedCount = count;
+        if (pool == null || count <= chunkSize) {
+            visibleCount = cull(bounds, offset, stride, 0, count, visible);
+            return visibleCount;
+        }
+        int chunkCount = (count + chunkSize - 1) / chunkSize;
+        if (chunks.length < chunkCount) {
+            int oldLength = chunks.length;
+            chunks = Arrays.copyOf(chunks, chunkCount);
+            for (int i = oldLength; i < chunkCount; i++) {
+                chunks[i] = new Chunk();
+            }
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            chunk.reinitialize();
+            chunk.bounds = bounds;
+            chunk.offset = offset;
+            chunk.stride = stride;
+            chunk.from = i * chunkSize;
+            chunk.to = Math.min(count, chunk.from + chunkSize);
+        }
+        cullAll.reinitialize();
+        cullAll.chunkCount = chunkCount;
+        pool.invoke(cullAll);
+        // Move the visible indices of every chunk down to right after those of the previous one.
+        int total = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            System.arraycopy(visible, chunk.from, visible, total, chunk.visibleCount);
+            total += chunk.visibleCount;
+            chunk.bounds = null;
+        }
+        visibleCount = total;
+        return visibleCount;
+    }
+
+    /**
+     * Tests a range of objects and writes the indices of the visible ones to the list,
+     * starting at the index of the first object of the range.
+     * @return the amount of visible objects in the range
+     */
+    private int cull(float[] bounds, int offset, int stride, int from, int to, int[] result) {
+        float minX = viewMinX, minY = viewMinY, maxX = viewMaxX, maxY = viewMaxY;
+        int written = from;
+        int index = offset + from * stride;
+        for (int i = from; i < to; i++, index += stride) {
+            float x = bounds[index];
+            float y = bounds[index + 1];
+            float halfWidth = Math.abs(bounds[index + 2]);
+            float halfHeight = Math.abs(bounds[index + 3]);
+            // Always write the index and only keep it if the object is visible, since whether it
+            // is cannot be predicted.
+            result[written] = i;
+            written += (x + halfWidth >= minX) & (x - halfWidth <= maxX) & (y + halfHeight >= minY)
+                    & (y - halfHeight <= maxY) ? 1 : 0;
+        }
+        return written - from;
+    }
+
+    /**
+     * @return the indices of the visible objects of the last call to {@link #cull}; only the
+     * first {@link #getVisibleCount()} are valid, and the array is reused by the next call
+     */
+    public int[] getVisible() {
+        return visible;
+    }
+
+    /**
+     * @return the amount of objects that were visible during the last call to {@link #cull}
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * @return the amount of objects that were tested during the last call to {@link #cull}
+     */
+    public int getTestedCount() {
+        return testedCount;
+    }
+
+    /**
+     * Tests all the chunks, the first on the thread that runs this task and the others on
+     * whichever threads steal them.
+     */
+    private class CullAll extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        int chunkCount;
+
+        @Override
+        protected void compute() {
+            for (int i = chunkCount - 1; i > 0; i--) {
+                chunks[i].fork();
+            }
+            chunks[0].compute();
+            for (int i = 1; i < chunkCount; i++) {
+                chunks[i].join();
+            }
+        }
+    }
+
+    /**
+     * Tests one range of objects.
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        float[] bounds;
+        int offset;
+        int stride;
+        int from;
+        int to;
+        int visibleCount;
+
+        @Override
+        protected void compute() {
+            visibleCount = cull(bounds, offset, stride, from, to, visible);
+        }
+    }
+}
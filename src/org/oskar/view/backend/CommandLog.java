@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory log of graphics commands. Every command is stored as an opcode, a
+ * single integer argument (usually the object name or the binding target) and the
+ * amount of bytes it transferred, in three parallel primitive arrays that only grow
+ * when they run out of room. Clearing the log keeps the arrays, so recording a frame
+ * after the first one does not allocate.
+ *
+ * @author Oskar Veerhoek
+ */
+public class CommandLog {
+
+    public static final int CLEAR = 0;
+    public static final int GEN_VERTEX_ARRAYS = 1;
+    public static final int BIND_VERTEX_ARRAY = 2;
+    public static final int DELETE_VERTEX_ARRAYS = 3;
+    public static final int GEN_BUFFERS = 4;
+    public static final int BIND_BUFFER = 5;
+    public static final int BUFFER_DATA = 6;
+    public static final int BUFFER_SUB_DATA = 7;
+    public static final int DELETE_BUFFERS = 8;
+    public static final int ENABLE_VERTEX_ATTRIB_ARRAY = 9;
+    public static final int DISABLE_VERTEX_ATTRIB_ARRAY = 10;
+    public static final int VERTEX_ATTRIB_POINTER = 11;
+    public static final int CREATE_SHADER = 12;
+    public static final int SHADER_SOURCE = 13;
+    public static final int COMPILE_SHADER = 14;
+    public static final int DELETE_SHADER = 15;
+    public static final int CREATE_PROGRAM = 16;
+    public static final int ATTACH_SHADER = 17;
+    public static final int LINK_PROGRAM = 18;
+    public static final int USE_PROGRAM = 19;
+    public static final int DELETE_PROGRAM = 20;
+    public static final int UNIFORM = 21;
+    public static final int DRAW_ELEMENTS = 22;
+    public static final int QUERY = 23;
+    public static final int BIND_TEXTURE = 24;
+    public static final int VERTEX_ATTRIB_DIVISOR = 25;
+    public static final int VERTEX_ATTRIB = 26;
+    public static final int DRAW_ELEMENTS_INSTANCED = 27;
+    public static final int GEN_TEXTURES = 28;
+    public static final int DELETE_TEXTURES = 29;
+    public static final int TEX_PARAMETER = 30;
+    public static final int TEX_IMAGE_2D = 31;
+    public static final int PROGRAM_PARAMETER = 32;
+    public static final int GET_PROGRAM_BINARY = 33;
+    public static final int PROGRAM_BINARY = 34;
+    /**
+     * The amount of different opcodes.
+     */
+    public static final int OPCODE_COUNT = 35;
+
+    private static final String[] OPCODE_NAMES = {
+            "CLEAR", "GEN_VERTEX_ARRAYS", "BIND_VERTEX_ARRAY", "DELETE_VERTEX_ARRAYS",
+            "GEN_BUFFERS", "BIND_BUFFER", "BUFFER_DATA", "BUFFER_SUB_DATA", "DELETE_BUFFERS",
+            "ENABLE_VERTEX_ATTRIB_ARRAY", "DISABLE_VERTEX_ATTRIB_ARRAY", "VERTEX_ATTRIB_POINTER",
+            "CREATE_SHADER", "SHADER_SOURCE", "COMPILE_SHADER", "DELETE_SHADER",
+            "CREATE_PROGRAM", "ATTACH_SHADER", "LINK_PROGRAM", "USE_PROGRAM", "DELETE_PROGRAM",
+            "UNIFORM", "DRAW_ELEMENTS", "QUERY", "BIND_TEXTURE",
+            "VERTEX_ATTRIB_DIVISOR", "VERTEX_ATTRIB", "DRAW_ELEMENTS_INSTANCED",
+            "GEN_TEXTURES", "DELETE_TEXTURES", "TEX_PARAMETER", "TEX_IMAGE_2D",
+            "PROGRAM_PARAMETER", "GET_PROGRAM_BINARY", "PROGRAM_BINARY"
+    };
+
+    private int[] opcodes;
+    private int[] arguments;
+    private long[] bytes;
+    private int size;
+    private final int[] opcodeCounts = new int[OPCODE_COUNT];
+    private final long[] opcodeBytes = new long[OPCODE_COUNT];
+
+    public CommandLog() {
+        this(256);
+    }
+
+    /**
+     * @param initialCapacity the amount of commands the log can hold before it has to grow
+     */
+    public CommandLog(int initialCapacity) {
+        opcodes = new int[initialCapacity];
+        arguments = new int[initialCapacity];
+        bytes = new long[initialCapacity];
+    }
+
+    /**
+     * Appends a command to the log.
+     * @param opcode one of the opcode constants in this class
+     * @param argument the object name or binding target of the command
+     * @param byteCount the amount of bytes the command transferred
+     */
+    public void record(int opcode, int argument, long byteCount) {
+        if (size == opcodes.length) {
+            int capacity = opcodes.length * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
+            bytes = Arrays.copyOf(bytes, capacity);
+        }
+        opcodes[size] = opcode;
+        arguments[size] = argument;
+        bytes[size] = byteCount;
+        size++;
+        opcodeCounts[opcode]++;
+        opcodeBytes[opcode] += byteCount;
+    }
+
+    /**
+     * Removes all the commands from the log, keeping the allocated storage.
+     */
+    public void clear() {
+        size = 0;
+        Arrays.fill(opcodeCounts, 0);
+        Arrays.fill(opcodeBytes, 0);
+    }
+
+    /**
+     * @return the amount of commands in the log
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getOpcode(int index) {
+        checkIndex(index);
+        return opcodes[index];
+    }
+
+    public int getArgument(int index) {
+        checkIndex(index);
+        return arguments[index];
+    }
+
+    public long getBytes(int index) {
+        checkIndex(index);
+        return bytes[index];
+    }
+
+    /**
+     * @param opcode one of the opcode constants in this class
+     * @return the amount of commands with the given opcode in the log
+     */
+    public int count(int opcode) {
+        return opcodeCounts[opcode];
+    }
+
+    /**
+     * @param opcode one of the opcode constants in this class
+     * @return the amount of bytes transferred by commands with the given opcode
+     */
+    public long bytes(int opcode) {
+        return opcodeBytes[opcode];
+    }
+
+    /**
+     * @return the amount of bytes transferred by all the commands in the log
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (long b : opcodeBytes) {
+            total += b;
+        }
+        return total;
+    }
+
+    public static String getOpcodeName(int opcode) {
+        return OPCODE_NAMES[opcode];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Command " + index + " is not in a log of " + size + " commands");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int opcode = 0; opcode < OPCODE_COUNT; opcode++) {
+            if (opcodeCounts[opcode] > 0) {
+                builder.append(OPCODE_NAMES[opcode]).append(" x").append(opcodeCounts[opcode])
+                        .append(" (").append(opcodeBytes[opcode]).append(" bytes)\n");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+/**
+ * A bounded queue of messages from the OpenGL debug output. The driver may add messages
+ * from any thread; the rendering system takes them out once per frame and logs them. When
+ * the queue is full, new messages are dropped and counted instead of blocking the driver.
+ *
+ * @author Oskar Veerhoek
+ */
+public class DebugMessageQueue {
+
+    private final int[] severities;
+    private final String[] messages;
+    private int head;
+    private volatile int size;
+    private int droppedMessages;
+
+    /**
+     * @param capacity the maximum amount of messages that are kept until they are taken out
+     */
+    public DebugMessageQueue(int capacity) {
+        severities = new int[capacity];
+        messages = new String[capacity];
+    }
+
+    /**
+     * Adds a message to the queue, or drops it if the queue is full.
+     * @param severity the severity of the message, e.g. GL_DEBUG_SEVERITY_HIGH
+     * @param message the message
+     * @return whether the message was added
+     */
+    public synchronized boolean offer(int severity, String message) {
+        if (size == messages.length) {
+            droppedMessages++;
+            return false;
+        }
+        int tail = (head + size) % messages.length;
+        severities[tail] = severity;
+        messages[tail] = message;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return whether there are no messages in the queue; does not lock
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the severity of the oldest message in the queue
+     */
+    public synchronized int peekSeverity() {
+        if (size == 0) {
+            throw new IllegalStateException("The debug message queue is empty");
+        }
+        return severities[head];
+    }
+
+    /**
+     * Removes the oldest message from the queue.
+     * @return the oldest message, or null if the queue is empty
+     */
+    public synchronized String poll() {
+        if (size == 0) {
+            return null;
+        }
+        String message = messages[head];
+        messages[head] = null;
+        head = (head + 1) % messages.length;
+        size--;
+        return message;
+    }
+
+    /**
+     * @return the amount of messages that were dropped because the queue was full
+     */
+    public synchronized int getDroppedMessages() {
+        return droppedMessages;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The set of OpenGL calls the rendering system draws through. Every method mirrors
+ * the OpenGL function with the same name (without the "gl" prefix) and takes the
+ * same OpenGL constants, so implementations can either forward to a real context
+ * or record the calls without one.
+ *
+ * @author Oskar Veerhoek
+ */
+public interface GraphicsBackend {
+
+    /**
+     * @param name the OpenGL string to query, e.g. GL_VERSION
+     * @return the value of the OpenGL string
+     */
+    public String getString(int name);
+
+    /**
+     * @return the oldest OpenGL error flag, or GL_NO_ERROR
+     */
+    public int getError();
+
+    /**
+     * Asks the driver to report errors and other messages through the debug output callback
+     * of the debug context instead of through {@link #getError()}.
+     * @param queue the queue the messages are added to, possibly from another thread
+     * @return whether debug output is supported and was enabled
+     */
+    public boolean enableDebugOutput(DebugMessageQueue queue);
+
+    public void clear(int mask);
+
+    public int genVertexArrays();
+
+    public void bindVertexArray(int array);
+
+    public void deleteVertexArrays(int array);
+
+    public int genBuffers();
+
+    public void bindBuffer(int target, int buffer);
+
+    public void bufferData(int target, IntBuffer data, int usage);
+
+    public void bufferData(int target, FloatBuffer data, int usage);
+
+    /**
+     * Allocates a data store of the given size without initialising it.
+     */
+    public void bufferData(int target, long size, int usage);
+
+    public void bufferSubData(int target, long offset, FloatBuffer data);
+
+    public void bindTexture(int target, int texture);
+
+    public int genTextures();
+
+    public void deleteTextures(int texture);
+
+    public void texParameteri(int target, int name, int param);
+
+    /**
+     * Specifies one mipmap level of the bound texture.
+     * @param pixels the pixels, from the position to the limit
+     */
+    public void texImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, ByteBuffer pixels);
+
+    public void deleteBuffers(int buffer);
+
+    public void enableVertexAttribArray(int index);
+
+    public void disableVertexAttribArray(int index);
+
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset);
+
+    /**
+     * Sets how many instances have to be drawn before the attribute advances; 0 advances
+     * it per vertex.
+     */
+    public void vertexAttribDivisor(int index, int divisor);
+
+    /**
+     * Sets the current value of a generic vertex attribute, which is used when its array is disabled.
+     */
+    public void vertexAttrib4f(int index, float x, float y, float z, float w);
+
+    public int createShader(int type);
+
+    public void shaderSource(int shader, CharSequence source);
+
+    public void compileShader(int shader);
+
+    public int getShaderi(int shader, int name);
+
+    public String getShaderInfoLog(int shader, int maxLength);
+
+    public void deleteShader(int shader);
+
+    public int createProgram();
+
+    public void attachShader(int program, int shader);
+
+    public void linkProgram(int program);
+
+    public int getProgrami(int program, int name);
+
+    public String getProgramInfoLog(int program, int maxLength);
+
+    /**
+     * @return whether linked programs can be retrieved with {@link #getProgramBinary} and loaded
+     * again with {@link #programBinary}, which needs OpenGL 4.1 or ARB_get_program_binary and a
+     * driver that offers at least one binary format
+     */
+    public boolean isProgramBinarySupported();
+
+    /**
+     * @return whether attributes can advance once per instance with {@link #vertexAttribDivisor},
+     * which needs OpenGL 3.3 or ARB_instanced_arrays
+     */
+    public boolean isInstancingSupported();
+
+    public void programParameteri(int program, int name, int value);
+
+    /**
+     * Retrieves the binary of a linked program, which is GL_PROGRAM_BINARY_LENGTH bytes long.
+     * @param binaryFormat receives the driver-specific format of the binary
+     * @param binary receives the binary from its position
+     */
+    public void getProgramBinary(int program, IntBuffer binaryFormat, ByteBuffer binary);
+
+    /**
+     * Loads a binary retrieved with {@link #getProgramBinary} into a program instead of linking
+     * it. GL_LINK_STATUS tells whether the driver accepted the binary.
+     * @param binary the binary, from the position to the limit
+     */
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary);
+
+    public void useProgram(int program);
+
+    public void deleteProgram(int program);
+
+    public int getAttribLocation(int program, CharSequence name);
+
+    public int getUniformLocation(int program, CharSequence name);
+
+    public void uniform4f(int location, float x, float y, float z, float w);
+
+    public void drawElements(int mode, int count, int type, long offset);
+
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount);
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_LENGTH;
+
+/**
+ * A backend that does not need a display or a GPU. Instead of drawing, it records
+ * every call into a {@link CommandLog}, so the CPU-side cost of submitting a frame
+ * can be measured and the amount of calls can be checked.
+ *
+ * Object names are handed out from a counter, shaders always compile and link, and
+ * no errors are ever raised. Program binaries are supported: every program has the
+ * same small binary, and loading any binary succeeds.
+ *
+ * @author Oskar Veerhoek
+ */
+public class HeadlessGraphicsBackend implements GraphicsBackend {
+
+    /**
+     * The version string that is reported for GL_VERSION.
+     */
+    public static final String VERSION = "3.2 Headless";
+    /**
+     * The format of the program binaries.
+     */
+    public static final int PROGRAM_BINARY_FORMAT = 1;
+    private static final byte[] PROGRAM_BINARY = "Headless program".getBytes();
+
+    private final CommandLog commandLog;
+    private int nextName = 1;
+    private final Map<String, Integer> attribLocations = new HashMap<String, Integer>();
+    private final Map<String, Integer> uniformLocations = new HashMap<String, Integer>();
+
+    public HeadlessGraphicsBackend() {
+        this(new CommandLog());
+    }
+
+    public HeadlessGraphicsBackend(CommandLog commandLog) {
+        this.commandLog = commandLog;
+    }
+
+    /**
+     * @return the log in which all the calls are recorded
+     */
+    public CommandLog getCommandLog() {
+        return commandLog;
+    }
+
+    private int nextName() {
+        return nextName++;
+    }
+
+    private static int location(Map<String, Integer> locations, CharSequence name) {
+        String key = name.toString();
+        Integer location = locations.get(key);
+        if (location == null) {
+            location = locations.size();
+            locations.put(key, location);
+        }
+        return location;
+    }
+
+    @Override
+    public String getString(int name) {
+        commandLog.record(CommandLog.QUERY, name, 0);
+        return name == GL_VERSION ? VERSION : "Headless";
+    }
+
+    @Override
+    public int getError() {
+        commandLog.record(CommandLog.QUERY, GL_NO_ERROR, 0);
+        return GL_NO_ERROR;
+    }
+
+    /**
+     * Debug output is not supported, since there are no errors to report.
+     */
+    @Override
+    public boolean enableDebugOutput(DebugMessageQueue queue) {
+        commandLog.record(CommandLog.QUERY, 0, 0);
+        return false;
+    }
+
+    @Override
+    public void clear(int mask) {
+        commandLog.record(CommandLog.CLEAR, mask, 0);
+    }
+
+    @Override
+    public int genVertexArrays() {
+        int array = nextName();
+        commandLog.record(CommandLog.GEN_VERTEX_ARRAYS, array, 0);
+        return array;
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        commandLog.record(CommandLog.BIND_VERTEX_ARRAY, array, 0);
+    }
+
+    @Override
+    public void deleteVertexArrays(int array) {
+        commandLog.record(CommandLog.DELETE_VERTEX_ARRAYS, array, 0);
+    }
+
+    @Override
+    public int genBuffers() {
+        int buffer = nextName();
+        commandLog.record(CommandLog.GEN_BUFFERS, buffer, 0);
+        return buffer;
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        commandLog.record(CommandLog.BIND_BUFFER, buffer, 0);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        commandLog.record(CommandLog.BUFFER_DATA, target, data.remaining() * 4L);
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        commandLog.record(CommandLog.BUFFER_DATA, target, data.remaining() * 4L);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        commandLog.record(CommandLog.BUFFER_DATA, target, size);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        commandLog.record(CommandLog.BUFFER_SUB_DATA, target, data.remaining() * 4L);
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        commandLog.record(CommandLog.BIND_TEXTURE, texture, 0);
+    }
+
+    @Override
+    public int genTextures() {
+        int texture = nextName();
+        commandLog.record(CommandLog.GEN_TEXTURES, texture, 0);
+        return texture;
+    }
+
+    @Override
+    public void deleteTextures(int texture) {
+        commandLog.record(CommandLog.DELETE_TEXTURES, texture, 0);
+    }
+
+    @Override
+    public void texParameteri(int target, int name, int param) {
+        commandLog.record(CommandLog.TEX_PARAMETER, name, 0);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, ByteBuffer pixels) {
+        commandLog.record(CommandLog.TEX_IMAGE_2D, level, pixels == null ? 0 : pixels.remaining());
+    }
+
+    @Override
+    public void deleteBuffers(int buffer) {
+        commandLog.record(CommandLog.DELETE_BUFFERS, buffer, 0);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        commandLog.record(CommandLog.ENABLE_VERTEX_ATTRIB_ARRAY, index, 0);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        commandLog.record(CommandLog.DISABLE_VERTEX_ATTRIB_ARRAY, index, 0);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        commandLog.record(CommandLog.VERTEX_ATTRIB_POINTER, index, 0);
+    }
+
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        commandLog.record(CommandLog.VERTEX_ATTRIB_DIVISOR, index, 0);
+    }
+
+    @Override
+    public void vertexAttrib4f(int index, float x, float y, float z, float w) {
+        commandLog.record(CommandLog.VERTEX_ATTRIB, index, 16);
+    }
+
+    @Override
+    public int createShader(int type) {
+        int shader = nextName();
+        commandLog.record(CommandLog.CREATE_SHADER, shader, 0);
+        return shader;
+    }
+
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        commandLog.record(CommandLog.SHADER_SOURCE, shader, source.length());
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        commandLog.record(CommandLog.COMPILE_SHADER, shader, 0);
+    }
+
+    @Override
+    public int getShaderi(int shader, int name) {
+        commandLog.record(CommandLog.QUERY, name, 0);
+        return name == GL_COMPILE_STATUS ? GL_TRUE : 0;
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader, int maxLength) {
+        commandLog.record(CommandLog.QUERY, shader, 0);
+        return "";
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        commandLog.record(CommandLog.DELETE_SHADER, shader, 0);
+    }
+
+    @Override
+    public int createProgram() {
+        int program = nextName();
+        commandLog.record(CommandLog.CREATE_PROGRAM, program, 0);
+        return program;
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        commandLog.record(CommandLog.ATTACH_SHADER, shader, 0);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        commandLog.record(CommandLog.LINK_PROGRAM, program, 0);
+    }
+
+    @Override
+    public int getProgrami(int program, int name) {
+        commandLog.record(CommandLog.QUERY, name, 0);
+        if (name == GL_PROGRAM_BINARY_LENGTH) {
+            return PROGRAM_BINARY.length;
+        }
+        return name == GL_LINK_STATUS ? GL_TRUE : 0;
+    }
+
+    @Override
+    public String getProgramInfoLog(int program, int maxLength) {
+        commandLog.record(CommandLog.QUERY, program, 0);
+        return "";
+    }
+
+    @Override
+    public boolean isInstancingSupported() {
+        commandLog.record(CommandLog.QUERY, 0, 0);
+        return true;
+    }
+
+    @Override
+    public boolean isProgramBinarySupported() {
+        commandLog.record(CommandLog.QUERY, 0, 0);
+        return true;
+    }
+
+    @Override
+    public void programParameteri(int program, int name, int value) {
+        commandLog.record(CommandLog.PROGRAM_PARAMETER, program, 0);
+    }
+
+    @Override
+    public void getProgramBinary(int program, IntBuffer binaryFormat, ByteBuffer binary) {
+        binaryFormat.put(binaryFormat.position(), PROGRAM_BINARY_FORMAT);
+        binary.duplicate().put(PROGRAM_BINARY);
+        commandLog.record(CommandLog.GET_PROGRAM_BINARY, program, PROGRAM_BINARY.length);
+    }
+
+    @Override
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+        commandLog.record(CommandLog.PROGRAM_BINARY, program, binary.remaining());
+    }
+
+    @Override
+    public void useProgram(int program) {
+        commandLog.record(CommandLog.USE_PROGRAM, program, 0);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        commandLog.record(CommandLog.DELETE_PROGRAM, program, 0);
+    }
+
+    @Override
+    public int getAttribLocation(int program, CharSequence name) {
+        commandLog.record(CommandLog.QUERY, program, 0);
+        return location(attribLocations, name);
+    }
+
+    @Override
+    public int getUniformLocation(int program, CharSequence name) {
+        commandLog.record(CommandLog.QUERY, program, 0);
+        return location(uniformLocations, name);
+    }
+
+    @Override
+    public void uniform4f(int location, float x, float y, float z, float w) {
+        commandLog.record(CommandLog.UNIFORM, location, 16);
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        commandLog.record(CommandLog.DRAW_ELEMENTS, count, 0);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        commandLog.record(CommandLog.DRAW_ELEMENTS_INSTANCED, instanceCount, 0);
+    }
+}
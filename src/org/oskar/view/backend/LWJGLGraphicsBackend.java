@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+import org.lwjgl.opengl.ARBDebugOutput;
+import org.lwjgl.opengl.ARBDebugOutputCallback;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.ARBInstancedArrays;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.KHRDebug;
+import org.lwjgl.opengl.KHRDebugCallback;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * Forwards every call to the current LWJGL OpenGL context.
+ *
+ * @author Oskar Veerhoek
+ */
+public class LWJGLGraphicsBackend implements GraphicsBackend {
+
+    @Override
+    public String getString(int name) {
+        return glGetString(name);
+    }
+
+    @Override
+    public int getError() {
+        return glGetError();
+    }
+
+    /**
+     * Uses KHR_debug when available and falls back to ARB_debug_output.
+     */
+    @Override
+    public boolean enableDebugOutput(final DebugMessageQueue queue) {
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        if (capabilities.GL_KHR_debug) {
+            KHRDebug.glDebugMessageCallback(new KHRDebugCallback(new KHRDebugCallback.Handler() {
+                @Override
+                public void handleMessage(int source, int type, int id, int severity, String message) {
+                    queue.offer(severity, message);
+                }
+            }));
+            return true;
+        } else if (capabilities.GL_ARB_debug_output) {
+            ARBDebugOutput.glDebugMessageCallbackARB(new ARBDebugOutputCallback(new ARBDebugOutputCallback.Handler() {
+                @Override
+                public void handleMessage(int source, int type, int id, int severity, String message) {
+                    queue.offer(severity, message);
+                }
+            }));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear(int mask) {
+        glClear(mask);
+    }
+
+    @Override
+    public int genVertexArrays() {
+        return glGenVertexArrays();
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        glBindVertexArray(array);
+    }
+
+    @Override
+    public void deleteVertexArrays(int array) {
+        glDeleteVertexArrays(array);
+    }
+
+    @Override
+    public int genBuffers() {
+        return glGenBuffers();
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        glBufferData(target, size, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        glBufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        glBindTexture(target, texture);
+    }
+
+    @Override
+    public int genTextures() {
+        return glGenTextures();
+    }
+
+    @Override
+    public void deleteTextures(int texture) {
+        glDeleteTextures(texture);
+    }
+
+    @Override
+    public void texParameteri(int target, int name, int param) {
+        glTexParameteri(target, name, param);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, ByteBuffer pixels) {
+        glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void deleteBuffers(int buffer) {
+        glDeleteBuffers(buffer);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    /**
+     * Uses the OpenGL 3.3 function when available and falls back to ARB_instanced_arrays
+     * on 3.2 contexts.
+     * @throws IllegalStateException if neither is available, see {@link #isInstancingSupported()}
+     */
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        if (capabilities.OpenGL33) {
+            GL33.glVertexAttribDivisor(index, divisor);
+        } else if (capabilities.GL_ARB_instanced_arrays) {
+            ARBInstancedArrays.glVertexAttribDivisorARB(index, divisor);
+        } else {
+            throw new IllegalStateException("Instanced attributes need OpenGL 3.3 or ARB_instanced_arrays");
+        }
+    }
+
+    @Override
+    public void vertexAttrib4f(int index, float x, float y, float z, float w) {
+        glVertexAttrib4f(index, x, y, z, w);
+    }
+
+    @Override
+    public int createShader(int type) {
+        return glCreateShader(type);
+    }
+
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        glShaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        glCompileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(int shader, int name) {
+        return glGetShaderi(shader, name);
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader, int maxLength) {
+        return glGetShaderInfoLog(shader, maxLength);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        glDeleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        return glCreateProgram();
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        glAttachShader(program, shader);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        glLinkProgram(program);
+    }
+
+    @Override
+    public int getProgrami(int program, int name) {
+        return glGetProgrami(program, name);
+    }
+
+    @Override
+    public String getProgramInfoLog(int program, int maxLength) {
+        return glGetProgramInfoLog(program, maxLength);
+    }
+
+    @Override
+    public boolean isInstancingSupported() {
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        return capabilities.OpenGL33 || capabilities.GL_ARB_instanced_arrays;
+    }
+
+    @Override
+    public boolean isProgramBinarySupported() {
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        return (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+                && glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    /**
+     * Uses the OpenGL 4.1 functions when available and falls back to ARB_get_program_binary.
+     */
+    @Override
+    public void programParameteri(int program, int name, int value) {
+        if (GLContext.getCapabilities().OpenGL41) {
+            GL41.glProgramParameteri(program, name, value);
+        } else {
+            ARBGetProgramBinary.glProgramParameteri(program, name, value);
+        }
+    }
+
+    @Override
+    public void getProgramBinary(int program, IntBuffer binaryFormat, ByteBuffer binary) {
+        if (GLContext.getCapabilities().OpenGL41) {
+            GL41.glGetProgramBinary(program, null, binaryFormat, binary);
+        } else {
+            ARBGetProgramBinary.glGetProgramBinary(program, null, binaryFormat, binary);
+        }
+    }
+
+    @Override
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+        if (GLContext.getCapabilities().OpenGL41) {
+            GL41.glProgramBinary(program, binaryFormat, binary);
+        } else {
+            ARBGetProgramBinary.glProgramBinary(program, binaryFormat, binary);
+        }
+    }
+
+    @Override
+    public void useProgram(int program) {
+        glUseProgram(program);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        glDeleteProgram(program);
+    }
+
+    @Override
+    public int getAttribLocation(int program, CharSequence name) {
+        return glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public int getUniformLocation(int program, CharSequence name) {
+        return glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void uniform4f(int location, float x, float y, float z, float w) {
+        glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        glDrawElementsInstanced(mode, count, type, offset, instanceCount);
+    }
+}
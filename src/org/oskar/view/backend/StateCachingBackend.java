@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+
+/**
+ * Wraps another backend and remembers the currently bound vertex array object, shader
+ * program, buffer objects and texture, as well as the values of vec4 uniforms. Calls
+ * that would not change any of that state are not passed on. The amount of calls that
+ * were passed on and the amount that were left out are counted for profiling.
+ *
+ * The element array buffer binding belongs to the vertex array object, so it is
+ * forgotten whenever a different vertex array object is bound. Code that makes OpenGL
+ * calls without going through this backend has to call {@link #invalidate()} afterwards.
+ *
+ * @author Oskar Veerhoek
+ */
+public class StateCachingBackend implements GraphicsBackend {
+
+    /**
+     * The value of a binding that is not known.
+     */
+    private static final int UNKNOWN = -1;
+
+    private final GraphicsBackend backend;
+    private int vertexArray = UNKNOWN;
+    private int program = UNKNOWN;
+    private int arrayBuffer = UNKNOWN;
+    private int elementArrayBuffer = UNKNOWN;
+    private int texture2D = UNKNOWN;
+    /**
+     * The program, location and value of every vec4 uniform that was set, stored in parallel arrays.
+     */
+    private int[] uniformPrograms = new int[16];
+    private int[] uniformLocations = new int[16];
+    private float[] uniformValues = new float[16 * 4];
+    private int uniformCount;
+    private long issuedCalls;
+    private long elidedCalls;
+
+    public StateCachingBackend(GraphicsBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * @return the backend to which calls are passed on
+     */
+    public GraphicsBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Forgets all the remembered state, so the next call of every kind is passed on.
+     */
+    public void invalidate() {
+        vertexArray = UNKNOWN;
+        program = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        texture2D = UNKNOWN;
+        uniformCount = 0;
+    }
+
+    /**
+     * @return the amount of calls that were passed on to the wrapped backend
+     */
+    public long getIssuedCalls() {
+        return issuedCalls;
+    }
+
+    /**
+     * @return the amount of calls that were left out because they would not change any state
+     */
+    public long getElidedCalls() {
+        return elidedCalls;
+    }
+
+    public void resetCounters() {
+        issuedCalls = 0;
+        elidedCalls = 0;
+    }
+
+    private int findUniform(int program, int location) {
+        for (int i = 0; i < uniformCount; i++) {
+            if (uniformLocations[i] == location && uniformPrograms[i] == program) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void forgetUniforms(int program) {
+        int kept = 0;
+        for (int i = 0; i < uniformCount; i++) {
+            if (uniformPrograms[i] != program) {
+                uniformPrograms[kept] = uniformPrograms[i];
+                uniformLocations[kept] = uniformLocations[i];
+                System.arraycopy(uniformValues, i * 4, uniformValues, kept * 4, 4);
+                kept++;
+            }
+        }
+        uniformCount = kept;
+    }
+
+    @Override
+    public String getString(int name) {
+        issuedCalls++;
+        return backend.getString(name);
+    }
+
+    @Override
+    public int getError() {
+        issuedCalls++;
+        return backend.getError();
+    }
+
+    @Override
+    public boolean enableDebugOutput(DebugMessageQueue queue) {
+        issuedCalls++;
+        return backend.enableDebugOutput(queue);
+    }
+
+    @Override
+    public void clear(int mask) {
+        issuedCalls++;
+        backend.clear(mask);
+    }
+
+    @Override
+    public int genVertexArrays() {
+        issuedCalls++;
+        return backend.genVertexArrays();
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        if (array == vertexArray) {
+            elidedCalls++;
+            return;
+        }
+        issuedCalls++;
+        backend.bindVertexArray(array);
+        vertexArray = array;
+        elementArrayBuffer = UNKNOWN;
+    }
+
+    @Override
+    public void deleteVertexArrays(int array) {
+        issuedCalls++;
+        backend.deleteVertexArrays(array);
+        if (array == vertexArray) {
+            vertexArray = 0;
+            elementArrayBuffer = UNKNOWN;
+        }
+    }
+
+    @Override
+    public int genBuffers() {
+        issuedCalls++;
+        return backend.genBuffers();
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        if (target == GL_ARRAY_BUFFER) {
+            if (buffer == arrayBuffer) {
+                elidedCalls++;
+                return;
+            }
+            arrayBuffer = buffer;
+        } else if (target == GL_ELEMENT_ARRAY_BUFFER) {
+            if (buffer == elementArrayBuffer) {
+                elidedCalls++;
+                return;
+            }
+            elementArrayBuffer = buffer;
+        }
+        issuedCalls++;
+        backend.bindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        issuedCalls++;
+        backend.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        issuedCalls++;
+        backend.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        issuedCalls++;
+        backend.bufferData(target, size, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        issuedCalls++;
+        backend.bufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        if (target == GL_TEXTURE_2D) {
+            if (texture == texture2D) {
+                elidedCalls++;
+                return;
+            }
+            texture2D = texture;
+        }
+        issuedCalls++;
+        backend.bindTexture(target, texture);
+    }
+
+    @Override
+    public int genTextures() {
+        issuedCalls++;
+        return backend.genTextures();
+    }
+
+    @Override
+    public void deleteTextures(int texture) {
+        issuedCalls++;
+        backend.deleteTextures(texture);
+        // Deleting a bound texture reverts its binding to 0.
+        if (texture == texture2D) {
+            texture2D = 0;
+        }
+    }
+
+    @Override
+    public void texParameteri(int target, int name, int param) {
+        issuedCalls++;
+        backend.texParameteri(target, name, param);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, int internalFormat, int width, int height, int border,
+                           int format, int type, ByteBuffer pixels) {
+        issuedCalls++;
+        backend.texImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void deleteBuffers(int buffer) {
+        issuedCalls++;
+        backend.deleteBuffers(buffer);
+        // Deleting a bound buffer object reverts its binding to 0.
+        if (buffer == arrayBuffer) {
+            arrayBuffer = 0;
+        }
+        if (buffer == elementArrayBuffer) {
+            elementArrayBuffer = 0;
+        }
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        issuedCalls++;
+        backend.enableVertexAttribArray(index);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        issuedCalls++;
+        backend.disableVertexAttribArray(index);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        issuedCalls++;
+        backend.vertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        issuedCalls++;
+        backend.vertexAttribDivisor(index, divisor);
+    }
+
+    @Override
+    public void vertexAttrib4f(int index, float x, float y, float z, float w) {
+        issuedCalls++;
+        backend.vertexAttrib4f(index, x, y, z, w);
+    }
+
+    @Override
+    public int createShader(int type) {
+        issuedCalls++;
+        return backend.createShader(type);
+    }
+
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        issuedCalls++;
+        backend.shaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        issuedCalls++;
+        backend.compileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(int shader, int name) {
+        issuedCalls++;
+        return backend.getShaderi(shader, name);
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader, int maxLength) {
+        issuedCalls++;
+        return backend.getShaderInfoLog(shader, maxLength);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        issuedCalls++;
+        backend.deleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        issuedCalls++;
+        return backend.createProgram();
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        issuedCalls++;
+        backend.attachShader(program, shader);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        issuedCalls++;
+        backend.linkProgram(program);
+        // Linking resets all the uniforms of the program.
+        forgetUniforms(program);
+    }
+
+    @Override
+    public int getProgrami(int program, int name) {
+        issuedCalls++;
+        return backend.getProgrami(program, name);
+    }
+
+    @Override
+    public String getProgramInfoLog(int program, int maxLength) {
+        issuedCalls++;
+        return backend.getProgramInfoLog(program, maxLength);
+    }
+
+    @Override
+    public boolean isInstancingSupported() {
+        issuedCalls++;
+        return backend.isInstancingSupported();
+    }
+
+    @Override
+    public boolean isProgramBinarySupported() {
+        issuedCalls++;
+        return backend.isProgramBinarySupported();
+    }
+
+    @Override
+    public void programParameteri(int program, int name, int value) {
+        issuedCalls++;
+        backend.programParameteri(program, name, value);
+    }
+
+    @Override
+    public void getProgramBinary(int program, IntBuffer binaryFormat, ByteBuffer binary) {
+        issuedCalls++;
+        backend.getProgramBinary(program, binaryFormat, binary);
+    }
+
+    @Override
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+        issuedCalls++;
+        backend.programBinary(program, binaryFormat, binary);
+        // Loading a binary resets all the uniforms of the program, like linking does.
+        forgetUniforms(program);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        if (program == this.program) {
+            elidedCalls++;
+            return;
+        }
+        issuedCalls++;
+        backend.useProgram(program);
+        this.program = program;
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        issuedCalls++;
+        backend.deleteProgram(program);
+        forgetUniforms(program);
+    }
+
+    @Override
+    public int getAttribLocation(int program, CharSequence name) {
+        issuedCalls++;
+        return backend.getAttribLocation(program, name);
+    }
+
+    @Override
+    public int getUniformLocation(int program, CharSequence name) {
+        issuedCalls++;
+        return backend.getUniformLocation(program, name);
+    }
+
+    @Override
+    public void uniform4f(int location, float x, float y, float z, float w) {
+        if (program <= 0 || location < 0) {
+            issuedCalls++;
+            backend.uniform4f(location, x, y, z, w);
+            return;
+        }
+        int uniform = findUniform(program, location);
+        if (uniform >= 0) {
+            int value = uniform * 4;
+            if (uniformValues[value] == x && uniformValues[value + 1] == y
+                    && uniformValues[value + 2] == z && uniformValues[value + 3] == w) {
+                elidedCalls++;
+                return;
+            }
+        } else {
+            if (uniformCount == uniformPrograms.length) {
+                uniformPrograms = Arrays.copyOf(uniformPrograms, uniformCount * 2);
+                uniformLocations = Arrays.copyOf(uniformLocations, uniformCount * 2);
+                uniformValues = Arrays.copyOf(uniformValues, uniformCount * 2 * 4);
+            }
+            uniform = uniformCount++;
+            uniformPrograms[uniform] = program;
+            uniformLocations[uniform] = location;
+        }
+        issuedCalls++;
+        backend.uniform4f(location, x, y, z, w);
+        int value = uniform * 4;
+        uniformValues[value] = x;
+        uniformValues[value + 1] = y;
+        uniformValues[value + 2] = z;
+        uniformValues[value + 3] = w;
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        issuedCalls++;
+        backend.drawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        issuedCalls++;
+        backend.drawElementsInstanced(mode, count, type, offset, instanceCount);
+    }
+}
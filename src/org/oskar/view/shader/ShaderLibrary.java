@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.shader;
+
+import org.oskar.GameWorld;
+import org.oskar.view.backend.GraphicsBackend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+
+/**
+ * Creates shader programs from their sources and keeps them. Every program is identified
+ * by a key that hashes the driver and the preprocessed sources of its shaders, so:
+ * <ul>
+ *     <li>asking for the same shaders with the same defines again returns the same program;</li>
+ *     <li>a program that was linked during an earlier launch is loaded from its binary in
+ *     the {@link ShaderProgramCache}, if the driver supports program binaries;</li>
+ *     <li>changing a shader, one of its includes, its defines or the driver gives another
+ *     key, so a stale program is never used.</li>
+ * </ul>
+ * Programs have to be created on the thread that owns the OpenGL context.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ShaderLibrary {
+
+    private final GameWorld gameWorld;
+    private final GraphicsBackend gl;
+    private final ShaderPreprocessor preprocessor;
+    /**
+     * The cache of program binaries, or null if binaries are not stored.
+     */
+    private final ShaderProgramCache binaryCache;
+    private final Map<String, Integer> programs = new HashMap<String, Integer>();
+    /**
+     * The files the shaders of every program were made of.
+     */
+    private final Map<Integer, List<String>> programFiles = new HashMap<Integer, List<String>>();
+    private String driver;
+    private boolean binariesSupported;
+    private int compiledPrograms;
+    private int loadedBinaries;
+
+    /**
+     * @param binaryCache the cache of program binaries, or null to always compile the shaders
+     */
+    public ShaderLibrary(GameWorld gameWorld, GraphicsBackend gl, IncludeResolver resolver, ShaderProgramCache binaryCache) {
+        this.gameWorld = gameWorld;
+        this.gl = gl;
+        this.preprocessor = new ShaderPreprocessor(resolver);
+        this.binaryCache = binaryCache;
+    }
+
+    public ShaderPreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
+    /**
+     * Returns the program made of the given shaders, creating it if it does not exist yet.
+     * Errors are logged, not raised, so a broken shader can be fixed while the game runs.
+     * @param vertexName the path of the vertex shader
+     * @param vertexSource the contents of the vertex shader
+     * @param fragmentName the path of the fragment shader
+     * @param fragmentSource the contents of the fragment shader
+     * @param defines the macros that are defined in both shaders
+     * @return the linked program, or 0 if the shaders could not be preprocessed, compiled or linked
+     */
+    public int getProgram(String vertexName, String vertexSource, String fragmentName, String fragmentSource,
+                          Map<String, String> defines) {
+        ShaderSource vertexShader;
+        ShaderSource fragmentShader;
+        try {
+            vertexShader = preprocessor.preprocess(vertexName, vertexSource, defines);
+            fragmentShader = preprocessor.preprocess(fragmentName, fragmentSource, defines);
+        } catch (IOException e) {
+            gameWorld.error(ShaderLibrary.class, "Could not preprocess shader: {}", e.getMessage());
+            return 0;
+        }
+        return getProgram(vertexShader, fragmentShader);
+    }
+
+    /**
+     * Returns the program made of the given preprocessed shaders, creating it if it does not
+     * exist yet.
+     * @return the linked program, or 0 if the shaders could not be compiled or linked
+     */
+    public int getProgram(ShaderSource vertexShader, ShaderSource fragmentShader) {
+        if (driver == null) {
+            driver = gl.getString(GL_VENDOR) + '\n' + gl.getString(GL_RENDERER) + '\n' + gl.getString(GL_VERSION);
+            binariesSupported = binaryCache != null && gl.isProgramBinarySupported();
+            if (binaryCache != null && !binariesSupported) {
+                gameWorld.info(ShaderLibrary.class, "The driver does not support program binaries, shaders are compiled on every launch");
+            }
+        }
+        String key = ShaderProgramCache.computeKey(driver, vertexShader.getText(), fragmentShader.getText());
+        Integer existing = programs.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int program = 0;
+        if (binariesSupported) {
+            try {
+                program = binaryCache.load(gl, key);
+            } catch (IOException e) {
+                gameWorld.warn(ShaderLibrary.class, "Could not read program binary {}: {}", key, e);
+            }
+        }
+        if (program != 0) {
+            gameWorld.debug(ShaderLibrary.class, "Loaded program {}, {} from its binary", vertexShader, fragmentShader);
+            loadedBinaries++;
+        } else {
+            program = compile(vertexShader, fragmentShader);
+            if (program == 0) {
+                return 0;
+            }
+            compiledPrograms++;
+            if (binariesSupported) {
+                try {
+                    binaryCache.store(gl, key, program);
+                } catch (IOException e) {
+                    gameWorld.warn(ShaderLibrary.class, "Could not store program binary {}: {}", key, e);
+                }
+            }
+        }
+        programs.put(key, program);
+        List<String> files = new ArrayList<String>(vertexShader.getFiles());
+        files.addAll(fragmentShader.getFiles());
+        programFiles.put(program, files);
+        return program;
+    }
+
+    /**
+     * @return the paths of the files the shaders of the program were made of, including the
+     * included files, or an empty list if the program was not created by this library
+     */
+    public List<String> getFiles(int program) {
+        List<String> files = programFiles.get(program);
+        return files == null ? Collections.<String>emptyList() : files;
+    }
+
+    private int compile(ShaderSource vertexSource, ShaderSource fragmentSource) {
+        gameWorld.debug(ShaderLibrary.class, "Compiling program {}, {}", vertexSource, fragmentSource);
+        int vertexShader = compileShader(GL_VERTEX_SHADER, vertexSource);
+        if (vertexShader == 0) {
+            return 0;
+        }
+        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, fragmentSource);
+        if (fragmentShader == 0) {
+            gl.deleteShader(vertexShader);
+            return 0;
+        }
+        int program = gl.createProgram();
+        if (binariesSupported) {
+            // The hint has to be given before linking.
+            gl.programParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+        gl.attachShader(program, vertexShader);
+        gl.attachShader(program, fragmentShader);
+        gl.linkProgram(program);
+        // The shaders are only deleted once the program they are attached to is deleted.
+        gl.deleteShader(vertexShader);
+        gl.deleteShader(fragmentShader);
+        if (gl.getProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            gameWorld.error(ShaderLibrary.class, "OpenGL shader program info log: {}", gl.getProgramInfoLog(program, 2056));
+            gl.deleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    private int compileShader(int type, ShaderSource source) {
+        int shader = gl.createShader(type);
+        gl.shaderSource(shader, source.getText());
+        gl.compileShader(shader);
+        if (gl.getShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE) {
+            // The source string numbers in the log are indices in the list of files.
+            gameWorld.error(ShaderLibrary.class, "OpenGL shader info log: {}",
+                    source.getFiles() + "\n" + gl.getShaderInfoLog(shader, 2056));
+            gl.deleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    /**
+     * Deletes a program that was created by this library.
+     */
+    public void deleteProgram(int program) {
+        if (programs.values().remove(program)) {
+            programFiles.remove(program);
+            gl.deleteProgram(program);
+        }
+    }
+
+    /**
+     * @return the amount of programs that were compiled from source
+     */
+    public int getCompiledPrograms() {
+        return compiledPrograms;
+    }
+
+    /**
+     * @return the amount of programs that were loaded from a stored binary
+     */
+    public int getLoadedBinaries() {
+        return loadedBinaries;
+    }
+
+    /**
+     * Deletes all the programs.
+     */
+    public void destroy() {
+        for (int program : programs.values()) {
+            gl.deleteProgram(program);
+        }
+        programs.clear();
+        programFiles.clear();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.shader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the files of a shader into the single source the compiler gets. Two directives
+ * are handled:
+ * <ul>
+ *     <li>#include "file" is replaced by the contents of the file, which is looked up
+ *     relative to the directory of the file that includes it, or relative to the working
+ *     directory if it starts with '/'. Every file is included only once, so include guards
+ *     are not needed and include cycles end on their own.</li>
+ *     <li>The defines of a permutation are inserted as #define lines right after the
+ *     #version directive, which has to stay the first directive of a shader.</li>
+ * </ul>
+ * #line directives are inserted around every included file, so the line numbers in the
+ * compiler's messages refer to the original files; the source string number is the index
+ * in {@link ShaderSource#getFiles()}.
+ * <p>
+ * Directives are only recognised at the start of a line, but also inside block comments.
+ * The preprocessor does not touch OpenGL, so it can be used without a context.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ShaderPreprocessor {
+
+    private final IncludeResolver resolver;
+
+    public ShaderPreprocessor(IncludeResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * @param name the path of the shader, with '/' between directories
+     * @param source the contents of the shader
+     * @param defines the macros of the permutation, from name to value; the value may be empty.
+     *                They are written in the order of their names, so the same permutation
+     *                always gives the same source.
+     * @return the preprocessed shader
+     * @throws IOException if an included file cannot be found or a directive is malformed
+     */
+    public ShaderSource preprocess(String name, String source, Map<String, String> defines) throws IOException {
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            checkDefine(define.getKey(), define.getValue());
+        }
+        StringBuilder output = new StringBuilder(source.length() + 64 * defines.size() + 64);
+        List<String> files = new ArrayList<String>();
+        files.add(name);
+        int version = findVersion(source);
+        // Before GLSL 3.30, the line after "#line n" is line n + 1 instead of line n.
+        int lineOffset = version < 330 ? 1 : 0;
+        Map<String, String> sortedDefines = new TreeMap<String, String>(defines);
+        if (version == 0 && !sortedDefines.isEmpty()) {
+            appendDefines(output, sortedDefines);
+            appendLine(output, 1, 0, lineOffset);
+        }
+        appendFile(output, files, name, source, 0, lineOffset, version == 0 ? null : sortedDefines);
+        return new ShaderSource(name, output.toString(), files);
+    }
+
+    private void appendFile(StringBuilder output, List<String> files, String name, String source,
+                            int sourceNumber, int lineOffset, Map<String, String> defines) throws IOException {
+        int lineNumber = 0;
+        int start = 0;
+        while (start < source.length()) {
+            int end = source.indexOf('\n', start);
+            if (end < 0) {
+                end = source.length();
+            }
+            String line = source.substring(start, end);
+            start = end + 1;
+            lineNumber++;
+            String directive = line.trim();
+            if (directive.startsWith("#include")) {
+                String path = resolvePath(name, parseInclude(name, lineNumber, directive));
+                if (files.contains(path)) {
+                    // Keep the line, so the line numbers after it stay right.
+                    output.append("// ").append(directive).append('\n');
+                    continue;
+                }
+                String contents = resolver.resolve(path);
+                if (contents == null) {
+                    throw new IOException(name + ":" + lineNumber + ": cannot find the included file " + path);
+                }
+                int includeNumber = files.size();
+                files.add(path);
+                appendLine(output, 1, includeNumber, lineOffset);
+                appendFile(output, files, path, contents, includeNumber, lineOffset, null);
+                appendLine(output, lineNumber + 1, sourceNumber, lineOffset);
+            } else if (directive.startsWith("#version")) {
+                if (sourceNumber != 0) {
+                    throw new IOException(name + ":" + lineNumber + ": only the main file of a shader can have a #version directive");
+                }
+                output.append(line).append('\n');
+                if (defines != null && !defines.isEmpty()) {
+                    appendDefines(output, defines);
+                    appendLine(output, lineNumber + 1, sourceNumber, lineOffset);
+                }
+            } else {
+                output.append(line).append('\n');
+            }
+        }
+    }
+
+    private static void appendDefines(StringBuilder output, Map<String, String> defines) {
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            output.append("#define ").append(define.getKey());
+            if (!define.getValue().isEmpty()) {
+                output.append(' ').append(define.getValue());
+            }
+            output.append('\n');
+        }
+    }
+
+    private static void appendLine(StringBuilder output, int nextLine, int sourceNumber, int lineOffset) {
+        output.append("#line ").append(nextLine - lineOffset).append(' ').append(sourceNumber).append('\n');
+    }
+
+    /**
+     * @return the number of the #version directive of the source, or 0 if it has none
+     */
+    static int findVersion(String source) {
+        int start = 0;
+        while (start < source.length()) {
+            int end = source.indexOf('\n', start);
+            if (end < 0) {
+                end = source.length();
+            }
+            String directive = source.substring(start, end).trim();
+            if (directive.startsWith("#version")) {
+                String[] words = directive.substring("#version".length()).trim().split("\\s+");
+                try {
+                    return Integer.parseInt(words[0]);
+                } catch (NumberFormatException e) {
+                    return 110;
+                }
+            }
+            start = end + 1;
+        }
+        return 0;
+    }
+
+    private static String parseInclude(String name, int lineNumber, String directive) throws IOException {
+        String argument = directive.substring("#include".length()).trim();
+        if (argument.length() > 2) {
+            char open = argument.charAt(0);
+            char close = argument.charAt(argument.length() - 1);
+            if ((open == '"' && close == '"') || (open == '<' && close == '>')) {
+                return argument.substring(1, argument.length() - 1);
+            }
+        }
+        throw new IOException(name + ":" + lineNumber + ": malformed #include directive: " + directive);
+    }
+
+    /**
+     * Resolves an include relative to the directory of the file that includes it, and
+     * removes the "." and ".." directories from the result. The path of the including file
+     * may be absolute.
+     */
+    static String resolvePath(String from, String include) {
+        String path;
+        if (include.startsWith("/")) {
+            path = include.substring(1);
+        } else {
+            int slash = from.lastIndexOf('/');
+            path = slash < 0 ? include : from.substring(0, slash + 1) + include;
+        }
+        List<String> directories = new ArrayList<String>();
+        for (String part : path.split("/")) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..") && !directories.isEmpty() && !directories.get(directories.size() - 1).equals("..")) {
+                directories.remove(directories.size() - 1);
+            } else {
+                directories.add(part);
+            }
+        }
+        StringBuilder resolved = new StringBuilder(path.length());
+        for (String part : directories) {
+            if (resolved.length() > 0 || path.startsWith("/")) {
+                resolved.append('/');
+            }
+            resolved.append(part);
+        }
+        return resolved.toString();
+    }
+
+    private static void checkDefine(String name, String value) {
+        if (!name.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("\"" + name + "\" is not a valid macro name");
+        }
+        if (value == null || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("The value of macro " + name + " has to be a single line");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.shader;
+
+import org.lwjgl.BufferUtils;
+import org.oskar.view.backend.GraphicsBackend;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_LENGTH;
+
+/**
+ * Stores the binaries of linked programs in a directory, one file per program, named after
+ * the key of the program. A binary only works with the driver that produced it, so the key
+ * has to include the driver as well as the preprocessed sources; see {@link #computeKey}.
+ * <p>
+ * A file holds a 16-byte little-endian header (the magic number "OSPB", the version of
+ * the file format, the driver-specific binary format and the length of the binary)
+ * followed by the binary.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ShaderProgramCache {
+
+    public static final int MAGIC = 'O' | 'S' << 8 | 'P' << 16 | 'B' << 24;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+
+    /**
+     * @param directory the directory the binaries are stored in; it is created when the first
+     *                  binary is stored
+     */
+    public ShaderProgramCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Hashes the parts with SHA-1. Every part is prefixed with its length, so moving text from
+     * one part to the next gives another key.
+     * @return the hash as 40 lowercase hexadecimal digits
+     */
+    public static String computeKey(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-1.
+            throw new IllegalStateException(e);
+        }
+        byte[] length = new byte[4];
+        for (String part : parts) {
+            byte[] bytes = part.getBytes(UTF_8);
+            length[0] = (byte) bytes.length;
+            length[1] = (byte) (bytes.length >>> 8);
+            length[2] = (byte) (bytes.length >>> 16);
+            length[3] = (byte) (bytes.length >>> 24);
+            digest.update(length);
+            digest.update(bytes);
+        }
+        byte[] hash = digest.digest();
+        char[] key = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            key[i * 2] = HEX_DIGITS[(hash[i] >>> 4) & 0xF];
+            key[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(key);
+    }
+
+    /**
+     * @return the file in which the binary of the program with the given key is stored
+     */
+    public File getFile(String key) {
+        return new File(directory, key + ".bin");
+    }
+
+    /**
+     * Creates a program from a stored binary. A binary the driver rejects, for example because
+     * the driver was updated, is deleted.
+     * @param gl the backend, which has to support program binaries
+     * @param key the key of the program
+     * @return the program, or 0 if no usable binary is stored
+     * @throws IOException if the stored binary cannot be read
+     */
+    public int load(GraphicsBackend gl, String key) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer binary;
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() >= HEADER_SIZE) {
+                readFully(channel, header);
+            }
+            int length = header.getInt(12);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || length < 0
+                    || length != channel.size() - HEADER_SIZE) {
+                // Damaged, or written by another version of the game.
+                binary = null;
+            } else {
+                binary = BufferUtils.createByteBuffer(length);
+                readFully(channel, binary);
+                binary.flip();
+            }
+        } finally {
+            input.close();
+        }
+        if (binary == null) {
+            delete(key);
+            return 0;
+        }
+        int program = gl.createProgram();
+        gl.programBinary(program, header.getInt(8), binary);
+        if (gl.getProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            gl.deleteProgram(program);
+            delete(key);
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * Stores the binary of a linked program. The binary is written to a temporary file that is
+     * renamed afterwards, so a crash never leaves half a binary behind.
+     * @param gl the backend, which has to support program binaries
+     * @param key the key of the program
+     * @param program the program, which was linked with GL_PROGRAM_BINARY_RETRIEVABLE_HINT
+     * @return the size of the binary, or 0 if the driver did not return one
+     * @throws IOException if the binary cannot be written
+     */
+    public int store(GraphicsBackend gl, String key, int program) throws IOException {
+        int length = gl.getProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return 0;
+        }
+        IntBuffer format = BufferUtils.createIntBuffer(1);
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        gl.getProgramBinary(program, format, binary);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(format.get(0)).putInt(length).flip();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File file = getFile(key);
+        File temporary = new File(directory, key + ".tmp");
+        FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            FileChannel channel = output.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (binary.hasRemaining()) {
+                channel.write(binary);
+            }
+        } finally {
+            output.close();
+        }
+        // Renaming over an existing file fails on some platforms.
+        file.delete();
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Could not rename " + temporary + " to " + file);
+        }
+        return length;
+    }
+
+    /**
+     * Removes the stored binary of a program.
+     */
+    public void delete(String key) {
+        getFile(key).delete();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012, Oskar Veerhoek
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those
+ * of the authors and should not be interpreted as representing official policies,
+ * either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.oskar.view.shader;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The source of a shader after preprocessing, together with the files it was made of.
+ *
+ * @author Oskar Veerhoek
+ */
+public class ShaderSource {
+
+    private final String name;
+    private final String text;
+    private final List<String> files;
+
+    public ShaderSource(String name, String text, List<String> files) {
+        this.name = name;
+        this.text = text;
+        this.files = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @return the path of the main file of the shader
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the source that is handed to the compiler
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the path of the main file followed by the paths of all the included files, in the
+     * order in which they were included. The index of a file is its source string number in
+     * the #line directives, and therefore in the compiler's messages.
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}